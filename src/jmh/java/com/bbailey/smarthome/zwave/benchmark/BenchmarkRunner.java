@@ -0,0 +1,30 @@
+package com.bbailey.smarthome.zwave.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the codec benchmarks with the GC profiler attached so every result
+ * reports the allocation rate alongside ops/s. Accepts the usual JMH command
+ * line options, and runs every benchmark in this package when none are selected.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class);
+		
+		if (commandLine.getIncludes().isEmpty()) {
+			options.include(BenchmarkRunner.class.getPackageName() + ".*");
+		}
+		
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,56 @@
+package com.bbailey.smarthome.zwave.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bbailey.smarthome.zwave.api.ApplicationCommandHandler;
+import com.bbailey.smarthome.zwave.api.ApplicationUpdate;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.GetInitData;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+/**
+ * Decoding of the commands the module sends most often. Each invocation wraps the
+ * payload in a new {@link Buffer} because decoding consumes the read position, so the
+ * reported allocation includes the small wrapper as it does on the receive path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandDecodeBenchmark {
+
+	@Benchmark
+	public ApplicationCommandHandler.Request applicationCommandHandler() {
+		return new ApplicationCommandHandler.Request(new Buffer(Frames.APPLICATION_COMMAND_HANDLER));
+	}
+	
+	
+	@Benchmark
+	public ApplicationUpdate.Request applicationUpdate() {
+		return new ApplicationUpdate.Request(new Buffer(Frames.APPLICATION_UPDATE));
+	}
+	
+	
+	@Benchmark
+	public GetInitData.Response getInitData() {
+		return new GetInitData.Response(new Buffer(Frames.GET_INIT_DATA));
+	}
+	
+	
+	@Benchmark
+	public ControllerNodeSendData.Callback sendDataCallback() {
+		return new ControllerNodeSendData.Callback(new Buffer(Frames.SEND_DATA_CALLBACK));
+	}
+}
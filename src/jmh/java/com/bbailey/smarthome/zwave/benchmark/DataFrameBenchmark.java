@@ -0,0 +1,71 @@
+package com.bbailey.smarthome.zwave.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bbailey.smarthome.zwave.protocol.DataFrame;
+
+/**
+ * Framing costs of a data frame: serializing, parsing and the checksum
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataFrameBenchmark {
+
+	/**
+	 * Index into {@link Frames#packets()}
+	 */
+	@Param({ "0", "1", "2", "3" })
+	private int frame;
+	
+	private byte[] packet;
+	private byte[] body;
+	private DataFrame dataFrame;
+	
+	
+	@Setup
+	public void setUp() {
+		packet = Frames.packets()[frame];
+		body = Frames.body(packet);
+		dataFrame = new DataFrame(packet[1] & 0xFF, body);
+	}
+	
+	
+	@Benchmark
+	public byte[] serialize() {
+		return dataFrame.serialize();
+	}
+	
+	
+	@Benchmark
+	public DataFrame parse() {
+		return new DataFrame(packet[1] & 0xFF, body);
+	}
+	
+	
+	@Benchmark
+	public int calculateChecksum() {
+		return dataFrame.calculateChecksum();
+	}
+	
+	
+	@Benchmark
+	public int calculateChecksumInPlace() {
+		return DataFrame.calculateChecksum(packet, 1, packet[1] & 0xFF);
+	}
+}
@@ -0,0 +1,96 @@
+package com.bbailey.smarthome.zwave.benchmark;
+
+import java.util.Arrays;
+
+import com.bbailey.smarthome.zwave.api.ApplicationCommandHandler;
+import com.bbailey.smarthome.zwave.api.ApplicationUpdate;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.GetInitData;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+import com.bbailey.smarthome.zwave.protocol.DataFrame;
+import com.bbailey.smarthome.zwave.protocol.DataFrame.CommandType;
+
+/**
+ * Representative payloads for the benchmarks, taken from the traffic of a small network
+ */
+final class Frames {
+
+	/**
+	 * BASIC REPORT from node 5
+	 */
+	static final byte[] APPLICATION_COMMAND_HANDLER = bytes(0x00, 0x05, 0x03, 0x20, 0x03, 0x63, 0xC4);
+	
+	/**
+	 * NIF received from node 5 reporting BASIC and SWITCH BINARY
+	 */
+	static final byte[] APPLICATION_UPDATE = bytes(0x84, 0x05, 0x05, 0x04, 0x10, 0x01, 0x20, 0x25);
+	
+	/**
+	 * Init data for a network of nodes 1-5
+	 */
+	static final byte[] GET_INIT_DATA;
+	
+	/**
+	 * Successful transmit with a 2 byte status report
+	 */
+	static final byte[] SEND_DATA_CALLBACK = bytes(0x0A, 0x00, 0x00, 0x02);
+	
+	static {
+		byte[] initData = new byte[3 + 29 + 2];
+		initData[0] = 0x08;
+		initData[1] = 0x08;
+		initData[2] = 29;
+		initData[3] = 0x1F;
+		initData[initData.length - 2] = 0x07;
+		GET_INIT_DATA = initData;
+	}
+	
+	
+	/**
+	 * Serialize a request frame
+	 * @param commandId The command id
+	 * @param payload The command payload
+	 * @return The frame as sent on the wire
+	 */
+	static byte[] packet(int commandId, byte[] payload) {
+		return new DataFrame(CommandType.REQUEST, commandId, new Buffer(payload)).serialize();
+	}
+	
+	
+	/**
+	 * The frames used by the parsing benchmarks, one per command decoded
+	 * @return The serialized frames
+	 */
+	static byte[][] packets() {
+		return new byte[][] {
+			packet(ApplicationCommandHandler.COMMAND_ID, APPLICATION_COMMAND_HANDLER),
+			packet(ApplicationUpdate.COMMAND_ID, APPLICATION_UPDATE),
+			packet(GetInitData.COMMAND_ID, GET_INIT_DATA),
+			packet(ControllerNodeSendData.COMMAND_ID, SEND_DATA_CALLBACK)
+		};
+	}
+	
+	
+	/**
+	 * Strip the SOF and length fields from a packet, leaving the bytes
+	 * {@link DataFrame#DataFrame(int, byte[])} parses
+	 * @param packet The serialized frame
+	 * @return The frame from the type field onwards
+	 */
+	static byte[] body(byte[] packet) {
+		return Arrays.copyOfRange(packet, 2, packet.length);
+	}
+	
+	
+	private static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0 ; i < values.length ; i++) {
+			bytes[i] = (byte)values[i];
+		}
+		return bytes;
+	}
+	
+	
+	private Frames() {
+	}
+}
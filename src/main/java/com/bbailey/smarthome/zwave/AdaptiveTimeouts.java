@@ -0,0 +1,228 @@
+package com.bbailey.smarthome.zwave;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence.SequenceState;
+import com.bbailey.smarthome.zwave.api.common.NodeTarget;
+
+/**
+ * Works out how long to wait for each stage of a command sequence from the latencies of
+ * earlier sequences, so a lost frame is noticed in about the time the module normally takes
+ * rather than after a fixed worst case.
+ *
+ * A smoothed round trip time and its variance are kept for each stage of each command, and for
+ * callbacks also per destination node as those include the RF round trip. The timeout is the
+ * smoothed time plus four times the variance (RFC 6298), bounded by a floor and a ceiling for
+ * the stage. Until a command has been measured the ceiling is used.
+ *
+ * Each timeout doubles the estimate it came from until the next sample is taken (RFC 6298
+ * section 5.5), so a node whose route has become slower than its estimate is not timed out
+ * on every attempt with no successful sample ever arriving to correct it.
+ */
+class AdaptiveTimeouts {
+
+	// The Host API specification fixes how long the host waits for an ACK
+	public static final long ACK_FLOOR_MS = 1600;
+	public static final long ACK_CEILING_MS = 1600;
+
+	public static final long RESPONSE_FLOOR_MS = 1000;
+	public static final long RESPONSE_CEILING_MS = 10000;
+
+	// A FLiRS node needs over a second of beam before the frame itself, and each routing hop adds
+	// more. A routed transmission with retries and explorer frames can take the module over a minute
+	public static final long CALLBACK_FLOOR_MS = 5000;
+	public static final long CALLBACK_CEILING_MS = 65000;
+
+	// Host API retransmission backoff of 100 ms + n * 1 s, plus up to this much jitter
+	public static final long RETRANSMIT_JITTER_MS = 100;
+
+	private final Estimator[] ack = new Estimator[256];
+	private final Estimator[] response = new Estimator[256];
+	private final Estimator[] callback = new Estimator[256];
+
+	// Keyed by command id and destination node
+	private final Map<Integer, Estimator> nodeCallback = new ConcurrentHashMap<>();
+
+
+	public AdaptiveTimeouts() {
+		for (int i = 0 ; i < 256 ; i++) {
+			ack[i] = new Estimator();
+			response[i] = new Estimator();
+			callback[i] = new Estimator();
+		}
+	}
+
+
+	/**
+	 * @param sequence The sequence
+	 * @return How long to wait for the module to ACK the request, in milliseconds
+	 */
+	public long ackTimeout(CommandSequence sequence) {
+		return ack[commandId(sequence)].timeout(ACK_FLOOR_MS, ACK_CEILING_MS);
+	}
+
+
+	/**
+	 * @param sequence The sequence
+	 * @return How long to wait for the response once the request is acknowledged, in milliseconds
+	 */
+	public long responseTimeout(CommandSequence sequence) {
+		return response[commandId(sequence)].timeout(RESPONSE_FLOOR_MS, RESPONSE_CEILING_MS);
+	}
+
+
+	/**
+	 * @param sequence The sequence
+	 * @return How long to wait for the callback once the module has responded, in milliseconds
+	 */
+	public long callbackTimeout(CommandSequence sequence) {
+
+		Estimator estimator = nodeCallback.get(nodeKey(sequence));
+		if (estimator == null || !estimator.hasSamples()) {
+			estimator = callback[commandId(sequence)];
+		}
+		return estimator.timeout(CALLBACK_FLOOR_MS, CALLBACK_CEILING_MS);
+	}
+
+
+	/**
+	 * Feed the stage latencies of a completed sequence into the estimates
+	 * @param sequence The completed sequence
+	 */
+	public void record(CommandSequence sequence) {
+
+		int commandId = commandId(sequence);
+
+		// Karn's algorithm, an ACK after a retransmission could belong to either attempt
+		long ackLatency = sequence.getStageLatency(SequenceState.WAITING_FOR_ACK);
+		if (ackLatency > 0 && sequence.getAttempt() == 1) {
+			ack[commandId].sample(ackLatency);
+		}
+
+		long responseLatency = sequence.getStageLatency(SequenceState.WAITING_FOR_RESPONSE);
+		if (responseLatency > 0) {
+			response[commandId].sample(responseLatency);
+		}
+
+		long callbackLatency = sequence.getStageLatency(SequenceState.WAITING_FOR_CALLBACK);
+		if (callbackLatency > 0) {
+			callback[commandId].sample(callbackLatency);
+			if (sequence.getRequest() instanceof NodeTarget) {
+				nodeCallback.computeIfAbsent(nodeKey(sequence), k -> new Estimator()).sample(callbackLatency);
+			}
+		}
+	}
+
+
+	/**
+	 * Back off the estimates for the stage a sequence timed out in, so the next attempt waits
+	 * twice as long. The ACK timeout is fixed so is never backed off
+	 * @param sequence The sequence that timed out
+	 * @param stage The state it timed out in
+	 */
+	public void timedOut(CommandSequence sequence, SequenceState stage) {
+
+		int commandId = commandId(sequence);
+		switch (stage) {
+		case WAITING_FOR_RESPONSE:
+			response[commandId].backoff();
+			break;
+		case WAITING_FOR_CALLBACK:
+			callback[commandId].backoff();
+			Estimator estimator = nodeCallback.get(nodeKey(sequence));
+			if (estimator != null) {
+				estimator.backoff();
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+
+	/**
+	 * How long to wait before retransmitting a request. The delay grows with each retransmission
+	 * and is randomised so the host and the module do not collide again on the next attempt
+	 * @param retransmission The number of retransmissions already made, starting at 0
+	 * @return The delay in milliseconds
+	 */
+	public static long retransmitDelay(int retransmission) {
+		return 100 + retransmission * 1000L + ThreadLocalRandom.current().nextLong(RETRANSMIT_JITTER_MS);
+	}
+
+
+	private static int commandId(CommandSequence sequence) {
+		return sequence.getRequest().getCommandId() & 0xFF;
+	}
+
+
+	private static int nodeKey(CommandSequence sequence) {
+		int nodeId = sequence.getRequest() instanceof NodeTarget ? ((NodeTarget)sequence.getRequest()).getTargetNodeId() : 0;
+		return commandId(sequence) << 8 | (nodeId & 0xFF);
+	}
+
+
+	/**
+	 * Smoothed round trip time and variance for one stage, in nanoseconds
+	 */
+	static class Estimator {
+
+		// Doubled on each timeout, up to this many times the estimate
+		private static final int MAX_BACKOFF = 64;
+
+		private double srtt;
+		private double rttvar;
+		private boolean measured = false;
+		private int backoff = 1;
+
+
+		public synchronized void sample(long rtt) {
+
+			backoff = 1;
+
+			if (!measured) {
+				srtt = rtt;
+				rttvar = rtt / 2.0;
+				measured = true;
+			} else {
+				rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rtt);
+				srtt = 0.875 * srtt + 0.125 * rtt;
+			}
+		}
+
+
+		public synchronized boolean hasSamples() {
+			return measured;
+		}
+
+
+		/**
+		 * Double the timeout until the next sample
+		 */
+		public synchronized void backoff() {
+			if (backoff < MAX_BACKOFF) {
+				backoff <<= 1;
+			}
+		}
+
+
+		/**
+		 * @param floor The shortest timeout in milliseconds
+		 * @param ceiling The longest timeout in milliseconds, also used before any samples
+		 * @return The timeout in milliseconds
+		 */
+		public synchronized long timeout(long floor, long ceiling) {
+
+			if (!measured) {
+				return ceiling;
+			}
+
+			long timeout = Math.max(floor, Math.min(ceiling, TimeUnit.NANOSECONDS.toMillis((long)(srtt + 4 * rttvar))));
+			return Math.min(ceiling, timeout * backoff);
+		}
+	}
+}
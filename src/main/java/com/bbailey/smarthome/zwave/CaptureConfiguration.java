@@ -0,0 +1,120 @@
+package com.bbailey.smarthome.zwave;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.bbailey.smarthome.zwave.capture.FrameJournal;
+import com.bbailey.smarthome.zwave.capture.ReplayTransport.ReplaySpeed;
+
+/**
+ * Settings for capturing link traffic to a frame journal and replaying it
+ */
+public class CaptureConfiguration {
+
+	private boolean enabled = false;
+	
+	@NotNull
+	private String directory = "capture";
+	
+	@Min(1024)
+	private int segmentSize = FrameJournal.DEFAULT_SEGMENT_SIZE;
+	
+	@Min(1)
+	private int maxSegments = FrameJournal.DEFAULT_MAX_SEGMENTS;
+	
+	private String replayPath;
+	
+	@NotNull
+	private ReplaySpeed replaySpeed = ReplaySpeed.ORIGINAL;
+
+	/**
+	 * Whether traffic is captured to the journal
+	 * @return the enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled the enabled to set
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * The directory journal segments are written to
+	 * @return the directory
+	 */
+	public String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @param directory the directory to set
+	 */
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * The size of each journal segment in bytes
+	 * @return the segmentSize
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * @param segmentSize the segmentSize to set
+	 */
+	public void setSegmentSize(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * The number of journal segments kept. The oldest are deleted as new ones are opened
+	 * @return the maxSegments
+	 */
+	public int getMaxSegments() {
+		return maxSegments;
+	}
+
+	/**
+	 * @param maxSegments the maxSegments to set
+	 */
+	public void setMaxSegments(int maxSegments) {
+		this.maxSegments = maxSegments;
+	}
+
+	/**
+	 * The journal segment or directory played back by the REPLAY transport
+	 * @return the replayPath
+	 */
+	public String getReplayPath() {
+		return replayPath;
+	}
+
+	/**
+	 * @param replayPath the replayPath to set
+	 */
+	public void setReplayPath(String replayPath) {
+		this.replayPath = replayPath;
+	}
+
+	/**
+	 * @return the replaySpeed
+	 */
+	public ReplaySpeed getReplaySpeed() {
+		return replaySpeed;
+	}
+
+	/**
+	 * @param replaySpeed the replaySpeed to set
+	 */
+	public void setReplaySpeed(ReplaySpeed replaySpeed) {
+		this.replaySpeed = replaySpeed;
+	}
+	
+	
+}
@@ -0,0 +1,27 @@
+package com.bbailey.smarthome.zwave;
+
+/**
+ * The lanes commands are scheduled in. A lane is only served once every lane above it is empty
+ */
+public enum CommandPriority {
+
+	/**
+	 * Commands a user is waiting on, e.g. switching a light
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Commands queued for a sleeping node, sent in the short window after it wakes up
+	 */
+	WAKEUP,
+
+	/**
+	 * Periodic polling of node state
+	 */
+	POLL,
+
+	/**
+	 * Interviewing and bootstrapping nodes, which can take a long time on a large network
+	 */
+	INTERVIEW;
+}
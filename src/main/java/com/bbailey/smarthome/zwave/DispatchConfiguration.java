@@ -0,0 +1,46 @@
+package com.bbailey.smarthome.zwave;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * How received commands are queued for subscribers
+ */
+public class DispatchConfiguration {
+
+	@Min(1)
+	private int capacity = EventDispatcher.DEFAULT_CAPACITY;
+
+	@NotNull
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+	/**
+	 * The number of commands each dispatch lane holds, rounded up to a power of two
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @param capacity the capacity to set
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * What happens to a received command when its lane is full
+	 * @return the overflowPolicy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @param overflowPolicy the overflowPolicy to set
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+}
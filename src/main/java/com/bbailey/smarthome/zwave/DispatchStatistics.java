@@ -0,0 +1,95 @@
+package com.bbailey.smarthome.zwave;
+
+/**
+ * A snapshot of one dispatch lane's queue and counters
+ */
+public class DispatchStatistics {
+
+	private final String lane;
+	private final int depth;
+	private final int capacity;
+	private final long delivered;
+	private final long dropped;
+	private final long coalesced;
+	private final long stalled;
+
+
+	public DispatchStatistics(String lane, int depth, int capacity, long delivered, long dropped, long coalesced, long stalled) {
+		this.lane = lane;
+		this.depth = depth;
+		this.capacity = capacity;
+		this.delivered = delivered;
+		this.dropped = dropped;
+		this.coalesced = coalesced;
+		this.stalled = stalled;
+	}
+
+
+	/**
+	 * The name of the lane's thread
+	 * @return the lane
+	 */
+	public String getLane() {
+		return lane;
+	}
+
+
+	/**
+	 * The number of commands waiting to be delivered
+	 * @return the depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+
+	/**
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+
+	/**
+	 * The number of commands delivered to subscribers
+	 * @return the delivered
+	 */
+	public long getDelivered() {
+		return delivered;
+	}
+
+
+	/**
+	 * The number of commands discarded because the lane was full
+	 * @return the dropped
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+
+	/**
+	 * The number of queued commands replaced by a newer one because the lane was full
+	 * @return the coalesced
+	 */
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+
+	/**
+	 * The number of times the receive thread waited for room on the lane
+	 * @return the stalled
+	 */
+	public long getStalled() {
+		return stalled;
+	}
+
+
+	@Override
+	public String toString() {
+		return "DispatchStatistics [lane=" + lane + ", depth=" + depth + ", capacity=" + capacity + ", delivered="
+				+ delivered + ", dropped=" + dropped + ", coalesced=" + coalesced + ", stalled=" + stalled + "]";
+	}
+}
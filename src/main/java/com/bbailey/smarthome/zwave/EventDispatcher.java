@@ -0,0 +1,283 @@
+package com.bbailey.smarthome.zwave;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bbailey.smarthome.zwave.api.common.Coalescable;
+import com.bbailey.smarthome.zwave.api.common.Command;
+import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
+import com.bbailey.smarthome.zwave.api.common.NodeSource;
+import com.bbailey.smarthome.zwave.trace.Subsystem;
+import com.bbailey.smarthome.zwave.trace.Trace;
+import com.bbailey.smarthome.zwave.trace.TraceLevel;
+import com.bbailey.smarthome.zwave.utils.SpscRingBuffer;
+
+/**
+ * Delivers received commands to subscribers on a fixed set of threads.
+ *
+ * Commands from a node are hashed onto one of the stripes by node id, so a node's commands are
+ * always handled in the order they arrived while different nodes are handled in parallel. A slow
+ * subscriber only holds up the nodes sharing its stripe. Commands from the controller itself,
+ * such as responses and callbacks, have a lane of their own.
+ *
+ * Each lane is a preallocated ring filled only by the receive thread. When subscribers fall far
+ * enough behind to fill a lane the {@link OverflowPolicy} decides what gives, and the outcome is
+ * counted in the lane's {@link DispatchStatistics}. The receive thread never fails because a
+ * lane is full.
+ */
+class EventDispatcher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EventDispatcher.class);
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final OverflowPolicy overflowPolicy;
+	private final Lane controller;
+	private final Lane[] stripes;
+
+
+	/**
+	 * @param stripes The number of threads handling node commands
+	 * @param handler Handles each command on its lane's thread
+	 */
+	public EventDispatcher(int stripes, Consumer<Command> handler) {
+		this(stripes, DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST, handler);
+	}
+
+
+	/**
+	 * @param stripes The number of threads handling node commands
+	 * @param capacity The number of commands each lane holds
+	 * @param overflowPolicy What happens to a command when its lane is full
+	 * @param handler Handles each command on its lane's thread
+	 */
+	public EventDispatcher(int stripes, int capacity, OverflowPolicy overflowPolicy, Consumer<Command> handler) {
+
+		if (stripes < 1) {
+			throw new IllegalArgumentException("Need at least one stripe: " + stripes);
+		}
+
+		this.overflowPolicy = overflowPolicy;
+		this.controller = new Lane("event-controller", capacity, handler);
+		this.stripes = new Lane[stripes];
+		for (int i = 0 ; i < stripes ; i++) {
+			this.stripes[i] = new Lane("event-node-" + i, capacity, handler);
+		}
+	}
+
+
+	public void start() {
+		controller.start();
+		for (Lane stripe : stripes) {
+			stripe.start();
+		}
+	}
+
+
+	/**
+	 * Stop the lanes. Commands still queued are discarded
+	 */
+	public void stop() {
+		controller.stop();
+		for (Lane stripe : stripes) {
+			stripe.stop();
+		}
+	}
+
+
+	/**
+	 * Queue a command on its lane. Must only be called from the receive thread
+	 * @param command The received command
+	 */
+	public void dispatch(Command command) {
+		lane(command).add(command, overflowPolicy);
+	}
+
+
+	/**
+	 * @return The queue depth and counters of each lane, the controller lane first
+	 */
+	public List<DispatchStatistics> getStatistics() {
+
+		List<DispatchStatistics> statistics = new ArrayList<>(stripes.length + 1);
+		statistics.add(controller.getStatistics());
+		for (Lane stripe : stripes) {
+			statistics.add(stripe.getStatistics());
+		}
+		return statistics;
+	}
+
+
+	private Lane lane(Command command) {
+
+		if (command instanceof NodeSource) {
+			return stripes[(((NodeSource)command).getSourceNodeId() & 0xFF) % stripes.length];
+		}
+		return controller;
+	}
+
+
+	private static void discard(Command command) {
+		if (command instanceof DeserializableCommand) {
+			((DeserializableCommand)command).release();
+		}
+	}
+
+
+	private static class Lane {
+
+		private final String name;
+		private final Consumer<Command> handler;
+		private final SpscRingBuffer<Command> ring;
+
+		private final AtomicLong delivered = new AtomicLong();
+		private final AtomicLong dropped = new AtomicLong();
+		private final AtomicLong coalesced = new AtomicLong();
+		private final AtomicLong stalled = new AtomicLong();
+
+		private volatile boolean running = false;
+		private volatile boolean sleeping = false;
+		private Thread thread;
+
+
+		private Lane(String name, int capacity, Consumer<Command> handler) {
+			this.name = name;
+			this.handler = handler;
+			this.ring = new SpscRingBuffer<>(capacity);
+		}
+
+
+		private synchronized void start() {
+
+			if (running) {
+				return;
+			}
+
+			running = true;
+			thread = new Thread(this::run, name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+
+		private synchronized void stop() {
+
+			if (!running) {
+				return;
+			}
+
+			running = false;
+			LockSupport.unpark(thread);
+			try {
+				thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+
+		private void add(Command command, OverflowPolicy overflowPolicy) {
+
+			if (!ring.offer(command)) {
+				overflow(command, overflowPolicy);
+			}
+
+			if (sleeping) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+
+		private void overflow(Command command, OverflowPolicy overflowPolicy) {
+
+			if (overflowPolicy == OverflowPolicy.BLOCK) {
+				stalled.incrementAndGet();
+				while (!ring.offer(command)) {
+					if (!running) {
+						dropped.incrementAndGet();
+						discard(command);
+						return;
+					}
+					LockSupport.unpark(thread);
+					LockSupport.parkNanos(100_000);
+				}
+				return;
+			}
+
+			if (overflowPolicy == OverflowPolicy.COALESCE && command instanceof Coalescable) {
+				Command replaced = ring.replace(((Coalescable)command)::supersedes, command);
+				if (replaced != null) {
+					coalesced.incrementAndGet();
+					discard(replaced);
+					return;
+				}
+			}
+
+			// A chatty node makes room from its own backlog before anyone else's
+			if (command instanceof NodeSource) {
+				int nodeId = ((NodeSource)command).getSourceNodeId();
+				Command oldest = ring.remove(queued -> queued instanceof NodeSource && ((NodeSource)queued).getSourceNodeId() == nodeId);
+				if (oldest != null) {
+					dropped.incrementAndGet();
+					Trace.log(Subsystem.DISPATCH, TraceLevel.INFO, "Dispatch lane {} full - dropping {} from node {}", name, oldest, nodeId);
+					discard(oldest);
+					ring.offer(command);
+					return;
+				}
+			}
+
+			// Make room by discarding the oldest, unless the lane has caught up in the meantime
+			while (!ring.offer(command)) {
+				Command oldest = ring.poll();
+				if (oldest != null) {
+					dropped.incrementAndGet();
+					Trace.log(Subsystem.DISPATCH, TraceLevel.INFO, "Dispatch lane {} full - dropping {}", name, oldest);
+					discard(oldest);
+				}
+			}
+		}
+
+
+		private void run() {
+
+			while (running) {
+
+				Command command = ring.poll();
+				if (command != null) {
+					deliver(command);
+					continue;
+				}
+
+				// Publish that we are about to sleep, then check again so a command queued in between is not missed
+				sleeping = true;
+				if (ring.isEmpty() && running) {
+					LockSupport.park(this);
+				}
+				sleeping = false;
+			}
+		}
+
+
+		private void deliver(Command command) {
+
+			try {
+				handler.accept(command);
+			} catch (RuntimeException e) {
+				// One failing subscriber must not stop delivery to the others on this lane
+				LOGGER.error("Failed to handle {} - {}", command, e);
+			}
+			delivered.incrementAndGet();
+		}
+
+
+		private DispatchStatistics getStatistics() {
+			return new DispatchStatistics(name, ring.size(), ring.capacity(), delivered.get(), dropped.get(), coalesced.get(), stalled.get());
+		}
+	}
+}
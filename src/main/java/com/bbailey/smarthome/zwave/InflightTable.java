@@ -0,0 +1,144 @@
+package com.bbailey.smarthome.zwave;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+
+/**
+ * Sequences that have been handled by the module and are waiting for their callback, keyed by
+ * function id and session id. The link is free for other requests while they wait, and each
+ * callback is routed back to its own sequence.
+ *
+ * Whoever removes a sequence from the table owns finishing it, so a callback arriving as the
+ * sequence expires is only applied once.
+ */
+class InflightTable {
+
+	private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Add a sequence before its request is sent
+	 * @param sequence The sequence
+	 * @param sessionId The session id in the request
+	 * @param deadline The {@link System#nanoTime()} after which the sequence expires
+	 * @return The sequence previously registered with the same function and session id, or null
+	 */
+	public CommandSequence add(CommandSequence sequence, int sessionId, long deadline) {
+		Entry previous = entries.put(key(sequence.getRequest().getCommandId(), sessionId), new Entry(sequence, deadline));
+		return previous == null ? null : previous.sequence;
+	}
+
+
+	/**
+	 * Move the deadline of a sequence, if it is still in the table
+	 * @param sequence The sequence
+	 * @param sessionId The session id in its request
+	 * @param deadline The new deadline
+	 */
+	public void extend(CommandSequence sequence, int sessionId, long deadline) {
+		entries.computeIfPresent(key(sequence.getRequest().getCommandId(), sessionId),
+				(key, entry) -> entry.sequence == sequence ? new Entry(sequence, deadline) : entry);
+	}
+
+
+	/**
+	 * Remove the sequence waiting for a callback
+	 * @param functionId The function id of the callback
+	 * @param sessionId The session id of the callback
+	 * @return The sequence or null if nothing is waiting for it
+	 */
+	public CommandSequence remove(int functionId, int sessionId) {
+		Entry entry = entries.remove(key(functionId, sessionId));
+		return entry == null ? null : entry.sequence;
+	}
+
+
+	/**
+	 * Remove a particular sequence, if it is still in the table
+	 * @param sequence The sequence
+	 * @param sessionId The session id in its request
+	 * @return True if the sequence was removed
+	 */
+	public boolean remove(CommandSequence sequence, int sessionId) {
+		int key = key(sequence.getRequest().getCommandId(), sessionId);
+		Entry entry = entries.get(key);
+		return entry != null && entry.sequence == sequence && entries.remove(key, entry);
+	}
+
+
+	/**
+	 * Remove every sequence whose deadline has passed
+	 * @param now The current {@link System#nanoTime()}
+	 * @return The expired sequences
+	 */
+	public List<CommandSequence> expire(long now) {
+
+		List<CommandSequence> expired = new ArrayList<>();
+		entries.forEach((key, entry) -> {
+			if (now - entry.deadline >= 0 && entries.remove(key, entry)) {
+				expired.add(entry.sequence);
+			}
+		});
+		return expired;
+	}
+
+
+	/**
+	 * How long until the earliest deadline in the table
+	 * @param now The current {@link System#nanoTime()}
+	 * @return The time in nanoseconds, 0 if a deadline has passed, or {@link Long#MAX_VALUE} if the table is empty
+	 */
+	public long nanosUntilNextDeadline(long now) {
+
+		long next = Long.MAX_VALUE;
+		for (Entry entry : entries.values()) {
+			next = Math.min(next, Math.max(0, entry.deadline - now));
+		}
+		return next;
+	}
+
+
+	/**
+	 * Remove every sequence
+	 * @return The removed sequences
+	 */
+	public List<CommandSequence> clear() {
+
+		List<CommandSequence> removed = new ArrayList<>();
+		entries.forEach((key, entry) -> {
+			if (entries.remove(key, entry)) {
+				removed.add(entry.sequence);
+			}
+		});
+		return removed;
+	}
+
+
+	/**
+	 * @return The number of sequences waiting for a callback
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+
+	private static int key(int functionId, int sessionId) {
+		return (functionId & 0xFF) << 8 | (sessionId & 0xFF);
+	}
+
+
+	private static class Entry {
+
+		private final CommandSequence sequence;
+		private final long deadline;
+
+		private Entry(CommandSequence sequence, long deadline) {
+			this.sequence = sequence;
+			this.deadline = deadline;
+		}
+	}
+}
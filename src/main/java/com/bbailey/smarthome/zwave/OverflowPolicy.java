@@ -0,0 +1,27 @@
+package com.bbailey.smarthome.zwave;
+
+/**
+ * What happens to a received command when its dispatch lane is full
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * Wait for the subscribers to make room. Nothing is lost, but the receive thread stops
+	 * reading from the module until they do
+	 */
+	BLOCK,
+
+	/**
+	 * Discard the oldest command waiting on the lane from the same node, or the oldest of all
+	 * if that node has nothing waiting, so one busy node does not push out the others. The
+	 * default
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Replace an older report of the same value from the same node, see
+	 * {@link com.bbailey.smarthome.zwave.api.common.Coalescable}. Only plain state reports,
+	 * e.g. battery levels, are replaced. Everything else falls back to {@link #DROP_OLDEST}
+	 */
+	COALESCE;
+}
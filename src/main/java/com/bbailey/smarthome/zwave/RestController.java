@@ -1,13 +1,69 @@
 package com.bbailey.smarthome.zwave;
 
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import com.bbailey.smarthome.zwave.trace.Subsystem;
+import com.bbailey.smarthome.zwave.trace.Trace;
+import com.bbailey.smarthome.zwave.trace.TraceLevel;
 
 @org.springframework.web.bind.annotation.RestController
 public class RestController {
 
+	private final ZwaveAdapter adapter;
+	
+	
+	public RestController(ZwaveAdapter adapter) {
+		this.adapter = adapter;
+	}
+	
 	
 	@GetMapping("/hello")
 	public String hello() {
 		return "Hello";
 	}
+	
+	
+	/**
+	 * Get the current trace level of each subsystem
+	 * @return The levels by subsystem
+	 */
+	@GetMapping("/trace")
+	public Map<Subsystem, TraceLevel> getTrace() {
+		return Trace.getLevels();
+	}
+	
+	
+	/**
+	 * Change how a subsystem is traced, e.g. PUT /trace/FRAME?level=DEBUG&sampleRate=10
+	 * @param subsystem The subsystem
+	 * @param level The new level
+	 * @param sampleRate Optionally only write one in this many messages
+	 * @return The levels by subsystem
+	 */
+	@PutMapping("/trace/{subsystem}")
+	public Map<Subsystem, TraceLevel> setTrace(@PathVariable Subsystem subsystem, @RequestParam TraceLevel level,
+			@RequestParam(required = false) Integer sampleRate) {
+		
+		if (sampleRate != null) {
+			Trace.setSampleRate(subsystem, sampleRate);
+		}
+		Trace.setLevel(subsystem, level);
+		return Trace.getLevels();
+	}
+	
+	
+	/**
+	 * Get the queue depth and drop counters of the lanes delivering received commands
+	 * @return The statistics of each lane
+	 */
+	@GetMapping("/dispatch")
+	public List<DispatchStatistics> getDispatch() {
+		return adapter.getDispatchStatistics();
+	}
 }
@@ -4,8 +4,60 @@ import javax.validation.constraints.NotNull;
 
 public class SerialPortConfiguration {
 
+	/**
+	 * How the Z-Wave module is connected
+	 */
+	public enum TransportType {
+		
+		/**
+		 * A module attached to a local serial port
+		 */
+		SERIAL,
+		
+		/**
+		 * A module exposed over TCP by a serial bridge such as ser2net
+		 */
+		TCP,
+		
+		/**
+		 * An in-memory connection with nothing attached to the far end unless a simulator connects to it
+		 */
+		LOOPBACK,
+		
+		/**
+		 * A virtual controller on the far end of a loopback, configured by zwave.simulator
+		 */
+		SIMULATOR,
+		
+		/**
+		 * Plays back the inbound side of a frame journal configured by zwave.capture
+		 */
+		REPLAY
+	}
+	
+	@NotNull
+	private TransportType type = TransportType.SERIAL;
+	
 	@NotNull
 	private String portName = "ttyAMA0";
+	
+	private String host = "localhost";
+	
+	private int port = 3333;
+
+	/**
+	 * @return the type
+	 */
+	public TransportType getType() {
+		return type;
+	}
+
+	/**
+	 * @param type the type to set
+	 */
+	public void setType(TransportType type) {
+		this.type = type;
+	}
 
 	/**
 	 * @return the portName
@@ -20,6 +72,36 @@ public class SerialPortConfiguration {
 	public void setPortName(String portName) {
 		this.portName = portName;
 	}
+
+	/**
+	 * The host of the serial bridge for the TCP transport
+	 * @return the host
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @param host the host to set
+	 */
+	public void setHost(String host) {
+		this.host = host;
+	}
+
+	/**
+	 * The port of the serial bridge for the TCP transport
+	 * @return the port
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @param port the port to set
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
 	
 	
 }
@@ -0,0 +1,104 @@
+package com.bbailey.smarthome.zwave;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * Settings for the virtual controller used when the transport type is SIMULATOR
+ */
+public class SimulatorConfiguration {
+
+	@Min(0)
+	@Max(231)
+	private int nodes = 5;
+	
+	@DecimalMin("0.0")
+	private double reportsPerSecond = 0.1;
+	
+	@DecimalMin("0.0")
+	@DecimalMax("1.0")
+	private double jitter = 0.2;
+	
+	@Min(0)
+	private int transmitDelayMs = 20;
+	
+	private int homeId = 0xC0FFEE01;
+
+	/**
+	 * The number of virtual nodes in the network, excluding the controller
+	 * @return the nodes
+	 */
+	public int getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @param nodes the nodes to set
+	 */
+	public void setNodes(int nodes) {
+		this.nodes = nodes;
+	}
+
+	/**
+	 * The rate each node sends unsolicited reports at. Zero disables reports
+	 * @return the reportsPerSecond
+	 */
+	public double getReportsPerSecond() {
+		return reportsPerSecond;
+	}
+
+	/**
+	 * @param reportsPerSecond the reportsPerSecond to set
+	 */
+	public void setReportsPerSecond(double reportsPerSecond) {
+		this.reportsPerSecond = reportsPerSecond;
+	}
+
+	/**
+	 * The fraction of the report interval that each report is randomly moved by
+	 * @return the jitter
+	 */
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * @param jitter the jitter to set
+	 */
+	public void setJitter(double jitter) {
+		this.jitter = jitter;
+	}
+
+	/**
+	 * The simulated radio transmit time before a send data callback is returned
+	 * @return the transmitDelayMs
+	 */
+	public int getTransmitDelayMs() {
+		return transmitDelayMs;
+	}
+
+	/**
+	 * @param transmitDelayMs the transmitDelayMs to set
+	 */
+	public void setTransmitDelayMs(int transmitDelayMs) {
+		this.transmitDelayMs = transmitDelayMs;
+	}
+
+	/**
+	 * @return the homeId
+	 */
+	public int getHomeId() {
+		return homeId;
+	}
+
+	/**
+	 * @param homeId the homeId to set
+	 */
+	public void setHomeId(int homeId) {
+		this.homeId = homeId;
+	}
+	
+	
+}
@@ -0,0 +1,163 @@
+package com.bbailey.smarthome.zwave;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.bbailey.smarthome.zwave.ZwaveAdapter.Subscription;
+import com.bbailey.smarthome.zwave.api.common.Command;
+import com.bbailey.smarthome.zwave.api.common.NodeSource;
+
+/**
+ * The subscriptions to received commands, indexed by command class and, for subscriptions to a
+ * single node, by node id. Delivering a command only visits the subscriptions it matches.
+ *
+ * Changes copy the affected index and publish it as a new snapshot, so commands are delivered
+ * without locking and subscriptions can be added and removed from any thread, including
+ * from a subscriber.
+ */
+class SubscriptionRegistry {
+
+	private static final Subscription<?>[] NONE = new Subscription<?>[0];
+
+	private volatile Map<Class<?>, Index> snapshot = new HashMap<>();
+
+
+	/**
+	 * @param subscription The subscription to add
+	 */
+	public synchronized void add(Subscription<?> subscription) {
+
+		Map<Class<?>, Index> next = new HashMap<>(snapshot);
+		next.put(subscription.getClazz(), next.getOrDefault(subscription.getClazz(), Index.EMPTY).add(subscription));
+		snapshot = next;
+	}
+
+
+	/**
+	 * @param subscription The subscription to remove
+	 * @return True if the subscription was registered
+	 */
+	public synchronized boolean remove(Subscription<?> subscription) {
+
+		Index index = snapshot.get(subscription.getClazz());
+		Index removed = index == null ? null : index.remove(subscription);
+		if (removed == null) {
+			return false;
+		}
+
+		Map<Class<?>, Index> next = new HashMap<>(snapshot);
+		if (removed.isEmpty()) {
+			next.remove(subscription.getClazz());
+		} else {
+			next.put(subscription.getClazz(), removed);
+		}
+		snapshot = next;
+		return true;
+	}
+
+
+	/**
+	 * Deliver a command to the subscriptions for its class and, if it came from a node, to the
+	 * subscriptions for that node
+	 * @param command The command
+	 */
+	public void dispatch(Command command) {
+
+		Index index = snapshot.get(command.getClass());
+		if (index == null) {
+			return;
+		}
+
+		for (Subscription<?> subscription : index.all) {
+			subscription.handle(command);
+		}
+		if (command instanceof NodeSource) {
+			for (Subscription<?> subscription : index.byNode.getOrDefault(((NodeSource)command).getSourceNodeId(), NONE)) {
+				subscription.handle(command);
+			}
+		}
+	}
+
+
+	/**
+	 * The subscriptions to one command class. Never modified once published
+	 */
+	private static class Index {
+
+		private static final Index EMPTY = new Index(NONE, Map.of());
+
+		// Subscriptions to the command from any node
+		private final Subscription<?>[] all;
+
+		private final Map<Integer, Subscription<?>[]> byNode;
+
+
+		private Index(Subscription<?>[] all, Map<Integer, Subscription<?>[]> byNode) {
+			this.all = all;
+			this.byNode = byNode;
+		}
+
+
+		private Index add(Subscription<?> subscription) {
+
+			if (!subscription.hasNodeId()) {
+				return new Index(append(all, subscription), byNode);
+			}
+
+			Map<Integer, Subscription<?>[]> next = new HashMap<>(byNode);
+			next.put(subscription.getNodeId(), append(next.getOrDefault(subscription.getNodeId(), NONE), subscription));
+			return new Index(all, next);
+		}
+
+
+		/**
+		 * @return The index without the subscription, or null if it was not in the index
+		 */
+		private Index remove(Subscription<?> subscription) {
+
+			if (!subscription.hasNodeId()) {
+				Subscription<?>[] remaining = without(all, subscription);
+				return remaining == null ? null : new Index(remaining, byNode);
+			}
+
+			Subscription<?>[] remaining = without(byNode.getOrDefault(subscription.getNodeId(), NONE), subscription);
+			if (remaining == null) {
+				return null;
+			}
+			Map<Integer, Subscription<?>[]> next = new HashMap<>(byNode);
+			if (remaining.length == 0) {
+				next.remove(subscription.getNodeId());
+			} else {
+				next.put(subscription.getNodeId(), remaining);
+			}
+			return new Index(all, next);
+		}
+
+
+		private boolean isEmpty() {
+			return all.length == 0 && byNode.isEmpty();
+		}
+
+
+		private static Subscription<?>[] append(Subscription<?>[] subscriptions, Subscription<?> subscription) {
+			Subscription<?>[] appended = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+			appended[subscriptions.length] = subscription;
+			return appended;
+		}
+
+
+		private static Subscription<?>[] without(Subscription<?>[] subscriptions, Subscription<?> subscription) {
+
+			for (int i = 0 ; i < subscriptions.length ; i++) {
+				if (subscriptions[i] == subscription) {
+					Subscription<?>[] remaining = new Subscription<?>[subscriptions.length - 1];
+					System.arraycopy(subscriptions, 0, remaining, 0, i);
+					System.arraycopy(subscriptions, i + 1, remaining, i, remaining.length - i);
+					return remaining;
+				}
+			}
+			return null;
+		}
+	}
+}
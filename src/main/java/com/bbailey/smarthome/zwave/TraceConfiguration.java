@@ -0,0 +1,58 @@
+package com.bbailey.smarthome.zwave;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.bbailey.smarthome.zwave.trace.Subsystem;
+import com.bbailey.smarthome.zwave.trace.Trace;
+import com.bbailey.smarthome.zwave.trace.TraceLevel;
+
+/**
+ * The trace levels and sample rates applied at startup. Both can be changed
+ * afterwards through the /trace endpoints
+ */
+public class TraceConfiguration {
+
+	private Map<Subsystem, TraceLevel> levels = new EnumMap<>(Subsystem.class);
+
+	private Map<Subsystem, Integer> sampleRates = new EnumMap<>(Subsystem.class);
+
+	/**
+	 * The level each subsystem traces at. Subsystems not listed are off
+	 * @return the levels
+	 */
+	public Map<Subsystem, TraceLevel> getLevels() {
+		return levels;
+	}
+
+	/**
+	 * @param levels the levels to set
+	 */
+	public void setLevels(Map<Subsystem, TraceLevel> levels) {
+		this.levels = levels;
+	}
+
+	/**
+	 * Write one in this many messages for each subsystem. Subsystems not listed write every message
+	 * @return the sampleRates
+	 */
+	public Map<Subsystem, Integer> getSampleRates() {
+		return sampleRates;
+	}
+
+	/**
+	 * @param sampleRates the sampleRates to set
+	 */
+	public void setSampleRates(Map<Subsystem, Integer> sampleRates) {
+		this.sampleRates = sampleRates;
+	}
+
+
+	/**
+	 * Apply the settings to {@link Trace}
+	 */
+	public void apply() {
+		levels.forEach(Trace::setLevel);
+		sampleRates.forEach(Trace::setSampleRate);
+	}
+}
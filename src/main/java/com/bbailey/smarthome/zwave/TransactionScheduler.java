@@ -0,0 +1,175 @@
+package com.bbailey.smarthome.zwave;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+
+/**
+ * Decides which command the adapter sends next.
+ *
+ * Commands are queued per node within a {@link CommandPriority} lane. The highest priority lane
+ * with anything queued is always served first, and within a lane the nodes take turns, one
+ * command each, so a node with a long queue cannot hold up the others. Commands for the same
+ * node are sent in the order they were queued.
+ */
+class TransactionScheduler {
+
+	private final int capacity;
+	private final Lane[] lanes = new Lane[CommandPriority.values().length];
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private int size = 0;
+
+
+	/**
+	 * @param capacity The most commands that can be queued across all lanes
+	 */
+	public TransactionScheduler(int capacity) {
+		this.capacity = capacity;
+		for (int i = 0 ; i < lanes.length ; i++) {
+			lanes[i] = new Lane();
+		}
+	}
+
+
+	/**
+	 * Queue a command
+	 * @param sequence The command's sequence
+	 * @param nodeId The node the command is for, 0 for commands handled by the controller itself
+	 * @param priority The lane
+	 * @throws IllegalStateException If the scheduler is full
+	 */
+	public void submit(CommandSequence sequence, int nodeId, CommandPriority priority) {
+
+		lock.lock();
+		try {
+			if (size >= capacity) {
+				throw new IllegalStateException("Transmit queue is full");
+			}
+			lanes[priority.ordinal()].add(nodeId, sequence);
+			size++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Take the next command to send, waiting if nothing is queued
+	 * @param timeout
+	 * @param unit
+	 * @return The sequence, or null if nothing was queued before the timeout
+	 * @throws InterruptedException
+	 */
+	public CommandSequence poll(long timeout, TimeUnit unit) throws InterruptedException {
+
+		long remaining = unit.toNanos(timeout);
+		lock.lock();
+		try {
+			while (size == 0) {
+				if (remaining <= 0) {
+					return null;
+				}
+				remaining = notEmpty.awaitNanos(remaining);
+			}
+
+			for (Lane lane : lanes) {
+				CommandSequence sequence = lane.next();
+				if (sequence != null) {
+					size--;
+					return sequence;
+				}
+			}
+			throw new IllegalStateException("Scheduler size out of step with its lanes");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Remove everything queued
+	 * @return The removed sequences
+	 */
+	public List<CommandSequence> drain() {
+
+		List<CommandSequence> drained = new ArrayList<>();
+		lock.lock();
+		try {
+			for (Lane lane : lanes) {
+				CommandSequence sequence;
+				while ((sequence = lane.next()) != null) {
+					drained.add(sequence);
+				}
+			}
+			size = 0;
+		} finally {
+			lock.unlock();
+		}
+		return drained;
+	}
+
+
+	/**
+	 * @return The number of commands queued
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * The per-node queues of one priority, served round-robin
+	 */
+	private static class Lane {
+
+		private final Map<Integer, Queue<CommandSequence>> queues = new HashMap<>();
+
+		// Nodes with something queued, in the order they will be served
+		private final Queue<Integer> turns = new ArrayDeque<>();
+
+
+		private void add(int nodeId, CommandSequence sequence) {
+
+			Queue<CommandSequence> queue = queues.computeIfAbsent(nodeId, k -> new ArrayDeque<>());
+			if (queue.isEmpty()) {
+				turns.add(nodeId);
+			}
+			queue.add(sequence);
+		}
+
+
+		private CommandSequence next() {
+
+			Integer nodeId = turns.poll();
+			if (nodeId == null) {
+				return null;
+			}
+
+			Queue<CommandSequence> queue = queues.get(nodeId);
+			CommandSequence sequence = queue.poll();
+			if (queue.isEmpty()) {
+				queues.remove(nodeId);
+			} else {
+				// Back of the line until the other nodes have had a turn
+				turns.add(nodeId);
+			}
+			return sequence;
+		}
+	}
+}
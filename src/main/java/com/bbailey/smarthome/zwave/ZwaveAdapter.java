@@ -1,52 +1,49 @@
 package com.bbailey.smarthome.zwave;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
-import org.apache.logging.log4j.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.SmartLifecycle;
-import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
-import org.springframework.core.type.filter.AnnotationTypeFilter;
-import org.springframework.util.ClassUtils;
 
+import com.bbailey.smarthome.zwave.api.CommandRegistry;
 import com.bbailey.smarthome.zwave.api.SoftReset;
 import com.bbailey.smarthome.zwave.api.common.Command;
-import com.bbailey.smarthome.zwave.api.common.CommandFlow;
-import com.bbailey.smarthome.zwave.api.common.CommandFrame;
+import com.bbailey.smarthome.zwave.api.common.CommandDecoder;
+import com.bbailey.smarthome.zwave.api.common.CommandFailedException;
+import com.bbailey.smarthome.zwave.api.common.CommandRegistration;
 import com.bbailey.smarthome.zwave.api.common.CommandSequence;
 import com.bbailey.smarthome.zwave.api.common.CommandSequence.SequenceState;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
-import com.bbailey.smarthome.zwave.api.common.NoResponse;
+import com.bbailey.smarthome.zwave.api.common.NodeSource;
+import com.bbailey.smarthome.zwave.api.common.NodeTarget;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+import com.bbailey.smarthome.zwave.api.common.SessionCommand;
 import com.bbailey.smarthome.zwave.protocol.AcknowledgeFrame;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
 import com.bbailey.smarthome.zwave.protocol.CancelFrame;
 import com.bbailey.smarthome.zwave.protocol.DataFrame;
 import com.bbailey.smarthome.zwave.protocol.DataFrame.CommandType;
+import com.bbailey.smarthome.zwave.protocol.FrameDecoder;
+import com.bbailey.smarthome.zwave.protocol.FrameWriter;
 import com.bbailey.smarthome.zwave.protocol.NonAcknowledgeFrame;
 import com.bbailey.smarthome.zwave.protocol.ZwaveFrame;
 import com.bbailey.smarthome.zwave.protocol.ZwaveFrame.FrameType;
+import com.bbailey.smarthome.zwave.trace.Subsystem;
+import com.bbailey.smarthome.zwave.trace.Trace;
+import com.bbailey.smarthome.zwave.trace.TraceLevel;
+import com.bbailey.smarthome.zwave.transport.ZwaveTransport;
 import com.bbailey.smarthome.zwave.utils.BitUtils;
-import com.fazecast.jSerialComm.SerialPort;
-import com.fazecast.jSerialComm.SerialPortDataListener;
-import com.fazecast.jSerialComm.SerialPortEvent;
 
 
 
@@ -56,62 +53,73 @@ public class ZwaveAdapter implements SmartLifecycle {
 	
 	private final static Logger LOGGER = LoggerFactory.getLogger(ZwaveAdapter.class);
 	
+	// Threads delivering commands from nodes, on top of the controller's own lane
+	private static final int DISPATCH_STRIPES = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	
 	private final SerialIoHandler serialIoHandler;
-	private final ExecutorService executor;
-	private final BlockingQueue<Command> receivedQueue = new ArrayBlockingQueue<>(1000);
+	private final EventDispatcher dispatcher;
+	private final ExecutorService transmitter;
+	private final ScheduledThreadPoolExecutor completer;
+	private final TransactionScheduler scheduler = new TransactionScheduler(1000);
 	
 	private boolean running = false;
 	
-	private final Map<Integer, CommandMetaData> commandMap = new HashMap<>();
+	// Indexed by command id
+	private final CommandRegistration[] commands = new CommandRegistration[256];
+	
+	// Indexed by CommandType ordinal then command id, so decoding a frame is two array reads
+	private final CommandDecoder[][] decoders = new CommandDecoder[CommandType.values().length][256];
+	
+	// The sequence holding the link until the module has responded to it
+	private volatile CommandSequence inflightSequence = null;
 	
-	private CommandSequence inflightSequence = null;
+	// Sequences that have released the link and are waiting for their callback
+	private final InflightTable inflight = new InflightTable();
+	
+	private final AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
 	
 	private volatile int sessionId = 1;
 	
-	private Set<Subscription<? extends Command>> subscriptions = new HashSet<>();
+	private final SubscriptionRegistry subscriptions = new SubscriptionRegistry();
+	
+	public ZwaveAdapter(ZwaveTransport transport) {
+		this(transport, new DispatchConfiguration());
+	}
+	
 	
-	public ZwaveAdapter(SerialPort serialPort) {
+	public ZwaveAdapter(ZwaveTransport transport, DispatchConfiguration dispatchConfig) {
 		
-		this.serialIoHandler = new SerialIoHandler(serialPort);
+		this.serialIoHandler = new SerialIoHandler(transport);
 		
-		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-
-			@Override
-			public Thread newThread(Runnable r) {
-				return new Thread(r, "event-listener");
-			}
-			
-		});
-
+		dispatcher = new EventDispatcher(DISPATCH_STRIPES, dispatchConfig.getCapacity(), dispatchConfig.getOverflowPolicy(), this::deliver);
 		
+		transmitter = Executors.newSingleThreadExecutor(r -> new Thread(r, "command-transmit"));
+		completer = new ScheduledThreadPoolExecutor(1, r -> new Thread(r, "command-complete"));
+		completer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
 		
 		/*
 		 * Setup the meta data needed to understand how to route responses.
 		 * This is taken from section 4.3 of the Z-Wave Host API Specification doc
+		 * and generated from the @CommandFrame annotations at build time
 		 */
-		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
-		provider.addIncludeFilter(new AnnotationTypeFilter(CommandFrame.class));
-		
-		Set<BeanDefinition> beanDefinitions = provider.findCandidateComponents(this.getClass().getPackageName());
-		for (BeanDefinition beanDefinition : beanDefinitions) {
-			
-			LOGGER.info("Class name: {}", beanDefinition.getBeanClassName());
-			try {
-				Class<?> clazz = ClassUtils.getDefaultClassLoader().loadClass(beanDefinition.getBeanClassName());
-				CommandFrame commandFrame = clazz.getAnnotation(CommandFrame.class);
-				CommandMetaData metaData = new CommandMetaData(
-						commandFrame.flow(),
-						commandFrame.requestClass(),
-						commandFrame.responseClass(),
-						commandFrame.callbackClass()
-					);
-				LOGGER.info("Registering command: {}, req: {}, resp: {}", BitUtils.toHex(commandFrame.value()), commandFrame.requestClass().getSimpleName(), commandFrame.responseClass().getSimpleName());
-				commandMap.put(commandFrame.value(), metaData);
-			} catch (Exception e) {
-				LOGGER.error("Failed to load class {} - {}", beanDefinition.getBeanClassName(), e.getMessage());
-			}
+		for (CommandRegistration registration : CommandRegistry.getCommands()) {
+			LOGGER.debug("Registering command: {}, req: {}", BitUtils.toHex(registration.getCommandId()), registration.getRequestClass().getSimpleName());
+			register(registration);
 		}
+	}
+	
 	
+	/**
+	 * Register a command and its decoders for the frames it can receive
+	 * @param registration The command's flow and decoders
+	 */
+	private void register(CommandRegistration registration) {
+		
+		int commandId = registration.getCommandId();
+		commands[commandId] = registration;
+		for (CommandType commandType : CommandType.values()) {
+			decoders[commandType.ordinal()][commandId] = registration.getDecoder(commandType);
+		}
 	}
 	
 	
@@ -129,13 +137,39 @@ public class ZwaveAdapter implements SmartLifecycle {
 		return s;
 	}
 	
-	public <T extends Command> void subscribe(Class<T> clazz, Consumer<T> consumer) {
-		subscribe(clazz, consumer, null);
+	public <T extends Command> Subscription<T> subscribe(Class<T> clazz, Consumer<T> consumer) {
+		return subscribe(clazz, consumer, null);
 	}
 	
-	public <T extends Command> void subscribe(Class<T> clazz, Consumer<T> consumer, Predicate<T> filter) {
+	public <T extends Command> Subscription<T> subscribe(Class<T> clazz, Consumer<T> consumer, Predicate<T> filter) {
 		Subscription<T> subscription = new Subscription<>(clazz, consumer, filter);
 		subscriptions.add(subscription);
+		return subscription;
+	}
+	
+	
+	/**
+	 * Subscribe to a command from a single node. Unlike filtering on the node id, the
+	 * subscription is only visited for commands from that node
+	 * @param <T>
+	 * @param clazz The command class
+	 * @param nodeId The node the command must come from
+	 * @param consumer The subscriber
+	 * @return The subscription
+	 */
+	public <T extends Command & NodeSource> Subscription<T> subscribe(Class<T> clazz, int nodeId, Consumer<T> consumer) {
+		Subscription<T> subscription = new Subscription<>(clazz, nodeId, consumer, null);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+	
+	
+	/**
+	 * @param subscription The subscription to remove
+	 * @return True if the subscription was registered
+	 */
+	public boolean unsubscribe(Subscription<?> subscription) {
+		return subscriptions.remove(subscription);
 	}
 	
 
@@ -144,31 +178,9 @@ public class ZwaveAdapter implements SmartLifecycle {
 	public void start() {
 		LOGGER.info("Starting the Zwave adapter");
 		running = true;
+		dispatcher.start();
 		serialIoHandler.openPort();
-		Runnable notifier = new Runnable() {
-
-			@Override
-			public void run() {
-				
-				while (running) {
-					Command command;
-					try {
-						command = receivedQueue.poll(100, TimeUnit.MILLISECONDS);
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						return;
-					}
-					if (command != null) {
-						LOGGER.info("Notifying listeners for {}", command);
-						notifyListeners(command);
-					}
-				}
-				
-			}
-			
-		};
-		
-		executor.submit(notifier);
+		transmitter.submit(this::transmitLoop);
 	}
 
 
@@ -178,13 +190,15 @@ public class ZwaveAdapter implements SmartLifecycle {
 		LOGGER.info("Stopping the Zwave adapter");
 		running = false;
 		
-		try {
-			if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-				executor.shutdown();
-			}
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-		}
+		// The worker threads block rather than poll, so they are interrupted to stop them
+		transmitter.shutdownNow();
+		dispatcher.stop();
+		awaitTermination(transmitter);
+		
+		// The transmit thread has finished with its sequence so everything left can be failed
+		scheduler.drain().forEach(this::finish);
+		inflight.clear().forEach(this::finish);
+		completer.shutdown();
 		
 		if (!serialIoHandler.closePort()) {
 			LOGGER.warn("Failed to close serial-port on shutdown");
@@ -198,298 +212,533 @@ public class ZwaveAdapter implements SmartLifecycle {
 	}
 	
 	
+	/**
+	 * Get the queue depth and counters of the lanes delivering received commands
+	 * @return The statistics of each lane
+	 */
+	public List<DispatchStatistics> getDispatchStatistics() {
+		return dispatcher.getStatistics();
+	}
+	
+	
+	private static void awaitTermination(ExecutorService service) {
+		try {
+			if (!service.awaitTermination(5, TimeUnit.SECONDS)) {
+				LOGGER.warn("Timed out waiting for adapter threads to stop");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	
 	/**
 	 * Send a command to the zwave module and wait for the appropriate
 	 * response
 	 * @param request The request to send
-	 * @return The completed command sequence with any responses
-	 * or callback data included
+	 * @return The finished command sequence with any response or callback included
+	 */
+	public CommandSequence sendCommand(SerializableCommand request) {
+		
+		CommandSequence sequence = queue(request, targetNodeId(request), CommandPriority.INTERACTIVE);
+		try {
+			sequence.getFuture().join();
+		} catch (CompletionException e) {
+			// The sequence records the failure
+		}
+		return sequence;
+	}
+	
+	
+	/**
+	 * Queue a command for the zwave module without waiting for it. The returned future completes
+	 * with the sequence for this request, so its own response and callback are available without
+	 * subscribing to every command of that type.
+	 * 
+	 * Dependent stages run in completion order on a single thread, so they must not block waiting for
+	 * another command. Use this method rather than {@link #sendCommand(SerializableCommand)} to chain
+	 * further commands.
+	 * @param request The request to send
+	 * @return A future completing with the finished sequence, or failing with a
+	 * {@link CommandFailedException} if the sequence did not complete
+	 */
+	public CompletableFuture<CommandSequence> sendCommandAsync(SerializableCommand request) {
+		return sendCommandAsync(request, targetNodeId(request), CommandPriority.INTERACTIVE);
+	}
+	
+	
+	/**
+	 * Queue a command for the zwave module in a priority lane. Commands for the same node are
+	 * sent in the order they were queued, and the nodes in a lane take turns
+	 * @param request The request to send
+	 * @param nodeId The node the command is queued for, 0 for the controller itself
+	 * @param priority The lane to queue the command in
+	 * @return A future completing with the finished sequence
+	 * @see #sendCommandAsync(SerializableCommand)
+	 */
+	public CompletableFuture<CommandSequence> sendCommandAsync(SerializableCommand request, int nodeId, CommandPriority priority) {
+		return queue(request, nodeId, priority).getFuture();
+	}
+	
+	
+	/**
+	 * Run a task after a delay on the thread that completes command futures. Like the dependent
+	 * stages of those futures the task must not block, but it can queue further commands
+	 * @param task The task
+	 * @param delay The delay
+	 * @param unit The unit of the delay
+	 * @return The future of the task, which can be used to cancel it
 	 */
-	public void sendCommand(SerializableCommand request) {
+	public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+		return completer.schedule(task, delay, unit);
+	}
+	
+	
+	private static int targetNodeId(SerializableCommand request) {
+		return request instanceof NodeTarget ? ((NodeTarget)request).getTargetNodeId() : 0;
+	}
+	
+	
+	private CommandSequence queue(SerializableCommand request, int nodeId, CommandPriority priority) {
 		
-		CommandMetaData metaData = commandMap.get(request.getCommandId());
-		if (metaData == null) {
+		CommandRegistration registration = commands[request.getCommandId() & 0xFF];
+		if (registration == null) {
 			throw new IllegalArgumentException("No command mapping for: " + BitUtils.toHex(request.getCommandId()));
 		}
 		
-		CommandSequence sequence = new CommandSequence(request, metaData.getFlow());
-		inflightSequence = sequence;
+		CommandSequence sequence = new CommandSequence(request, registration.getFlow());
+		scheduler.submit(sequence, nodeId, priority);
+		Trace.log(Subsystem.COMMAND, TraceLevel.DEBUG, "Queued command {} for node {} as {}", BitUtils.toHex(request.getCommandId()), nodeId, priority);
+		return sequence;
+	}
+	
+	
+	/**
+	 * Send queued commands one at a time, in the order the scheduler picks them. Each request holds the link until the module has
+	 * responded to it. Requests whose callback carries a session id then release the link,
+	 * so the next request can be sent while the RF transmission completes.
+	 * 
+	 * Between commands the thread sleeps until either a command is queued or the next callback
+	 * is due, so an idle adapter does not wake up at all.
+	 */
+	private void transmitLoop() {
 		
-		// move it into the started state
-		sequence.startSequence();
-		while (sequence.canTransmit()) {
-				
-			LOGGER.info("Command {}: attempt {} / {}", BitUtils.toHex(request.getCommandId()), sequence.getAttempt(), sequence.getNumRetries());
-			serialIoHandler.sendFrame(new DataFrame(sequence.getRequest()));
+		while (running) {
+			CommandSequence sequence;
+			try {
+				sequence = scheduler.poll(inflight.nanosUntilNextDeadline(System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (sequence != null) {
+				try {
+					transmit(sequence);
+				} catch (RuntimeException e) {
+					// One broken sequence must not take the only transmit thread down with it
+					LOGGER.error("Failed to transmit command {}", BitUtils.toHex(sequence.getRequest().getCommandId()), e);
+					inflightSequence = null;
+					if (!sequence.isComplete()) {
+						finish(sequence);
+					}
+				}
+			}
 			
-			// Wait for the command the complete
-			if (!sequence.waitForCompletion(30000, TimeUnit.MILLISECONDS)) {
-				if (sequence.getState() == SequenceState.WAITING_FOR_ACK) {
-					LOGGER.warn("Timed out waiting for ACK - retrying");
-					sequence.retry();
+			for (CommandSequence expired : inflight.expire(System.nanoTime())) {
+				LOGGER.warn("Timed out waiting for callback to command {}", BitUtils.toHex(expired.getRequest().getCommandId()));
+				if (expired.getState() == SequenceState.WAITING_FOR_CALLBACK) {
+					timeouts.timedOut(expired, SequenceState.WAITING_FOR_CALLBACK);
 				}
-				// TODO: Need to handle callbacks delays being longer.
+				finish(expired);
+			}
+		}
+	}
+	
+	
+	private void transmit(CommandSequence sequence) {
+		
+		SerializableCommand request = sequence.getRequest();
+		
+		// A callback with a session id can be matched to its request without holding the link
+		boolean pipelined = sequence.getFlow().hasCallback() && request instanceof SessionCommand;
+		int requestSessionId = pipelined ? ((SessionCommand)request).getSessionId() : 0;
+		if (pipelined) {
+			// Added before sending so a callback can never arrive ahead of its entry
+			CommandSequence previous = inflight.add(sequence, requestSessionId, deadline(AdaptiveTimeouts.CALLBACK_CEILING_MS));
+			if (previous != null) {
+				LOGGER.warn("Session {} reused before its callback arrived - abandoning the earlier command", requestSessionId);
+				finish(previous);
+			}
+		}
+		
+		inflightSequence = sequence;
+		while (sequence.canTransmit()) {
+			
+			if (sequence.getAttempt() > 1 && !backoff(sequence.getAttempt() - 2)) {
 				break;
-			} else {
+			}
+			
+			if (sequence.isComplete()) {
+				// A late callback finished the sequence while it waited to be retransmitted
 				break;
 			}
+			
+			// move it into the started state
+			sequence.startSequence();
+			Trace.log(Subsystem.COMMAND, TraceLevel.INFO, "Command {}: attempt {} / {}", BitUtils.toHex(request.getCommandId()), sequence.getAttempt(), sequence.getNumRetries());
+			serialIoHandler.sendFrame(new DataFrame(request));
+			
+			// Each stage gets its own timeout, so a lost ACK is retried after about a second and a half
+			if (!sequence.waitForStateChange(SequenceState.WAITING_FOR_ACK, timeouts.ackTimeout(sequence), TimeUnit.MILLISECONDS)) {
+				LOGGER.warn("Timed out waiting for ACK - retrying");
+				sequence.retry();
+				continue;
+			}
+			
+			if (sequence.getState() == SequenceState.PENDING) {
+				// Refused with a NAK or CAN
+				Trace.log(Subsystem.COMMAND, TraceLevel.INFO, "Command {} refused by the module - retrying", BitUtils.toHex(request.getCommandId()));
+				sequence.retry();
+				continue;
+			}
+			
+			if (!sequence.waitForStateChange(SequenceState.WAITING_FOR_RESPONSE, timeouts.responseTimeout(sequence), TimeUnit.MILLISECONDS)) {
+				LOGGER.warn("Timed out waiting for response to command {}", BitUtils.toHex(request.getCommandId()));
+				timeouts.timedOut(sequence, SequenceState.WAITING_FOR_RESPONSE);
+				break;
+			}
+			
+			// The callback of a pipelined command is waited for in the inflight table instead
+			if (!pipelined && !sequence.waitForStateChange(SequenceState.WAITING_FOR_CALLBACK, timeouts.callbackTimeout(sequence), TimeUnit.MILLISECONDS)) {
+				LOGGER.warn("Timed out waiting for callback to command {}", BitUtils.toHex(request.getCommandId()));
+				timeouts.timedOut(sequence, SequenceState.WAITING_FOR_CALLBACK);
+			}
+			break;
+		}
+		inflightSequence = null;
+		
+		// Out of attempts without the module acknowledging, so the module itself is in trouble
+		boolean unacknowledged = !sequence.canTransmit() && !sequence.isComplete();
+		
+		if (pipelined) {
+			if (sequence.getState() == SequenceState.WAITING_FOR_CALLBACK) {
+				// The callback is routed from the inflight table, which now owns the sequence
+				inflight.extend(sequence, requestSessionId, deadline(timeouts.callbackTimeout(sequence)));
+				Trace.log(Subsystem.COMMAND, TraceLevel.DEBUG, "Command {}: waiting for callback to session {}", BitUtils.toHex(request.getCommandId()), requestSessionId);
+				return;
+			}
+			if (!inflight.remove(sequence, requestSessionId)) {
+				// Already taken by its callback
+				return;
+			}
 		}
 		
-		// If still not complete after retries issue a soft reset
-		if (!sequence.isComplete() && request.getCommandId() != SoftReset.COMMAND_ID) {
-			//reset();
+		finish(sequence);
+		
+		if (unacknowledged && running && request.getCommandId() != SoftReset.COMMAND_ID) {
+			softReset(sequence);
+		}
+	}
+	
+	
+	/**
+	 * Wait before retransmitting a request
+	 * @param retransmission The number of retransmissions already made
+	 * @return False if interrupted
+	 */
+	private boolean backoff(int retransmission) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(AdaptiveTimeouts.retransmitDelay(retransmission));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
 		}
 	}
 	
+	
+	/**
+	 * Escalate a request the module never acknowledged. The link is resynchronised and the
+	 * module soft reset, which it reports with an ApiStarted request once it is back
+	 * @param failed The sequence that failed
+	 */
+	private void softReset(CommandSequence failed) {
+		
+		LOGGER.error("Command {} was not acknowledged after {} attempts - soft resetting the module",
+				BitUtils.toHex(failed.getRequest().getCommandId()), failed.getNumRetries());
+		
+		serialIoHandler.recover();
+		CommandSequence reset = new CommandSequence(new SoftReset.Request(), commands[SoftReset.COMMAND_ID].getFlow());
+		reset.setNumRetries(1);
+		transmit(reset);
+	}
+	
+	
+	/**
+	 * Fail the sequence if it did not complete and publish its outcome to the caller
+	 * @param sequence The sequence
+	 */
+	private void finish(CommandSequence sequence) {
+		
+		if (!sequence.markAsFailed() && sequence.getState() == SequenceState.COMPLETE) {
+			timeouts.record(sequence);
+		}
+		
+		completer.execute(sequence::publish);
+	}
+	
+	
+	private static long deadline(long timeoutMs) {
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+	}
+	
 
 	/**
-	 * Notify all subscriptions that we have received a command message
-	 * @param <T>
+	 * Notify the subscriptions matching a received command message. Called on the command's
+	 * dispatch lane
 	 * @param command The command message
 	 */
-	private <T extends Command> void notifyListeners(T command) {
-
-		LOGGER.info("Received: {}", command);
+	private void deliver(Command command) {
 		
-		for (Subscription<? extends Command> subscription : subscriptions) {
-			if (command.getClass().equals(subscription.getClazz())) {
-				subscription.handle(command);
-			}
+		Trace.log(Subsystem.DISPATCH, TraceLevel.DEBUG, "Notifying listeners for {}", command);
+		try {
+			subscriptions.dispatch(command);
+		} finally {
+			// Subscribers are done so any pooled payload can be recycled
+			((DeserializableCommand)command).release();
 		}
 	}
 	
 	
 	private void handleACK(AcknowledgeFrame frame) {
 		
-		if (inflightSequence == null) {
+		CommandSequence sequence = inflightSequence;
+		if (sequence == null || !sequence.acknowledgeRequest()) {
+			// e.g. a late ACK for a request already waiting to be retransmitted
 			LOGGER.warn("Received unexpected ACK");
-		} else {
-			inflightSequence.acknowledgeRequest();
 		}
 	}
 	
 	private void handleNAK(NonAcknowledgeFrame frame) {
-		LOGGER.info("NAK received");
+		rejectRequest(frame.getFrameType());
 	}
 	
-	private void handleSOF(DataFrame frame) {
+	
+	/**
+	 * The module refused the frame we sent, either because it was corrupted (NAK) or because it
+	 * collided with a frame the module was sending (CAN). The transmit thread retransmits it
+	 * @param frameType The NAK or CAN frame type
+	 */
+	private void rejectRequest(FrameType frameType) {
 		
-		int expectedChecksum = frame.calculateChecksum();
-		if (expectedChecksum != frame.getChecksum()) {
-			// Checksum does not match, send a NAK frame to trigger a resend
-			LOGGER.warn("Invalid checksum: received {} - expected {}", BitUtils.toHex(frame.getChecksum()), BitUtils.toHex(expectedChecksum));
-			serialIoHandler.sendFrame(ZwaveFrame.of(FrameType.NAK));
-			return;
+		CommandSequence sequence = inflightSequence;
+		if (sequence == null || !sequence.rejectRequest()) {
+			LOGGER.warn("Received unexpected {}", frameType);
+		} else {
+			Trace.log(Subsystem.COMMAND, TraceLevel.DEBUG, "{} received for command {}", frameType, BitUtils.toHex(sequence.getRequest().getCommandId()));
 		}
+	}
+	
+	private void handleSOF(DataFrame frame) {
 		
-		// The frame is valid so we should ACK
-		serialIoHandler.sendFrame(ZwaveFrame.of(FrameType.ACK));
+		// The frame has been validated by the decoder so we should ACK
+		serialIoHandler.sendControl(FrameType.ACK);
 		
-		CommandMetaData metaData = commandMap.get(frame.getCommandId());
-		if (metaData == null) {
-			LOGGER.info("Received data-frame for unknown command {} - discarding", BitUtils.toHex(frame.getCommandId()));
-			return;
+		try {
+			processDataFrame(frame);
+		} finally {
+			// The command has been decoded so the frame can go back to the pool
+			frame.release();
 		}
+	}
+	
+	
+	private void processDataFrame(DataFrame frame) {
 		
-		Class<? extends Command> clazz = metaData.getAppropriateClass(frame.getType());
-		Constructor<? extends Command> constructor;
-		try {
-			constructor = clazz.getConstructor(Buffer.class);
-		} catch (NoSuchMethodException | SecurityException e) {
-			LOGGER.error("Failed to find constructor for {} - {}", clazz.getSimpleName(), e.getMessage());
-			throw new RuntimeException(e);
+		CommandRegistration registration = commands[frame.getCommandId()];
+		CommandDecoder decoder = decoders[frame.getType().ordinal()][frame.getCommandId()];
+		if (registration == null || decoder == null) {
+			LOGGER.info("Received data-frame for unknown command {} - discarding", BitUtils.toHex(frame.getCommandId()));
+			return;
 		}
 		
 		Command command;
 		try {
-			command = constructor.newInstance(frame.getCommandPayload());
-		} catch (Exception e) {
-			LOGGER.error("Failed to constructor new instance of {} - {}", clazz.getName(), e.getMessage());
-			throw new RuntimeException(e);
+			command = decoder.decode(frame.getCommandPayload());
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed to decode command {} - {}", BitUtils.toHex(frame.getCommandId()), e.getMessage());
+			throw e;
 		}
 		
-		receivedQueue.add(command);
+		dispatcher.dispatch(command);
 		
-		if (inflightSequence == null) {
-			LOGGER.info("Received unsolicited command {} - discarding", BitUtils.toHex(command.getCommandId()));
+		CommandSequence sequence = matchSequence(frame.getType(), registration, command);
+		if (sequence == null) {
+			Trace.log(Subsystem.COMMAND, TraceLevel.DEBUG, "Received unsolicited command {}", BitUtils.toHex(command.getCommandId()));
 			return;
-		} else {
-			
-			if (frame.getType() == CommandType.REQUEST) {
-				if (metaData.getFlow().hasCallback()) {
-					// Mark that we have received a callback
-					inflightSequence.updateCallback(command);
-				}
-			} else {
-				inflightSequence.updateResponse(command);
+		}
+		
+		if (frame.getType() == CommandType.RESPONSE) {
+			if (!sequence.updateResponse((DeserializableCommand)command)) {
+				LOGGER.warn("Received response for command {} in state {} - ignoring", BitUtils.toHex(command.getCommandId()), sequence.getState());
 			}
+		} else if (!sequence.updateCallback((DeserializableCommand)command)) {
+			// A pipelined sequence taken from the inflight table is failed below, as nothing else tracks it now
+			LOGGER.warn("Received callback for command {} in state {} - ignoring", BitUtils.toHex(command.getCommandId()), sequence.getState());
+		}
+		
+		if (command instanceof SessionCommand && frame.getType() == CommandType.REQUEST) {
+			// Taken from the inflight table so the transmit thread is no longer tracking it
+			finish(sequence);
 		}
 	}
 	
-	private void handleCAN(CancelFrame frame) {
-		LOGGER.info("CAN received");
-	}
 	
-	private void logFrame(String prefix, byte[] buffer) {
-		String[] hex = new String[buffer.length];
-		for (int i = 0 ; i < buffer.length ; i++) {
-			hex[i] = BitUtils.toHex(buffer[i]);
+	/**
+	 * Find the sequence a received response or callback belongs to
+	 * @return The sequence or null if the command was not expected
+	 */
+	private CommandSequence matchSequence(CommandType type, CommandRegistration registration, Command command) {
+		
+		if (type == CommandType.REQUEST) {
+			if (!registration.getFlow().hasCallback()) {
+				return null;
+			}
+			if (command instanceof SessionCommand) {
+				return inflight.remove(command.getCommandId(), ((SessionCommand)command).getSessionId());
+			}
 		}
 		
-		LOGGER.info("{} - [{}]", prefix, Strings.join(Arrays.asList(hex), ','));
+		CommandSequence sequence = inflightSequence;
+		if (sequence == null || sequence.getRequest().getCommandId() != command.getCommandId()) {
+			return null;
+		}
+		return sequence;
+	}
+	
+	private void handleCAN(CancelFrame frame) {
+		rejectRequest(frame.getFrameType());
 	}
 	
 
-	private class SerialIoHandler implements SerialPortDataListener {
-		
-		private enum ReadState {
-			WAITING_FOR_FRAME,
-			WAITING_FOR_LENGTH,
-			READING_FRAME;
-		}
+	private class SerialIoHandler implements ZwaveTransport.Receiver, FrameDecoder.FrameListener, FrameWriter.FrameOutput, FrameWriter.WriteListener {
 		
-		private final SerialPort serialPort;
-		private final ReentrantLock lock = new ReentrantLock();
+		private final ZwaveTransport transport;
+		private final FrameDecoder decoder = new FrameDecoder(this);
+		private final FrameWriter writer = new FrameWriter(this, this);
 		
 		private final AdapterStatistics rxStats = new AdapterStatistics();
 		private final AdapterStatistics txStats = new AdapterStatistics();
 		
-		private ReadState state = ReadState.WAITING_FOR_FRAME;
-		private int expectedLength = -1;
-		private int bytesReceived = 0;
-		private byte[] buffer;
 		
-		
-		public SerialIoHandler(SerialPort serialPort) {
-			this.serialPort = serialPort;
-			this.serialPort.addDataListener(this);
-			
+		public SerialIoHandler(ZwaveTransport transport) {
+			this.transport = transport;
 		}
 		
 		public boolean openPort() {
-			boolean isOpen = serialPort.openPort(100);
+			LOGGER.info("Opening transport {}", transport.getName());
+			boolean isOpen = transport.open(this);
 			if (!isOpen) {
-				LOGGER.error("Failed to open serial port");
+				LOGGER.error("Failed to open transport {}", transport.getName());
 				return false;
 			}
 			
-			// Send a NAK to reset any partial transaction
-			sendFrame(ZwaveFrame.of(FrameType.NAK));
+			writer.start();
+			
+			// Discard anything left over from before we opened and NAK any partial transaction
+			recover();
 			return true;
 		}
 		
 		
 		public boolean closePort() {
-			serialPort.removeDataListener();
-			return serialPort.closePort();
+			writer.stop();
+			return transport.close();
 		}
 		
 		
+		/**
+		 * Queue a frame on the writer thread. This never blocks on the receive path
+		 * @param frame The frame to send
+		 */
+		public void sendFrame(ZwaveFrame frame) {
+			writer.send(frame);
+		}
+		
 		
 		/**
-		 * @return the state
+		 * Queue one of the single byte ACK, NAK and CAN frames. These are sent
+		 * ahead of any data frames waiting to be written.
+		 * @param frameType The control frame to send
 		 */
-		private ReadState getState() {
-			return state;
+		public void sendControl(FrameType frameType) {
+			writer.send(ZwaveFrame.of(frameType));
 		}
-
+		
+		
 		/**
-		 * @param state the state to set
+		 * Recover from a framing error. This is the only point where buffered
+		 * bytes are discarded, as flushing during normal operation can drop bytes the
+		 * module has already queued for us. A NAK is then sent to trigger a resend.
 		 */
-		private void setState(ReadState state) {
-			this.state = state;
-			
-			if (state != ReadState.WAITING_FOR_FRAME && !lock.isHeldByCurrentThread()) {
-				LOGGER.info("READ: Locking");
-				lock.lock();
-				LOGGER.info("READ: Locked");
-			}
+		private void recover() {
+			decoder.reset();
+			transport.discardBuffers();
+			sendControl(FrameType.NAK);
+		}
+		
+		
+		@Override
+		public void write(byte[] packet) throws IOException {
+			transport.write(packet);
+		}
+		
+		
+		@Override
+		public void write(int value) throws IOException {
+			transport.write(value);
+		}
+		
+		
+		@Override
+		public void onFrameWritten(ZwaveFrame frame, byte[] packet) {
 			
-			if (state == ReadState.WAITING_FOR_FRAME && lock.isHeldByCurrentThread()) {
-				LOGGER.info("READ: Unlocking");
-				lock.unlock();
-				LOGGER.info("READ: unlocked");
+			txStats.record(frame.getFrameType());
+			if (packet != null) {
+				Trace.hex(Subsystem.FRAME, TraceLevel.DEBUG, "SEND", packet);
+			} else {
+				Trace.log(Subsystem.FRAME, TraceLevel.DEBUG, "SEND {}", frame.getFrameType());
 			}
-
 		}
-
-		public void sendFrame(ZwaveFrame frame) {
-			
-			byte[] packet = frame.serialize();
+		
+		@Override
+		public void onFrame(ZwaveFrame frame) {
 			
-				
-			try {
-				
-				LOGGER.info("WRITE: Locking");
-				lock.lock();
-				LOGGER.info("WRITE: Locked");
-				
+			if (Trace.isEnabled(Subsystem.FRAME, TraceLevel.DEBUG)) {
 				if (frame.getFrameType() == FrameType.SOF) {
-					logFrame("SEND", packet);
+					Trace.hex(Subsystem.FRAME, TraceLevel.DEBUG, "REC", frame.serialize());
 				} else {
-					LOGGER.info("SEND {}", frame.getFrameType());
-				}
-				
-				txStats.record(frame.getFrameType());
-				serialPort.flushIOBuffers();
-				serialPort.getOutputStream().write(packet);
-				serialPort.getOutputStream().flush();
-			} catch (IOException e) {
-				LOGGER.error("Failed to send frame - {}", e.getMessage());
-			} finally {
-				if (lock.isHeldByCurrentThread()) {
-					LOGGER.info("WRITE: Unlocking");
-					lock.unlock();
-					LOGGER.info("WRITE: Unlocked");
+					Trace.log(Subsystem.FRAME, TraceLevel.DEBUG, "REC {}", frame.getFrameType());
 				}
 			}
+			onFrameReceived(frame);
 		}
 		
-		private void handleByte(int nextByte) {
-			
-			LOGGER.info("Received byte {} : {}", BitUtils.toHex(nextByte), getState());
-			
-			switch (getState()) {
-			case WAITING_FOR_FRAME:
-				// Start a new frame
-				FrameType frameType = FrameType.fromProtocolValue(nextByte).orElse(null);
-				if (frameType == FrameType.SOF) {
-					setState(ReadState.WAITING_FOR_LENGTH);
-				} else {
-					// All other frames are just a single byte
-					setState(ReadState.WAITING_FOR_FRAME);
-					if (frameType == null) {
-						// This is an out-of-frame byte. We will ignore
-						LOGGER.warn("Received byte {} out of frame - ignoring", BitUtils.toHex(nextByte));
-						rxStats.recordOutOffFrame();
-					} else {
-						onFrameReceived(ZwaveFrame.of(frameType));
-					}
-				}
-				break;
-			case WAITING_FOR_LENGTH:
-				// Read the frame length
-				expectedLength = nextByte;
-				if (expectedLength < 4 || expectedLength > 64) {
-					LOGGER.error("Frame length {} is not valid", expectedLength);
-				}
-				buffer = new byte[expectedLength];
-				bytesReceived = 0;
-				setState(ReadState.READING_FRAME);
-				break;
-			case READING_FRAME:
-				buffer[bytesReceived++] = (byte)(nextByte & 0xFF);
-				if (bytesReceived == expectedLength) {
-					// This is the full frame received
-					setState(ReadState.WAITING_FOR_FRAME);
-					logFrame("REC", buffer);
-					onFrameReceived(new DataFrame(expectedLength, buffer));
-				}
-				break;
-			}
+		
+		@Override
+		public void onInvalidFrame(String reason) {
+			// Send a NAK frame to trigger a resend
+			LOGGER.warn("Received invalid frame - {}", reason);
+			onFrameError();
 		}
 		
 		
+		@Override
+		public void onOutOfFrame(int value) {
+			// This is an out-of-frame byte. We will ignore
+			Trace.log(Subsystem.FRAME, TraceLevel.INFO, "Received byte {} out of frame - ignoring", BitUtils.toHex(value));
+			rxStats.recordOutOffFrame();
+		}
 		
 		
 		private void onFrameReceived(ZwaveFrame frame) {
@@ -516,152 +765,33 @@ public class ZwaveAdapter implements SmartLifecycle {
 		
 		
 		private void onFrameError() {	
-			// Send a NAK to reset things
-			sendFrame(ZwaveFrame.of(FrameType.NAK));
+			// Discard the bad data and send a NAK to reset things
+			recover();
 		}
 		
 		
 		@Override
-		public int getListeningEvents() {
-			Thread.currentThread().setName("serial-receive");
-			return SerialPort.LISTENING_EVENT_DATA_RECEIVED;
-		}
-
-		@Override
-		public void serialEvent(SerialPortEvent event) {
+		public void onData(byte[] data) {
+			Trace.hex(Subsystem.TRANSPORT, TraceLevel.TRACE, "RX", data);
 			
-			LOGGER.info("Received Serial Event - {} bytes", event.getReceivedData().length);
-			for (byte b : event.getReceivedData()) {
-				try {
-					handleByte(b);
-				} catch (Exception e) {
-					LOGGER.error("Failed to parse frame - {}", e);
-					onFrameError();
-					break;
-				}
+			try {
+				decoder.decode(data);
+			} catch (Exception e) {
+				LOGGER.error("Failed to parse frame - {}", e);
+				onFrameError();
 			}
-			LOGGER.info("Completed Serial Event");
-			
 		}
 		
 	}
 
 
-	private static class CommandMetaData {
-		
-		private final CommandFlow flow;
-		
-		// Request that we initiaite must be serializable
-		// Unsolicited requests should be deserializable
-		private final Class<? extends Command> requestClass;
-		private final Class<? extends DeserializableCommand> responseClass;
-		private final Class<? extends DeserializableCommand> callbackClass;
-		
-		
-		/**
-		 * @return the flow
-		 */
-		public CommandFlow getFlow() {
-			return flow;
-		}
-		
-
-
-		public CommandMetaData(
-				CommandFlow flow, 
-				Class<? extends Command> requestClass, 
-				Class<? extends DeserializableCommand> responseClass, 
-				Class<? extends DeserializableCommand> callbackClass
-		) {
-			super();
-			this.flow = flow;
-			this.requestClass = requestClass;
-			if (NoResponse.class.equals(responseClass)) {
-				// The NoResponse class is used to indicate there is no expected response
-				this.responseClass = null;
-			} else {
-				this.responseClass = responseClass;
-			}
-			
-			if (NoResponse.class.equals(callbackClass)) {
-				// The NoResponse class is used to indicate there is no expected callback
-				this.callbackClass = null;
-			} else {
-				this.callbackClass = callbackClass;
-			}
-			
-			/*
-			 * Validate that the given classes match the definition expected by this flow
-			 */
-			if (flow.hasResponse() && this.responseClass == null) {
-				throw new IllegalArgumentException("A response class is expected for flow " + flow);
-			}
-			
-			if (!flow.hasResponse() && this.responseClass != null) {
-				throw new IllegalArgumentException("No response is expected for a flow of " + flow);
-			}
-			
-			if (flow.hasCallback() && this.callbackClass == null) {
-				throw new IllegalArgumentException("A callback class is expected for flow " + flow);
-			}
-			
-			if (!flow.hasCallback() && this.callbackClass != null) {
-				throw new IllegalArgumentException("No callback is expected for a flow of " + flow);
-			}
-			
-			if (this.requestClass == null) {
-				throw new IllegalArgumentException("A request class is expected for flow " + flow);
-			}
-			
-			if (flow == CommandFlow.UNSOLICITED && !DeserializableCommand.class.isAssignableFrom(this.requestClass)) {
-				throw new IllegalArgumentException("UNSOLICTED requests must be DeserializableCommand classes");
-			}
-			
-			/*
-			 * Validate that the Buffer constructor exists. We can't validate this through the
-			 * class system so we will do a quick check on startup
-			 */
-			if (DeserializableCommand.class.isAssignableFrom(this.requestClass)) {
-				validateConstructor(this.requestClass);
-			}
-			if (this.responseClass != null) {
-				validateConstructor(this.responseClass);
-			}
-			if (this.callbackClass != null) {
-				validateConstructor(this.callbackClass);
-			}
-			
-		}
-		
-		
-		public Class<? extends Command> getAppropriateClass(CommandType commandType) {
-			
-			if (commandType == CommandType.RESPONSE) {
-				return responseClass;
-			}
-			
-			// For requests, it could either be the CALLBACK or the REQUEST class based on the flow type
-			if (flow == CommandFlow.UNSOLICITED) {
-				return requestClass;
-			} else {
-				return callbackClass;
-			}
-		}
-		
-		
-		private void validateConstructor(Class<? extends Command> clazz) {
-			try {
-				clazz.getConstructor(Buffer.class);
-			} catch (NoSuchMethodException | SecurityException e) {
-				throw new IllegalArgumentException("Class " + clazz.getCanonicalName() + " must have a Buffer constructor");
-			}
-		}
-	}
-	
-	
 	public static class Subscription<T extends Command> {
 		
+		// Subscriptions without a node id receive the command from every node
+		private static final int ANY_NODE = -1;
+		
 		private final Class<T> clazz;
+		private final int nodeId;
 		private final Consumer<T> consumer;
 		private final Predicate<T> filter;
 		
@@ -678,10 +808,27 @@ public class ZwaveAdapter implements SmartLifecycle {
 		public Consumer<T> getConsumer() {
 			return consumer;
 		}
+		/**
+		 * @return the node the command must come from, only set for {@link NodeSource} commands
+		 */
+		public int getNodeId() {
+			return nodeId;
+		}
+		/**
+		 * @return true if the subscription is for a single node
+		 */
+		public boolean hasNodeId() {
+			return nodeId != ANY_NODE;
+		}
 		
 		
 		public Subscription(Class<T> clazz, Consumer<T> consumer, Predicate<T> filter) {
+			this(clazz, ANY_NODE, consumer, filter);
+		}
+		
+		public Subscription(Class<T> clazz, int nodeId, Consumer<T> consumer, Predicate<T> filter) {
 			this.clazz = clazz;
+			this.nodeId = nodeId;
 			this.consumer = consumer;
 			this.filter = filter;
 			
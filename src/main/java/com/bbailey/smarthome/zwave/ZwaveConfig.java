@@ -1,5 +1,8 @@
 package com.bbailey.smarthome.zwave;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -9,7 +12,16 @@ import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.validation.annotation.Validated;
 
+import com.bbailey.smarthome.zwave.capture.CapturingTransport;
+import com.bbailey.smarthome.zwave.capture.FrameJournal;
+import com.bbailey.smarthome.zwave.capture.JournalReader;
+import com.bbailey.smarthome.zwave.capture.ReplayTransport;
 import com.bbailey.smarthome.zwave.device.ZwaveController;
+import com.bbailey.smarthome.zwave.simulator.VirtualController;
+import com.bbailey.smarthome.zwave.transport.LoopbackTransport;
+import com.bbailey.smarthome.zwave.transport.SerialPortTransport;
+import com.bbailey.smarthome.zwave.transport.TcpTransport;
+import com.bbailey.smarthome.zwave.transport.ZwaveTransport;
 import com.fazecast.jSerialComm.SerialPort;
 
 @Configuration
@@ -19,7 +31,46 @@ public class ZwaveConfig {
 	
 	
 	@Bean
-	public SerialPort serialPort(SerialPortConfiguration config) {
+	public ZwaveTransport zwaveTransport(SerialPortConfiguration config, SimulatorConfiguration simulatorConfig, CaptureConfiguration captureConfig) throws IOException {
+		
+		ZwaveTransport transport = createTransport(config, simulatorConfig, captureConfig);
+		if (!captureConfig.isEnabled()) {
+			return transport;
+		}
+		
+		FrameJournal journal = new FrameJournal(Paths.get(captureConfig.getDirectory()), captureConfig.getSegmentSize(), captureConfig.getMaxSegments());
+		return new CapturingTransport(transport, journal);
+	}
+	
+	
+	private ZwaveTransport createTransport(SerialPortConfiguration config, SimulatorConfiguration simulatorConfig, CaptureConfiguration captureConfig) throws IOException {
+		
+		switch (config.getType()) {
+		case TCP:
+			LOGGER.info("Using serial bridge at {}:{}", config.getHost(), config.getPort());
+			return new TcpTransport(config.getHost(), config.getPort());
+		case LOOPBACK:
+			LOGGER.info("Using loopback transport");
+			return LoopbackTransport.pair();
+		case SIMULATOR:
+			LOGGER.info("Using simulated controller");
+			LoopbackTransport transport = LoopbackTransport.pair();
+			new VirtualController(transport.getPeer(), simulatorConfig).start();
+			return transport;
+		case REPLAY:
+			if (captureConfig.getReplayPath() == null) {
+				throw new IllegalArgumentException("zwave.capture.replay-path must be set for the REPLAY transport");
+			}
+			LOGGER.info("Replaying journal {}", captureConfig.getReplayPath());
+			return new ReplayTransport(new JournalReader(Paths.get(captureConfig.getReplayPath())), captureConfig.getReplaySpeed());
+		case SERIAL:
+		default:
+			return new SerialPortTransport(serialPort(config));
+		}
+	}
+	
+	
+	private SerialPort serialPort(SerialPortConfiguration config) {
 		
 		SerialPort serialPort = SerialPort.getCommPort(config.getPortName());
 		if (serialPort == null) {
@@ -43,8 +94,9 @@ public class ZwaveConfig {
 	
 	@Bean
 	@Order(value = Ordered.HIGHEST_PRECEDENCE)
-	public ZwaveAdapter zwaveAdapter(SerialPort serialPort) {
-		return new ZwaveAdapter(serialPort);
+	public ZwaveAdapter zwaveAdapter(ZwaveTransport transport, TraceConfiguration traceConfig, DispatchConfiguration dispatchConfig) {
+		traceConfig.apply();
+		return new ZwaveAdapter(transport, dispatchConfig);
 	}
 	
 	
@@ -56,6 +108,37 @@ public class ZwaveConfig {
 	}
 	
 	
+	@Bean
+	@Validated
+	@ConfigurationProperties(prefix = "zwave.capture")
+	public CaptureConfiguration captureConfiguration() {
+		return new CaptureConfiguration();
+	}
+	
+	
+	@Bean
+	@Validated
+	@ConfigurationProperties(prefix = "zwave.simulator")
+	public SimulatorConfiguration simulatorConfiguration() {
+		return new SimulatorConfiguration();
+	}
+	
+	
+	@Bean
+	@ConfigurationProperties(prefix = "zwave.trace")
+	public TraceConfiguration traceConfiguration() {
+		return new TraceConfiguration();
+	}
+	
+	
+	@Bean
+	@Validated
+	@ConfigurationProperties(prefix = "zwave.dispatch")
+	public DispatchConfiguration dispatchConfiguration() {
+		return new DispatchConfiguration();
+	}
+	
+	
 	@Bean
 	public ZwaveController zwaveController(ZwaveAdapter adapter) {
 		return new ZwaveController(adapter);
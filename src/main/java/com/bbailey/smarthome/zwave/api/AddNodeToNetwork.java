@@ -7,6 +7,7 @@ import com.bbailey.smarthome.zwave.api.common.CommandFlow;
 import com.bbailey.smarthome.zwave.api.common.CommandFrame;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+import com.bbailey.smarthome.zwave.api.common.SessionCommand;
 import com.bbailey.smarthome.zwave.device.BasicDeviceType;
 import com.bbailey.smarthome.zwave.device.GenericDeviceType;
 import com.bbailey.smarthome.zwave.device.SpecificDeviceType;
@@ -29,7 +30,7 @@ public class AddNodeToNetwork {
 
 	public static final int COMMAND_ID = 0x4A;
 	
-	public static class Request extends SerializableCommand {
+	public static class Request extends SerializableCommand implements SessionCommand {
 	
 		public enum Mode {
 			ANY(0x01),
@@ -68,6 +69,14 @@ public class AddNodeToNetwork {
 		private final int sessionId;
 		
 		
+		/**
+		 * @return the sessionId
+		 */
+		public int getSessionId() {
+			return sessionId;
+		}
+		
+		
 		public Request(boolean normalPower, boolean networkWideInclusion, Mode mode, int sessionId) {
 			super(COMMAND_ID);
 			this.normalPower = normalPower;
@@ -111,7 +120,7 @@ public class AddNodeToNetwork {
 	}
 	
 	
-	public static class Callback extends DeserializableCommand {
+	public static class Callback extends DeserializableCommand implements SessionCommand {
 		
 		public enum Status {
 			/**
@@ -1,10 +1,14 @@
 package com.bbailey.smarthome.zwave.api;
 
 import java.util.EnumSet;
+import java.util.Map;
 
+import com.bbailey.smarthome.zwave.api.common.Coalescable;
+import com.bbailey.smarthome.zwave.api.common.Command;
 import com.bbailey.smarthome.zwave.api.common.CommandFlow;
 import com.bbailey.smarthome.zwave.api.common.CommandFrame;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
+import com.bbailey.smarthome.zwave.api.common.NodeSource;
 import com.bbailey.smarthome.zwave.api.common.RssiMeasurement;
 import com.bbailey.smarthome.zwave.api.common.RxStatus;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
@@ -24,7 +28,20 @@ public class ApplicationCommandHandler {
 
 	public final static int COMMAND_ID = 0x04;
 	
-	public static class Request extends DeserializableCommand {
+	/*
+	 * The reports that carry a single current value, so a newer one makes an older one redundant.
+	 * Keyed by command class and command, with a mask for each following payload byte that
+	 * identifies the value. Anything else, e.g. events or encapsulated commands, is never coalesced
+	 */
+	private final static Map<Integer, int[]> STATE_REPORTS = Map.of(
+			0x2003, new int[0],					// Basic Report
+			0x2503, new int[0],					// Switch Binary Report
+			0x2603, new int[0],					// Switch Multilevel Report
+			0x8003, new int[0],					// Battery Report
+			0x3105, new int[] { 0xFF, 0x18 }	// Sensor Multilevel Report, by sensor type and scale
+		);
+	
+	public static class Request extends DeserializableCommand implements NodeSource, Coalescable {
 		
 		private final EnumSet<RxStatus> rxStatus;
 		private final int sourceNodeId;
@@ -41,6 +58,7 @@ public class ApplicationCommandHandler {
 		/**
 		 * @return the sourceNodeId
 		 */
+		@Override
 		public int getSourceNodeId() {
 			return sourceNodeId;
 		}
@@ -72,16 +90,51 @@ public class ApplicationCommandHandler {
 			
 			this.sourceNodeId = buffer.next();
 			
+			// The payload is a view onto the frame so holds the frame's storage until released
 			int payloadLength = buffer.next();
-			this.payload = new Buffer(payloadLength);
-			for (int i = 0 ; i < payloadLength ; i++) {
-				payload.set(i,  buffer.next());
-			}
+			this.payload = buffer.nextSlice(payloadLength);
 			
 			this.rssi = new RssiMeasurement(buffer.next());
 		}
 		
 		
+		@Override
+		public void release() {
+			payload.release();
+		}
+		
+		
+		/**
+		 * A newer state report from the same node for the same value replaces an older one, e.g.
+		 * a later battery level or temperature. Only the reports in {@link #STATE_REPORTS} are replaced
+		 */
+		@Override
+		public boolean supersedes(Command queued) {
+			
+			if (!(queued instanceof Request) || ((Request)queued).sourceNodeId != sourceNodeId) {
+				return false;
+			}
+			
+			Buffer other = ((Request)queued).payload;
+			if (payload.length() < 2 || other.length() < 2
+					|| other.get(0) != payload.get(0) || other.get(1) != payload.get(1)) {
+				return false;
+			}
+			
+			int[] key = STATE_REPORTS.get(payload.get(0) << 8 | payload.get(1));
+			if (key == null || payload.length() < 2 + key.length || other.length() < 2 + key.length) {
+				return false;
+			}
+			
+			for (int i = 0 ; i < key.length ; i++) {
+				if ((payload.get(2 + i) & key[i]) != (other.get(2 + i) & key[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		
 		@Override
 		public String toString() {
 			return "ApplicationCommandHandler.Request [" + (rxStatus != null ? "rxStatus=" + rxStatus + ", " : "") + "sourceNodeId="
@@ -6,6 +6,7 @@ import java.util.List;
 import com.bbailey.smarthome.zwave.api.common.CommandFlow;
 import com.bbailey.smarthome.zwave.api.common.CommandFrame;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
+import com.bbailey.smarthome.zwave.api.common.NodeSource;
 import com.bbailey.smarthome.zwave.device.BasicDeviceType;
 import com.bbailey.smarthome.zwave.device.GenericDeviceType;
 import com.bbailey.smarthome.zwave.device.SpecificDeviceType;
@@ -84,7 +85,7 @@ public class ApplicationUpdate {
 		}
 	}
 	
-	public static class Request extends DeserializableCommand {
+	public static class Request extends DeserializableCommand implements NodeSource {
 		
 		private final EventType event;
 		private final int remoteNodeId;
@@ -163,6 +164,11 @@ public class ApplicationUpdate {
 			return remoteNodeId;
 		}
 
+		@Override
+		public int getSourceNodeId() {
+			return remoteNodeId;
+		}
+
 		public Request(Buffer buffer) {
 			super(COMMAND_ID);
 			
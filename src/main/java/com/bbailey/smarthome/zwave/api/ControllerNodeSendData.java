@@ -6,7 +6,9 @@ import java.util.EnumSet;
 import com.bbailey.smarthome.zwave.api.common.CommandFlow;
 import com.bbailey.smarthome.zwave.api.common.CommandFrame;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
+import com.bbailey.smarthome.zwave.api.common.NodeTarget;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+import com.bbailey.smarthome.zwave.api.common.SessionCommand;
 import com.bbailey.smarthome.zwave.api.common.TxOptions;
 import com.bbailey.smarthome.zwave.api.common.TxStatus;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
@@ -27,7 +29,7 @@ public class ControllerNodeSendData {
 
 	public final static int COMMAND_ID = 0x13;
 	
-	public static class Request extends SerializableCommand {
+	public static class Request extends SerializableCommand implements SessionCommand, NodeTarget {
 
 		private final int destinationNodeId;
 		private final Buffer data;
@@ -42,6 +44,12 @@ public class ControllerNodeSendData {
 		public int getDestinationNodeId() {
 			return destinationNodeId;
 		}
+		
+		
+		@Override
+		public int getTargetNodeId() {
+			return destinationNodeId;
+		}
 
 		/**
 		 * @return the data
@@ -74,22 +82,17 @@ public class ControllerNodeSendData {
 		
 		@Override
 		public Buffer serialize() {
-			Buffer buffer = new Buffer(4 + data.length());
-			buffer.set(0,  destinationNodeId);
-			buffer.set(1,  data.length());
-			for (int i = 0 ; i < data.length() ; i++) {
-				buffer.set(i + 2, data.get(i));
-			}
-			
 			int b1 = 0x00;
 			for (TxOptions option : transmitOptions) {
 				b1 |= option.getBitMask();
 			}
 			
-			buffer.set(data.length() + 2, b1);
-			buffer.set(data.length() + 3, sessionId);
-			
-			return buffer;
+			return new Buffer(4 + data.length())
+					.put(destinationNodeId)
+					.put(data.length())
+					.putBytes(data)
+					.put(b1)
+					.put(sessionId);
 		}
 
 		@Override
@@ -127,7 +130,7 @@ public class ControllerNodeSendData {
 	}
 	
 	
-	public static class Callback extends DeserializableCommand {
+	public static class Callback extends DeserializableCommand implements SessionCommand {
 		
 		private final int sessionId;
 		private final TxStatus txStatus;
@@ -9,7 +9,6 @@ import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
 import com.bbailey.smarthome.zwave.api.common.Version;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
-import com.bbailey.smarthome.zwave.utils.BitUtils;
 
 /**
  * 4.3.5 Get Capabilities Command
@@ -92,9 +91,9 @@ public class GetCapabilities {
 			super(COMMAND_ID);
 			
 			apiVersion = new Version(buffer.next(), buffer.next());
-			manufacturerId = BitUtils.convertToInt16(buffer.next(), buffer.next());
-			productType = BitUtils.convertToInt16(buffer.next(), buffer.next());
-			productId = BitUtils.convertToInt16(buffer.next(), buffer.next());
+			manufacturerId = buffer.nextInt16();
+			productType = buffer.nextInt16();
+			productId = buffer.nextInt16();
 			
 			
 			int baseCommand = 1;
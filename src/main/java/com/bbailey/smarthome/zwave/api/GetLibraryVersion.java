@@ -56,10 +56,7 @@ public class GetLibraryVersion {
 		public Response(Buffer buffer) {
 			super(COMMAND_ID);
 			
-			byte[] b = new byte[12];
-			for (int i = 0 ; i < 12 ; i++) {
-				b[i] = (byte)buffer.next();
-			}
+			byte[] b = buffer.nextBytes(12);
 			
 			this.libraryVersion = new Version(new String(b));
 			libraryType = LibraryType.fromProtocol(buffer.next());
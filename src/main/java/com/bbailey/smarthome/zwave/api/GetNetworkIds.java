@@ -5,7 +5,6 @@ import com.bbailey.smarthome.zwave.api.common.CommandFrame;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
-import com.bbailey.smarthome.zwave.utils.BitUtils;
 
 /**
  * 4.5.1 Get Network IDs from Memory Command
@@ -61,13 +60,7 @@ public class GetNetworkIds {
 		public Response(Buffer buffer) {
 			super(COMMAND_ID);
 			
-			this.homeId = BitUtils.convertToInt32(
-					buffer.next(),
-					buffer.next(),
-					buffer.next(),
-					buffer.next()
-				);
-			
+			this.homeId = buffer.nextInt32();
 			this.nodeId = buffer.next();
 				
 		}
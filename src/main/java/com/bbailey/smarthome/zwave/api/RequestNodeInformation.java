@@ -3,6 +3,7 @@ package com.bbailey.smarthome.zwave.api;
 import com.bbailey.smarthome.zwave.api.common.CommandFlow;
 import com.bbailey.smarthome.zwave.api.common.CommandFrame;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
+import com.bbailey.smarthome.zwave.api.common.NodeTarget;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
 import com.bbailey.smarthome.zwave.utils.BitUtils;
@@ -22,7 +23,7 @@ public class RequestNodeInformation {
 
 	public static final int COMMAND_ID = 0x60;
 	
-	public static class Request extends SerializableCommand {
+	public static class Request extends SerializableCommand implements NodeTarget {
 		
 		private final int nodeId;
 		
@@ -31,6 +32,11 @@ public class RequestNodeInformation {
 			this.nodeId = nodeId;
 		}
 		
+		@Override
+		public int getTargetNodeId() {
+			return nodeId;
+		}
+		
 		@Override
 		public Buffer serialize() {
 			return Buffer.of(nodeId);
@@ -6,7 +6,9 @@ import java.util.EnumSet;
 import com.bbailey.smarthome.zwave.api.common.CommandFlow;
 import com.bbailey.smarthome.zwave.api.common.CommandFrame;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
+import com.bbailey.smarthome.zwave.api.common.NodeTarget;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+import com.bbailey.smarthome.zwave.api.common.SessionCommand;
 import com.bbailey.smarthome.zwave.api.common.TxOptions;
 import com.bbailey.smarthome.zwave.api.common.TxStatus;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
@@ -28,7 +30,7 @@ public class SendNOP {
 
 	public final static int COMMAND_ID = 0xE9;
 	
-	public static class Request extends SerializableCommand {
+	public static class Request extends SerializableCommand implements SessionCommand, NodeTarget {
 		
 		private final int destinationNodeId;
 		private EnumSet<TxOptions> txOptions;
@@ -54,6 +56,12 @@ public class SendNOP {
 		public int getDestinationNodeId() {
 			return destinationNodeId;
 		}
+		
+		
+		@Override
+		public int getTargetNodeId() {
+			return destinationNodeId;
+		}
 
 		/**
 		 * @return the sessionId
@@ -113,7 +121,7 @@ public class SendNOP {
 	}
 	
 	
-	public static class Callback extends DeserializableCommand {
+	public static class Callback extends DeserializableCommand implements SessionCommand {
 		
 		private final int sessionId;
 		private final TxStatus txStatus;
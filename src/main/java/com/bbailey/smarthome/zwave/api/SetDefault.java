@@ -4,6 +4,7 @@ import com.bbailey.smarthome.zwave.api.common.CommandFlow;
 import com.bbailey.smarthome.zwave.api.common.CommandFrame;
 import com.bbailey.smarthome.zwave.api.common.DeserializableCommand;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+import com.bbailey.smarthome.zwave.api.common.SessionCommand;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
 
 /**
@@ -22,10 +23,17 @@ public class SetDefault {
 
 	public final static int COMMAND_ID = 0x42;
 	
-	public static class Request extends SerializableCommand {
+	public static class Request extends SerializableCommand implements SessionCommand {
 	
 		private final int sessionId;
 		
+		/**
+		 * @return the sessionId
+		 */
+		public int getSessionId() {
+			return sessionId;
+		}
+		
 		public Request(int sessionId) {
 			super(COMMAND_ID);
 			this.sessionId = sessionId;
@@ -48,7 +56,7 @@ public class SetDefault {
 	}
 	
 	
-	public static class Callback extends DeserializableCommand {
+	public static class Callback extends DeserializableCommand implements SessionCommand {
 		
 		private final int sessionId;
 		
@@ -0,0 +1,15 @@
+package com.bbailey.smarthome.zwave.api.common;
+
+/**
+ * A received command carrying state, so a newer command of the same kind makes an older one
+ * still waiting to be delivered redundant. Used when subscribers fall behind and the
+ * dispatch lanes are set to coalesce
+ */
+public interface Coalescable {
+
+	/**
+	 * @param queued A command waiting to be delivered
+	 * @return True if this command replaces it
+	 */
+	public boolean supersedes(Command queued);
+}
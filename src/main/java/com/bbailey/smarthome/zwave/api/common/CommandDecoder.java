@@ -0,0 +1,14 @@
+package com.bbailey.smarthome.zwave.api.common;
+
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+/**
+ * Creates a command from its received payload. Every command class that can be
+ * received has a constructor taking a {@link Buffer}, and the generated command
+ * registry binds a decoder to that constructor by method reference.
+ */
+@FunctionalInterface
+public interface CommandDecoder {
+
+	public Command decode(Buffer buffer);
+}
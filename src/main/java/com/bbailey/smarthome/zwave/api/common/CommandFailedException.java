@@ -0,0 +1,27 @@
+package com.bbailey.smarthome.zwave.api.common;
+
+import com.bbailey.smarthome.zwave.utils.BitUtils;
+
+/**
+ * Thrown when a command sequence does not complete, e.g. the module never
+ * acknowledged the request or the response did not arrive in time
+ */
+public class CommandFailedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient CommandSequence sequence;
+
+	public CommandFailedException(CommandSequence sequence) {
+		super("Command " + BitUtils.toHex(sequence.getRequest().getCommandId()) + " failed after " + sequence.getAttempt() + " attempt(s)");
+		this.sequence = sequence;
+	}
+
+	/**
+	 * The sequence that failed, including anything received before it failed
+	 * @return the sequence
+	 */
+	public CommandSequence getSequence() {
+		return sequence;
+	}
+}
@@ -0,0 +1,81 @@
+package com.bbailey.smarthome.zwave.api.common;
+
+import com.bbailey.smarthome.zwave.protocol.DataFrame.CommandType;
+
+/**
+ * Describes how a command flows between the host and the Z-Wave module and how
+ * the frames it receives are decoded. Registrations are generated at build time
+ * from the {@link CommandFrame} annotations and validated by the annotation processor.
+ */
+public class CommandRegistration {
+
+	private final int commandId;
+	private final CommandFlow flow;
+	private final Class<? extends Command> requestClass;
+	
+	// Null where the frame is never received
+	private final CommandDecoder requestDecoder;
+	private final CommandDecoder responseDecoder;
+	private final CommandDecoder callbackDecoder;
+	
+	
+	/**
+	 * @return the commandId
+	 */
+	public int getCommandId() {
+		return commandId;
+	}
+	
+	
+	/**
+	 * @return the flow
+	 */
+	public CommandFlow getFlow() {
+		return flow;
+	}
+	
+	
+	/**
+	 * @return the requestClass
+	 */
+	public Class<? extends Command> getRequestClass() {
+		return requestClass;
+	}
+	
+	
+	/**
+	 * Get the decoder for a received frame of this command
+	 * @param commandType Whether the frame is a request or response
+	 * @return The decoder, or null if this command is never received as that type
+	 */
+	public CommandDecoder getDecoder(CommandType commandType) {
+		
+		if (commandType == CommandType.RESPONSE) {
+			return responseDecoder;
+		}
+		
+		// For requests, it could either be the CALLBACK or the REQUEST class based on the flow type
+		if (flow == CommandFlow.UNSOLICITED) {
+			return requestDecoder;
+		} else {
+			return callbackDecoder;
+		}
+	}
+	
+	
+	public CommandRegistration(
+			int commandId,
+			CommandFlow flow,
+			Class<? extends Command> requestClass,
+			CommandDecoder requestDecoder,
+			CommandDecoder responseDecoder,
+			CommandDecoder callbackDecoder
+	) {
+		this.commandId = commandId;
+		this.flow = flow;
+		this.requestClass = requestClass;
+		this.requestDecoder = requestDecoder;
+		this.responseDecoder = responseDecoder;
+		this.callbackDecoder = callbackDecoder;
+	}
+}
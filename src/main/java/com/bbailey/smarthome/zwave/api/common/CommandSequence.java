@@ -1,6 +1,7 @@
 package com.bbailey.smarthome.zwave.api.common;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -39,11 +40,17 @@ public class CommandSequence {
 	private final SerializableCommand request;
 	private final CommandFlow flow;
 	private final CountDownLatch latch;
+	private final CompletableFuture<CommandSequence> future = new CompletableFuture<>();
 	
 	private DeserializableCommand response;
 	private DeserializableCommand callback;
 	
 	private volatile SequenceState state = SequenceState.PENDING;
+	
+	// System.nanoTime() each state was last entered, and how long each state lasted when the sequence moved on
+	private final long[] enteredAt = new long[SequenceState.values().length];
+	private final long[] stageLatency = new long[SequenceState.values().length];
+	
 	private int numRetries = 3;
 	private int attempt = 1;
 	
@@ -102,14 +109,43 @@ public class CommandSequence {
 	 * Update the state
 	 * @param state The new state of the sequence
 	 */
-	private void setState(SequenceState state) {
+	private synchronized void setState(SequenceState state) {
+		
+		long now = System.nanoTime();
+		if (state != SequenceState.FAILED && this.state != SequenceState.PENDING) {
+			stageLatency[this.state.ordinal()] = now - enteredAt[this.state.ordinal()];
+		}
+		enteredAt[state.ordinal()] = now;
+		
 		this.state = state;
+		notifyAll();
 		if (state == SequenceState.COMPLETE || state == SequenceState.FAILED) {
 			latch.countDown();
 		}
 	}
 	
 	
+	/**
+	 * The time a state was entered
+	 * @param state The state
+	 * @return The {@link System#nanoTime()} the state was last entered, or 0 if it never was
+	 */
+	public long getTimestamp(SequenceState state) {
+		return enteredAt[state.ordinal()];
+	}
+	
+	
+	/**
+	 * How long the sequence spent in a state before moving on, e.g. the WAITING_FOR_ACK
+	 * latency is the time the module took to acknowledge the request
+	 * @param state The state
+	 * @return The time in nanoseconds, or 0 if the sequence did not move on from the state
+	 */
+	public long getStageLatency(SequenceState state) {
+		return stageLatency[state.ordinal()];
+	}
+	
+	
 	/**
 	 * @return the response
 	 */
@@ -168,7 +204,7 @@ public class CommandSequence {
 	/**
 	 * Start the sequence. This is called when the request is sent to the zwave stick
 	 */
-	public void startSequence() {
+	public synchronized void startSequence() {
 		
 		if (state != SequenceState.PENDING) {
 			throw new IllegalStateException("Cannot start a command sequeunce in state: " + state);
@@ -189,11 +225,13 @@ public class CommandSequence {
 	/**
 	 * Progress the sequence by recording that we have received an ACK from 
 	 * for our request
+	 * @return True if the sequence was waiting for an ACK, false if the ACK was unexpected, e.g. it
+	 * arrived after the sequence timed out waiting for it
 	 */
-	public void acknowledgeRequest() {
+	public synchronized boolean acknowledgeRequest() {
 		
 		if (state != SequenceState.WAITING_FOR_ACK) {
-			throw new IllegalStateException("Cannot acknowledge a request in state: " + state);
+			return false;
 		}
 		
 		switch (flow) {
@@ -210,22 +248,43 @@ public class CommandSequence {
 		default:
 			throw new IllegalStateException("State " + state + " is not valid for a flow of " + flow);
 		}
+		return true;
+	}
+	
+	
+	/**
+	 * Record that the module refused the request with a NAK or CAN frame. The sequence
+	 * goes back to PENDING so the request can be retransmitted
+	 * @return True if the sequence was waiting for an ACK, false if the rejection was unexpected
+	 */
+	public synchronized boolean rejectRequest() {
+		
+		if (state != SequenceState.WAITING_FOR_ACK) {
+			return false;
+		}
+		
+		setState(SequenceState.PENDING);
+		return true;
 	}
 	
 	
 	/**
 	 * Progress the sequence by recoding that we have received a response frame
 	 * @param response The response
+	 * @return True if the sequence was waiting for a response, false if the response was unexpected,
+	 * e.g. it arrived while the request was waiting to be retransmitted
 	 */
-	public void updateResponse(Command response) {
+	public synchronized boolean updateResponse(DeserializableCommand response) {
 		
 		/*
 		 * Allow us to jump straight to the response if we haven't received the ACK
 		 */
 		if (state != SequenceState.WAITING_FOR_RESPONSE && state != SequenceState.WAITING_FOR_ACK) {
-			throw new IllegalStateException("Cannot update a response in state: " + state);
+			return false;
 		}
 		
+		this.response = response;
+		boolean skippedAck = state == SequenceState.WAITING_FOR_ACK;
 		switch (flow) {
 		case ACK_FRAME_WITH_RESPONSE:
 			setState(SequenceState.COMPLETE);
@@ -236,19 +295,30 @@ public class CommandSequence {
 		default:
 			throw new IllegalStateException("State " + state + " is not valid for a flow of " + flow);
 		}
+		
+		if (skippedAck) {
+			// The time spent includes the response, so it is not an ACK latency
+			stageLatency[SequenceState.WAITING_FOR_ACK.ordinal()] = 0;
+		}
+		return true;
 	}
 	
 	
 	/**
-	 * Progress the sequence by recording the callback that we received from the z-wave module
+	 * Progress the sequence by recording the callback that we received from the z-wave module.
+	 * Once the request has been retransmitted a callback is accepted in any state before
+	 * completion, as it shows the module carried out an earlier attempt
 	 * @param callback The callback payload
+	 * @return True if the sequence completed, false if the callback was unexpected, e.g. it
+	 * arrived after the sequence timed out waiting for it
 	 */
-	public void updateCallback(Command callback) {
+	public synchronized boolean updateCallback(DeserializableCommand callback) {
 		
-		if (state != SequenceState.WAITING_FOR_CALLBACK) {
-			throw new IllegalStateException("Cannot update a callback in state: " + state);
+		if (isComplete() || (state != SequenceState.WAITING_FOR_CALLBACK && attempt == 1)) {
+			return false;
 		}
 		
+		this.callback = callback;
 		switch (flow) {
 		case ACK_FRAME_WITH_CALLBACK:
 		case ACK_FRAME_WITH_RESPONSE_AND_CALLBACK:
@@ -257,20 +327,81 @@ public class CommandSequence {
 		default:
 			throw new IllegalStateException("State " + state + " is not valid for a flow of " + flow);
 		}
+		return true;
 	}
 	
 	
-	public void markAsFailed() {
+	/**
+	 * Fail the sequence, unless it has already completed
+	 * @return True if the sequence was failed, false if it had already completed or failed
+	 */
+	public synchronized boolean markAsFailed() {
+		
+		if (isComplete()) {
+			return false;
+		}
+		
 		setState(SequenceState.FAILED);
+		return true;
 	}
 	
 	
-	public void retry() {
+	public synchronized void retry() {
 		attempt++;
 		this.state = SequenceState.PENDING;
 	}
 	
 	
+	/**
+	 * The future handed to the caller of the request. It completes with this sequence, so the response
+	 * and callback of this particular request are available, or fails with a {@link CommandFailedException}
+	 * @return The future
+	 */
+	public CompletableFuture<CommandSequence> getFuture() {
+		return future;
+	}
+	
+	
+	/**
+	 * Publish the outcome of the sequence to its future. Called once the sequence is complete
+	 * and no more frames will be accepted for it
+	 */
+	public void publish() {
+		
+		if (state == SequenceState.COMPLETE) {
+			future.complete(this);
+		} else {
+			future.completeExceptionally(new CommandFailedException(this));
+		}
+	}
+	
+	
+	/**
+	 * Wait for the sequence to move on from a state
+	 * @param from The state
+	 * @param timeout
+	 * @param unit
+	 * @return True if the sequence is no longer in the state, false if the timeout passed first
+	 */
+	public synchronized boolean waitForStateChange(SequenceState from, long timeout, TimeUnit unit) {
+		
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		try {
+			while (state == from) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+	
+	
 	/**
 	 * Wait for the sequence to complete.
 	 * @param timeout
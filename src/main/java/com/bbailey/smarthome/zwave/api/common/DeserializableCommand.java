@@ -5,6 +5,16 @@ public abstract class DeserializableCommand extends Command {
 	protected DeserializableCommand(int commandId) {
 		super(commandId);
 	}
+	
+	
+	/**
+	 * Return any pooled storage held by the command. This is called once all
+	 * subscribers have processed the command, so subscribers must not keep
+	 * references to the command's buffers after they return.
+	 */
+	public void release() {
+		// Nothing pooled by default
+	}
 
 	
 }
@@ -0,0 +1,13 @@
+package com.bbailey.smarthome.zwave.api.common;
+
+/**
+ * A command received from, or reporting on, a particular node. Subscriptions to these
+ * commands can be made for a single node
+ */
+public interface NodeSource {
+
+	/**
+	 * @return the node the command came from
+	 */
+	public int getSourceNodeId();
+}
@@ -0,0 +1,14 @@
+package com.bbailey.smarthome.zwave.api.common;
+
+/**
+ * A request or callback carrying the session id the host chose for the request. The module
+ * echoes it in the callback, which lets callbacks be matched to their request while other
+ * requests are sent
+ */
+public interface SessionCommand {
+
+	/**
+	 * @return the sessionId
+	 */
+	public int getSessionId();
+}
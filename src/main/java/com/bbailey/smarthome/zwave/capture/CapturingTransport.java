@@ -0,0 +1,66 @@
+package com.bbailey.smarthome.zwave.capture;
+
+import java.io.IOException;
+
+import com.bbailey.smarthome.zwave.capture.JournalRecord.Direction;
+import com.bbailey.smarthome.zwave.transport.ZwaveTransport;
+
+/**
+ * Wraps a transport and appends every chunk of bytes it sends and receives to a
+ * {@link FrameJournal}. Capture happens below the decoder so malformed and out of
+ * frame bytes are kept exactly as they crossed the link.
+ */
+public class CapturingTransport implements ZwaveTransport {
+
+	private final ZwaveTransport transport;
+	private final FrameJournal journal;
+
+
+	public CapturingTransport(ZwaveTransport transport, FrameJournal journal) {
+		this.transport = transport;
+		this.journal = journal;
+	}
+
+
+	@Override
+	public boolean open(Receiver receiver) {
+		return transport.open(data -> {
+			journal.append(Direction.INBOUND, data, 0, data.length);
+			receiver.onData(data);
+		});
+	}
+
+
+	@Override
+	public boolean close() {
+		boolean closed = transport.close();
+		journal.close();
+		return closed;
+	}
+
+
+	@Override
+	public void write(byte[] data) throws IOException {
+		journal.append(Direction.OUTBOUND, data, 0, data.length);
+		transport.write(data);
+	}
+
+
+	@Override
+	public void write(int value) throws IOException {
+		journal.append(Direction.OUTBOUND, value);
+		transport.write(value);
+	}
+
+
+	@Override
+	public void discardBuffers() {
+		transport.discardBuffers();
+	}
+
+
+	@Override
+	public String getName() {
+		return transport.getName() + " (captured)";
+	}
+}
@@ -0,0 +1,200 @@
+package com.bbailey.smarthome.zwave.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bbailey.smarthome.zwave.capture.JournalRecord.Direction;
+
+/**
+ * Append only binary journal of the raw bytes sent to and received from the Z-Wave module.
+ *
+ * The journal is a directory of fixed size segment files that are memory mapped, so
+ * appending a record is a handful of stores into the page cache with no system call and
+ * no formatting. When a segment fills the next one is mapped.
+ *
+ * Each segment starts with a header of the magic number, format version, and the wall
+ * clock and {@link System#nanoTime()} the segment was opened at. Records follow as
+ * the record length, capture time in nanoseconds, direction and the captured bytes.
+ * The unused tail of a segment is zero filled, and a zero record length marks the end.
+ *
+ * Only the newest segments are kept, older ones are deleted as new ones are opened.
+ */
+public class FrameJournal implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FrameJournal.class);
+
+	public static final int MAGIC = 0x5A574A31;
+	public static final int VERSION = 1;
+	public static final int HEADER_LENGTH = 4 + 4 + 8 + 8;
+	public static final int RECORD_HEADER_LENGTH = 4 + 8 + 1;
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	public static final int DEFAULT_MAX_SEGMENTS = 16;
+	public static final String SEGMENT_SUFFIX = ".zwj";
+
+	private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)" + Pattern.quote(SEGMENT_SUFFIX));
+
+	private final Path directory;
+	private final int segmentSize;
+	private final int maxSegments;
+
+	// Oldest first, including the one being written
+	private final Deque<Path> segments;
+
+	private MappedByteBuffer segment;
+	private int segmentIndex;
+	private long records = 0;
+
+
+	/**
+	 * Open a journal keeping the default number of segments
+	 * @param directory The directory to write segments to
+	 * @param segmentSize The size of each segment file in bytes
+	 * @throws IOException If the first segment cannot be created
+	 */
+	public FrameJournal(Path directory, int segmentSize) throws IOException {
+		this(directory, segmentSize, DEFAULT_MAX_SEGMENTS);
+	}
+
+
+	/**
+	 * Open a journal, starting a new segment after any already in the directory
+	 * @param directory The directory to write segments to
+	 * @param segmentSize The size of each segment file in bytes
+	 * @param maxSegments The number of segments kept, including the one being written
+	 * @throws IOException If the first segment cannot be created
+	 */
+	public FrameJournal(Path directory, int segmentSize, int maxSegments) throws IOException {
+
+		if (segmentSize < HEADER_LENGTH + RECORD_HEADER_LENGTH + 0xFF) {
+			throw new IllegalArgumentException("Segment size " + segmentSize + " is too small");
+		}
+		if (maxSegments < 1) {
+			throw new IllegalArgumentException("At least one segment must be kept: " + maxSegments);
+		}
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+
+		Files.createDirectories(directory);
+		this.segments = JournalReader.listSegments(directory).stream()
+				.filter(path -> segmentIndex(path) >= 0)
+				.sorted(Comparator.comparingInt(FrameJournal::segmentIndex))
+				.collect(Collectors.toCollection(ArrayDeque::new));
+		this.segmentIndex = segments.isEmpty() ? 0 : segmentIndex(segments.getLast()) + 1;
+		openSegment();
+	}
+
+
+	/**
+	 * The number of records written since the journal was opened
+	 * @return the records
+	 */
+	public synchronized long getRecords() {
+		return records;
+	}
+
+
+	/**
+	 * Append a record
+	 * @param direction Whether the bytes were received or sent
+	 * @param data The bytes
+	 * @param offset The index of the first byte
+	 * @param count The number of bytes
+	 */
+	public synchronized void append(Direction direction, byte[] data, int offset, int count) {
+
+		long now = System.nanoTime();
+		if (segment == null) {
+			return;
+		}
+
+		if (segment.remaining() < RECORD_HEADER_LENGTH + count) {
+			try {
+				openSegment();
+			} catch (IOException e) {
+				LOGGER.error("Failed to roll journal segment - capture stopped - {}", e.getMessage());
+				segment = null;
+				return;
+			}
+		}
+
+		segment.putInt(RECORD_HEADER_LENGTH + count);
+		segment.putLong(now);
+		segment.put((byte)direction.getProtocolValue());
+		segment.put(data, offset, count);
+		records++;
+	}
+
+
+	/**
+	 * Append a single byte record
+	 * @param direction Whether the byte was received or sent
+	 * @param value The byte
+	 */
+	public synchronized void append(Direction direction, int value) {
+		append(direction, new byte[] { (byte)value }, 0, 1);
+	}
+
+
+	@Override
+	public synchronized void close() {
+		if (segment != null) {
+			segment.force();
+			segment = null;
+		}
+	}
+
+
+	private void openSegment() throws IOException {
+
+		if (segment != null) {
+			segment.force();
+		}
+
+		Path path = directory.resolve(String.format("journal-%05d%s", segmentIndex++, SEGMENT_SUFFIX));
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			segment = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+		}
+
+		segment.putInt(MAGIC);
+		segment.putInt(VERSION);
+		segment.putLong(System.currentTimeMillis());
+		segment.putLong(System.nanoTime());
+		LOGGER.info("Capturing frames to {}", path);
+
+		segments.addLast(path);
+		while (segments.size() > maxSegments) {
+			Path oldest = segments.removeFirst();
+			try {
+				Files.deleteIfExists(oldest);
+			} catch (IOException e) {
+				LOGGER.warn("Failed to delete journal segment {} - {}", oldest, e.getMessage());
+			}
+		}
+	}
+
+
+	/**
+	 * @return The index in a segment's name, or -1 if it is not named like a segment
+	 */
+	private static int segmentIndex(Path path) {
+		Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+		return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+	}
+}
@@ -0,0 +1,145 @@
+package com.bbailey.smarthome.zwave.capture;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.bbailey.smarthome.zwave.capture.JournalRecord.Direction;
+
+/**
+ * Reads the records written by a {@link FrameJournal}, in order, from either
+ * a single segment or every segment in a journal directory.
+ */
+public class JournalReader implements Iterable<JournalRecord> {
+
+	private final List<Path> segments;
+
+
+	/**
+	 * @param path A segment file or a journal directory
+	 * @throws IOException If the directory cannot be listed
+	 */
+	public JournalReader(Path path) throws IOException {
+		this.segments = Files.isDirectory(path) ? listSegments(path) : List.of(path);
+	}
+
+
+	/**
+	 * List the segments in a journal directory in the order they were written
+	 * @param directory The journal directory
+	 * @return The segment files
+	 * @throws IOException If the directory cannot be listed
+	 */
+	public static List<Path> listSegments(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files
+					.filter(p -> p.getFileName().toString().endsWith(FrameJournal.SEGMENT_SUFFIX))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+
+	/**
+	 * Read every record into memory
+	 * @return The records
+	 */
+	public List<JournalRecord> readAll() {
+		List<JournalRecord> records = new ArrayList<>();
+		for (JournalRecord record : this) {
+			records.add(record);
+		}
+		return records;
+	}
+
+
+	@Override
+	public Iterator<JournalRecord> iterator() {
+		return new RecordIterator();
+	}
+
+
+	private class RecordIterator implements Iterator<JournalRecord> {
+
+		private int nextSegment = 0;
+		private MappedByteBuffer segment;
+		private JournalRecord next;
+
+		// The clocks the current segment was opened at, from its header
+		private long openedWallClockNanos;
+		private long openedNanos;
+
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				next = advance();
+			}
+			return next != null;
+		}
+
+
+		@Override
+		public JournalRecord next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			JournalRecord record = next;
+			next = null;
+			return record;
+		}
+
+
+		private JournalRecord advance() {
+
+			while (true) {
+				if (segment != null && segment.remaining() >= FrameJournal.RECORD_HEADER_LENGTH) {
+					int length = segment.getInt();
+					if (length >= FrameJournal.RECORD_HEADER_LENGTH && length - 4 <= segment.remaining()) {
+						long nanos = segment.getLong();
+						Direction direction = Direction.fromProtocolValue(segment.get());
+						byte[] data = new byte[length - FrameJournal.RECORD_HEADER_LENGTH];
+						segment.get(data);
+						return new JournalRecord(nanos, openedWallClockNanos + (nanos - openedNanos), direction, data);
+					}
+				}
+
+				// End of this segment, move on to the next
+				if (nextSegment >= segments.size()) {
+					return null;
+				}
+				segment = map(segments.get(nextSegment++));
+			}
+		}
+
+
+		private MappedByteBuffer map(Path path) {
+
+			try (FileChannel channel = FileChannel.open(path)) {
+				MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+				if (buffer.remaining() < FrameJournal.HEADER_LENGTH || buffer.getInt() != FrameJournal.MAGIC) {
+					throw new IllegalArgumentException(path + " is not a frame journal");
+				}
+				int version = buffer.getInt();
+				if (version != FrameJournal.VERSION) {
+					throw new IllegalArgumentException(path + " has unsupported journal version " + version);
+				}
+				openedWallClockNanos = TimeUnit.MILLISECONDS.toNanos(buffer.getLong());
+				openedNanos = buffer.getLong();
+				return buffer;
+			} catch (IOException e) {
+				throw new IllegalStateException("Failed to read journal segment " + path, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.bbailey.smarthome.zwave.capture;
+
+/**
+ * A single chunk of bytes captured from the link
+ */
+public class JournalRecord {
+
+	public enum Direction {
+		/**
+		 * Received from the Z-Wave module
+		 */
+		INBOUND(0),
+		/**
+		 * Sent to the Z-Wave module
+		 */
+		OUTBOUND(1);
+		
+		private final int protocolValue;
+		
+		private Direction(int protocolValue) {
+			this.protocolValue = protocolValue;
+		}
+		
+		public int getProtocolValue() {
+			return protocolValue;
+		}
+		
+		public static Direction fromProtocolValue(int protocolValue) {
+			return protocolValue == 0 ? INBOUND : OUTBOUND;
+		}
+	}
+	
+	
+	private final long timestampNanos;
+	private final long wallClockNanos;
+	private final Direction direction;
+	private final byte[] data;
+	
+	
+	/**
+	 * The {@link System#nanoTime()} the bytes were captured at
+	 * @return the timestampNanos
+	 */
+	public long getTimestampNanos() {
+		return timestampNanos;
+	}
+	
+	
+	/**
+	 * The wall clock time the bytes were captured at, in nanoseconds since the epoch. Worked out from
+	 * the clocks recorded in the segment header, so unlike the {@link System#nanoTime()} it can be
+	 * compared across segments written by different runs
+	 * @return the wallClockNanos
+	 */
+	public long getWallClockNanos() {
+		return wallClockNanos;
+	}
+	
+	
+	/**
+	 * @return the direction
+	 */
+	public Direction getDirection() {
+		return direction;
+	}
+	
+	
+	/**
+	 * @return the data
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	
+	public JournalRecord(long timestampNanos, long wallClockNanos, Direction direction, byte[] data) {
+		this.timestampNanos = timestampNanos;
+		this.wallClockNanos = wallClockNanos;
+		this.direction = direction;
+		this.data = data;
+	}
+}
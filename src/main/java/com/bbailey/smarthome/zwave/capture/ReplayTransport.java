@@ -0,0 +1,140 @@
+package com.bbailey.smarthome.zwave.capture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bbailey.smarthome.zwave.capture.JournalRecord.Direction;
+import com.bbailey.smarthome.zwave.transport.ZwaveTransport;
+
+/**
+ * Transport that plays the inbound side of a {@link FrameJournal} back to the adapter,
+ * so a captured session goes through exactly the same decode path it did live.
+ * Anything the adapter writes is discarded.
+ */
+public class ReplayTransport implements ZwaveTransport {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReplayTransport.class);
+
+	public enum ReplaySpeed {
+		/**
+		 * Keep the gaps between records that were captured
+		 */
+		ORIGINAL,
+		/**
+		 * Deliver records back to back
+		 */
+		MAX
+	}
+
+
+	private final JournalReader reader;
+	private final ReplaySpeed speed;
+
+	private volatile boolean open = false;
+	private volatile boolean complete = false;
+	private Thread thread;
+
+
+	public ReplayTransport(JournalReader reader, ReplaySpeed speed) {
+		this.reader = reader;
+		this.speed = speed;
+	}
+
+
+	/**
+	 * Check whether every record has been played back
+	 * @return True once the replay has finished
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+
+	@Override
+	public synchronized boolean open(Receiver receiver) {
+
+		if (open) {
+			return true;
+		}
+
+		open = true;
+		thread = new Thread(() -> replay(receiver), "replay-receive");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+
+	@Override
+	public synchronized boolean close() {
+
+		open = false;
+		if (thread != null) {
+			thread.interrupt();
+		}
+		return true;
+	}
+
+
+	@Override
+	public void write(byte[] data) {
+		// The module is not there to hear it
+	}
+
+
+	@Override
+	public void write(int value) {
+		// The module is not there to hear it
+	}
+
+
+	@Override
+	public void discardBuffers() {
+		// Discarding would change what is replayed so this is ignored
+	}
+
+
+	@Override
+	public String getName() {
+		return "replay:" + speed;
+	}
+
+
+	private void replay(Receiver receiver) {
+
+		long started = System.nanoTime();
+		long due = started;
+		long previous = -1;
+		long count = 0;
+
+		for (JournalRecord record : reader) {
+
+			if (!open) {
+				return;
+			}
+			if (record.getDirection() != Direction.INBOUND) {
+				continue;
+			}
+
+			if (speed == ReplaySpeed.ORIGINAL) {
+				// Paced on the wall clock, as the nanoTime of segments from different runs cannot be compared
+				if (previous >= 0) {
+					due += Math.max(0, record.getWallClockNanos() - previous);
+				}
+				previous = record.getWallClockNanos();
+				for (long wait = due - System.nanoTime() ; wait > 0 && open ; wait = due - System.nanoTime()) {
+					LockSupport.parkNanos(wait);
+				}
+			}
+
+			receiver.onData(record.getData());
+			count++;
+		}
+
+		complete = true;
+		LOGGER.info("Replayed {} records in {} ms", count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+	}
+}
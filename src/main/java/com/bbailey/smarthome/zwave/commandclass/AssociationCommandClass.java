@@ -25,11 +25,11 @@ public class AssociationCommandClass extends CommandClass {
 	}
 	
 	public void sendGet(int groupId) {
-		send(Buffer.of(COMMAND_ID, ASSOCIATION_GET, groupId));
+		queueGet(Buffer.of(COMMAND_ID, ASSOCIATION_GET, groupId));
 	}
 	
 	public void sendGetGroupings() {
-		send(Buffer.of(COMMAND_ID, ASSOCIATION_GROUPINGS_GET));
+		queueGet(Buffer.of(COMMAND_ID, ASSOCIATION_GROUPINGS_GET));
 	}
 	
 	public void sendRemove(int groupId, int nodeId) {
@@ -41,7 +41,7 @@ public class AssociationCommandClass extends CommandClass {
 	}
 	
 	public void sendSpecificGroupGet() {
-		send(Buffer.of(COMMAND_ID, ASSOCIATION_SPECIFIC_GROUP_GET));
+		queueGet(Buffer.of(COMMAND_ID, ASSOCIATION_SPECIFIC_GROUP_GET));
 	}
 	
 	@ReportHandler(id = ASSOCIATION_REPORT)
@@ -47,7 +47,7 @@ public class AssociationGroupInfoCommandClass extends CommandClass {
 	
 	
 	public void sendGetName(int groupId) {
-		send(Buffer.of(COMMAND_ID, ASSOCIATION_GROUP_NAME_GET, groupId));
+		queueGet(Buffer.of(COMMAND_ID, ASSOCIATION_GROUP_NAME_GET, groupId));
 	}
 	
 	
@@ -57,13 +57,13 @@ public class AssociationGroupInfoCommandClass extends CommandClass {
 			properties = properties | option.bitmask;
 		}
 		
-		send(Buffer.of(COMMAND_ID, ASSOCIATION_GROUP_INFO_GET, properties, groupId));
+		queueGet(Buffer.of(COMMAND_ID, ASSOCIATION_GROUP_INFO_GET, properties, groupId));
 	}
 	
 	
 	public void sendGetCommandList(boolean allowCache, int groupId) {
 		int properties = allowCache ? 0x80 : 0x00;
-		send(Buffer.of(COMMAND_ID, ASSOCIATION_GROUP_COMMAND_LIST_GET, properties, groupId));
+		queueGet(Buffer.of(COMMAND_ID, ASSOCIATION_GROUP_COMMAND_LIST_GET, properties, groupId));
 	}
 	
 	
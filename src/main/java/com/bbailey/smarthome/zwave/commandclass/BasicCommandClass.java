@@ -74,7 +74,7 @@ public class BasicCommandClass extends CommandClass {
 	}
 	
 	public void sendGet() {
-		send(Buffer.of(COMMAND_ID, BASIC_GET));
+		queueGet(Buffer.of(COMMAND_ID, BASIC_GET));
 	}
 	
 	public void sendSet(int value) {
@@ -48,7 +48,7 @@ public class BatteryCommandClass extends CommandClass {
 	
 	
 	public void sendGetBattery() {
-		send(Buffer.of(COMMAND_ID, BATTERY_GET));
+		queueGet(Buffer.of(COMMAND_ID, BATTERY_GET));
 	}
 	
 	@ReportHandler(id = BATTERY_REPORT)
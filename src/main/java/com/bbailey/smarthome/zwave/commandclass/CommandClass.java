@@ -1,9 +1,14 @@
 package com.bbailey.smarthome.zwave.commandclass;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 import org.slf4j.Logger;
@@ -23,7 +28,29 @@ public abstract class CommandClass {
 	private final int supportedVersion;
 	private final ZwaveNode node;
 	
-	private final Map<Integer, Method> receivers = new HashMap<>();
+	/**
+	 * A {@link ReportHandler} method bound to its command class type
+	 */
+	@FunctionalInterface
+	interface ReportReceiver {
+		
+		public void receive(CommandClass commandClass, Buffer buffer);
+	}
+	
+	/*
+	 * The report dispatch table for each CommandClass subclass, indexed by cmd. This is built
+	 * the first time a class is used and shared by every instance, so creating a command class
+	 * for a node does no reflection and receiving a report is an array read and a direct call.
+	 */
+	private static final ClassValue<ReportReceiver[]> DISPATCH_TABLES = new ClassValue<>() {
+		
+		@Override
+		protected ReportReceiver[] computeValue(Class<?> type) {
+			return buildDispatchTable(type);
+		}
+	};
+	
+	private final ReportReceiver[] receivers;
 
 	
 	/**
@@ -57,15 +84,84 @@ public abstract class CommandClass {
 		this.supportedVersion = versionId;
 		this.node = node;
 		
-		// Create the receive mappers
-		for (Method method : this.getClass().getDeclaredMethods()) {
-			ReportHandler handler = method.getAnnotation(ReportHandler.class);
-			if (handler != null) {
-				method.trySetAccessible();
-				receivers.put(handler.id(), method);
+		this.receivers = DISPATCH_TABLES.get(this.getClass());
+	}
+	
+	
+	/**
+	 * Bind every {@link ReportHandler} method of a command class and its super classes.
+	 * Handlers in a subclass take precedence over those it inherits.
+	 * @param type The command class type
+	 * @return The dispatch table indexed by cmd
+	 */
+	private static ReportReceiver[] buildDispatchTable(Class<?> type) {
+		
+		ReportReceiver[] table = new ReportReceiver[256];
+		for (Class<?> clazz = type ; clazz != null && CommandClass.class.isAssignableFrom(clazz) ; clazz = clazz.getSuperclass()) {
+			for (Method method : clazz.getDeclaredMethods()) {
+				ReportHandler handler = method.getAnnotation(ReportHandler.class);
+				if (handler != null && table[handler.id() & 0xFF] == null) {
+					table[handler.id() & 0xFF] = bind(clazz, method);
+				}
 			}
 		}
 		
+		return table;
+	}
+	
+	
+	private static ReportReceiver bind(Class<?> clazz, Method method) {
+		
+		if (method.getParameterCount() != 1 || !Buffer.class.equals(method.getParameterTypes()[0]) || Modifier.isStatic(method.getModifiers())) {
+			throw new IllegalStateException("Report handler " + clazz.getSimpleName() + "." + method.getName() + " must be an instance method taking a Buffer");
+		}
+		
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup());
+			MethodHandle handle = lookup.unreflect(method);
+			
+			CallSite site;
+			try {
+				site = LambdaMetafactory.metafactory(
+						lookup,
+						"receive",
+						MethodType.methodType(ReportReceiver.class),
+						MethodType.methodType(void.class, CommandClass.class, Buffer.class),
+						handle,
+						MethodType.methodType(void.class, clazz, Buffer.class)
+					);
+			} catch (LambdaConversionException | LinkageError e) {
+				// Fall back to invoking the handle, which is still far cheaper than Method.invoke
+				LoggerFactory.getLogger(CommandClass.class).warn("Cannot bind report handler {}.{} directly, invoking it through a method handle - {}",
+						clazz.getSimpleName(), method.getName(), e.toString());
+				return invoker(handle);
+			}
+			
+			try {
+				return (ReportReceiver)site.getTarget().invokeExact();
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("Cannot bind report handler " + clazz.getSimpleName() + "." + method.getName(), e);
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Cannot access report handler " + clazz.getSimpleName() + "." + method.getName(), e);
+		}
+	}
+	
+	
+	private static ReportReceiver invoker(MethodHandle handle) {
+		
+		MethodHandle generic = handle.asType(MethodType.methodType(void.class, CommandClass.class, Buffer.class));
+		return (commandClass, buffer) -> {
+			try {
+				generic.invokeExact(commandClass, buffer);
+			} catch (RuntimeException | Error t) {
+				throw t;
+			} catch (Throwable t) {
+				throw new IllegalStateException(t);
+			}
+		};
 	}
 
 
@@ -75,14 +171,28 @@ public abstract class CommandClass {
 	 * @param buffer The serialized command including the command class Id
 	 */
 	protected void send(Buffer buffer) {
-		ControllerNodeSendData.Request request = new ControllerNodeSendData.Request(
+		node.send(request(buffer));
+	}
+	
+	
+	/**
+	 * Send a Get to the zwave device. Gets for a node supporting Multi Command are batched
+	 * with its other Gets into one frame, and the reports are passed back to the report handlers
+	 * one by one
+	 * @param buffer The serialized Get including the command class Id
+	 */
+	protected void queueGet(Buffer buffer) {
+		node.sendGet(request(buffer));
+	}
+	
+	
+	private ControllerNodeSendData.Request request(Buffer buffer) {
+		return new ControllerNodeSendData.Request(
 				node.getNodeId(), 
 				buffer, 
 				EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK), 
 				node.getAdapter().nextSessionId()
 			);
-		
-		node.send(request);
 	}
 	
 	
@@ -93,14 +203,14 @@ public abstract class CommandClass {
 	public void receive(Buffer buffer) {
 		
 		int cmd = buffer.next();
-		Method method = receivers.get(cmd);
-		if (method == null) {
+		ReportReceiver receiver = receivers[cmd];
+		if (receiver == null) {
 			LOGGER.info("Received an unsupported cmd {} - ignoring", BitUtils.toHex(cmd));
 			return;
 		}
 		
 		try {
-			method.invoke(this,  buffer);
+			receiver.receive(this, buffer);
 		} catch (Exception e) {
 			LOGGER.error("Failed to process cmd {} - {}", BitUtils.toHex(cmd), e);
 		}
@@ -1,16 +1,7 @@
 package com.bbailey.smarthome.zwave.commandclass;
 
-import java.lang.reflect.Constructor;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
-import org.springframework.core.type.filter.AnnotationTypeFilter;
-import org.springframework.util.ClassUtils;
 
 import com.bbailey.smarthome.zwave.commandclass.VersionCommandClass.VersionedCommandClass;
 import com.bbailey.smarthome.zwave.device.ZwaveNode;
@@ -20,35 +11,28 @@ public class CommandClassFactory {
 
 	private final static Logger LOGGER = LoggerFactory.getLogger(CommandClassFactory.class);
 	
-	private static CommandClassFactory INSTANCE;
+	private static final CommandClassFactory INSTANCE = new CommandClassFactory();
+	
+	/**
+	 * Creates a command class bound to a node
+	 */
+	@FunctionalInterface
+	public interface CommandClassConstructor {
+		
+		public CommandClass create(int version, ZwaveNode node);
+	}
 	
-	private Map<Integer, Constructor<?>> constructors = new HashMap<>();
+	// Indexed by command class id
+	private final CommandClassConstructor[] constructors = new CommandClassConstructor[256];
 	
 	public CommandClassFactory() {
-		
-		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
-		provider.addIncludeFilter(new AnnotationTypeFilter(CommandClassMeta.class));
-		
-		Set<BeanDefinition> beanDefinitions = provider.findCandidateComponents(CommandClass.class.getPackageName());
-		for (BeanDefinition beanDefinition : beanDefinitions) {
-			
-			LOGGER.info("Class name: {}", beanDefinition.getBeanClassName());
-			try {
-				Class<?> clazz = ClassUtils.getDefaultClassLoader().loadClass(beanDefinition.getBeanClassName());
-				CommandClassMeta meta = clazz.getAnnotation(CommandClassMeta.class);
-				if (meta != null) {
-					Constructor<?> constructor = clazz.getConstructor(int.class, ZwaveNode.class);
-					if (constructor == null) {
-						LOGGER.warn("Command Class {} does not have a ZwaveNode constructor", BitUtils.toHex(meta.id()));
-						continue;
-					}
-					
-					constructors.put(meta.id(), constructor);
-				}
-			} catch (Exception e) {
-				LOGGER.error("Failed to discover {} - {}", beanDefinition.getBeanClassName(), e.getMessage());
-			}
-		}		
+		// The registry is generated from the @CommandClassMeta annotations at build time
+		CommandClassRegistry.registerAll(this);
+	}
+	
+	
+	void register(int commandClassId, CommandClassConstructor constructor) {
+		constructors[commandClassId] = constructor;
 	}
 	
 	public static CommandClass create(ZwaveNode node, int commandClassId) {
@@ -60,24 +44,19 @@ public class CommandClassFactory {
 	}
 	
 	public static CommandClass create(ZwaveNode node, int commandClassId, int supportedVersion) {
-		
-		if (INSTANCE == null) {
-			INSTANCE = new CommandClassFactory();
-		}
-		
 		return INSTANCE.buildClass(node, commandClassId, supportedVersion);
 	}
 	
 	
 	private CommandClass buildClass(ZwaveNode node, int commandClassId, int supportedVersion) {
 		
-		Constructor<?> constructor = constructors.get(commandClassId);
+		CommandClassConstructor constructor = constructors[commandClassId & 0xFF];
 		if (constructor == null) {
 			return null;
 		}
 		
 		try {
-			return (CommandClass)constructor.newInstance(supportedVersion, node);
+			return constructor.create(supportedVersion, node);
 		} catch (Exception e) {
 			LOGGER.error("Failed to instantiate command class {} - {}", BitUtils.toHex(commandClassId), e);
 			return null;
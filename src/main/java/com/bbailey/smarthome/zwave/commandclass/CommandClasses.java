@@ -14,6 +14,7 @@ public class CommandClasses {
 	public static final int COMMAND_CLASS_FIRMWARE_UPDATE_MD = 0x7A;
 	public static final int COMMAND_CLASS_INDICATOR = 0x87;
 	public static final int COMMAND_CLASS_MANUFACTURER_SPECIFIC = 0x72;
+	public static final int COMMAND_CLASS_MULTI_CMD = 0x8F;
 	public static final int COMMAND_CLASS_NOTIFICATION = 0x71;
 	public static final int COMMAND_CLASS_POWERLEVEL = 0x73;
 	public static final int COMMAND_CLASS_SECURITY = 0x98;
@@ -0,0 +1,87 @@
+package com.bbailey.smarthome.zwave.commandclass;
+
+import java.util.List;
+
+import com.bbailey.smarthome.zwave.device.ZwaveNode;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+/**
+ * Carries several commands for the same node in a single frame, so they share one
+ * transmission, and one wake up beam for a frequently listening node
+ */
+@CommandClassMeta(id = MultiCommandCommandClass.COMMAND_ID, name = "COMMAND_CLASS_MULTI_CMD", desc = "Command Class Multi Command")
+public class MultiCommandCommandClass extends CommandClass {
+
+	public static final int COMMAND_ID = 0x8F;
+	
+	private static final int MULTI_CMD_ENCAP = 0x01;
+	
+	// The largest command class payload that fits in a single frame at the lowest data rate
+	public static final int MAX_PAYLOAD = 46;
+	
+	// The command class, command and count ahead of the commands
+	private static final int HEADER_LENGTH = 3;
+	
+	
+	public MultiCommandCommandClass(int version, ZwaveNode node) {
+		super(COMMAND_ID, version, node);
+	}
+	
+	
+	/**
+	 * Check whether commands fit in one encapsulation
+	 * @param commands The serialized commands, each including its command class id
+	 * @return True if there are at most 255 and the encapsulation is no more than {@link #MAX_PAYLOAD} bytes
+	 */
+	public static boolean fits(List<Buffer> commands) {
+		
+		int length = HEADER_LENGTH;
+		for (Buffer command : commands) {
+			length += 1 + command.length();
+		}
+		return commands.size() <= 0xFF && length <= MAX_PAYLOAD;
+	}
+	
+	
+	/**
+	 * Encapsulate commands for the same node
+	 * @param commands The serialized commands, each including its command class id
+	 * @return The encapsulation, including this command class id
+	 */
+	public static Buffer encapsulate(List<Buffer> commands) {
+		
+		int length = HEADER_LENGTH;
+		for (Buffer command : commands) {
+			length += 1 + command.length();
+		}
+		
+		Buffer buffer = new Buffer(length)
+				.put(COMMAND_ID)
+				.put(MULTI_CMD_ENCAP)
+				.put(commands.size());
+		for (Buffer command : commands) {
+			buffer.put(command.length()).putBytes(command);
+		}
+		return buffer;
+	}
+	
+	
+	/**
+	 * Pass each encapsulated command on to the node's command class, as if it had arrived
+	 * in a frame of its own
+	 * @param buffer The encapsulation after the command
+	 */
+	@ReportHandler(id = MULTI_CMD_ENCAP)
+	protected void handleEncapsulation(Buffer buffer) {
+		
+		int count = buffer.next();
+		for (int i = 0 ; i < count ; i++) {
+			Buffer command = buffer.nextSlice(buffer.next());
+			try {
+				getNode().receive(command);
+			} finally {
+				command.release();
+			}
+		}
+	}
+}
@@ -119,7 +119,7 @@ public class VersionCommandClass extends CommandClass {
 	 * Send the request to get the modules library and protocol versions
 	 */
 	public void sendGet() {
-		send(Buffer.of(COMMAND_ID, VERSION_GET));
+		queueGet(Buffer.of(COMMAND_ID, VERSION_GET));
 	}
 	
 	
@@ -129,7 +129,7 @@ public class VersionCommandClass extends CommandClass {
 	 * @param commandClassId The command class to lookup version info for
 	 */
 	public void sendCommandClassGet(int commandClassId) {
-		send(Buffer.of(COMMAND_ID, VERSION_COMMAND_CLASS_GET, commandClassId));
+		queueGet(Buffer.of(COMMAND_ID, VERSION_COMMAND_CLASS_GET, commandClassId));
 	}
 	
 	
@@ -7,7 +7,6 @@ import org.slf4j.LoggerFactory;
 
 import com.bbailey.smarthome.zwave.device.ZwaveNode;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
-import com.bbailey.smarthome.zwave.utils.BitUtils;
 
 @CommandClassMeta(id = WakeupCommandClass.COMMAND_ID, name = "COMMAND_CLASS_WAKEUP", desc = "Command Class Wake Up")
 public class WakeupCommandClass extends CommandClass {
@@ -113,14 +112,14 @@ public class WakeupCommandClass extends CommandClass {
 	}
 	
 	public void sendGetInterval() {
-		send(Buffer.of(COMMAND_ID, WAKE_UP_INTERVAL_GET));
+		queueGet(Buffer.of(COMMAND_ID, WAKE_UP_INTERVAL_GET));
 	}
 	
 	public void sendGetIntervalCapabilities() {
 		if (getSupportedVersion() < 2) {
 			throw new IllegalStateException("Command " + WAKE_UP_INTERVAL_CAPABILITIES_GET + " not supported for version " + getSupportedVersion());
 		}
-		send(Buffer.of(COMMAND_ID, WAKE_UP_INTERVAL_CAPABILITIES_GET));
+		queueGet(Buffer.of(COMMAND_ID, WAKE_UP_INTERVAL_CAPABILITIES_GET));
 	}
 	
 	@ReportHandler(id = WAKE_UP_INTERVAL_REPORT)
@@ -143,18 +142,16 @@ public class WakeupCommandClass extends CommandClass {
 	@ReportHandler(id = WAKE_UP_NOTIFICATION)
 	protected void handleNotification(Buffer buffer) {
 		LOGGER.info("Node AWAKE");
+		getNode().wakeUp();
 	}
 	
 	public void sendSetInterval(int seconds) {
 		
-		Buffer buffer = Buffer.of(
-				COMMAND_ID,
-				WAKE_UP_INTERVAL_SET,
-				BitUtils.byte2(seconds),
-				BitUtils.byte1(seconds),
-				BitUtils.byte0(seconds),
-				getNode().getNodeId()
-			);
+		Buffer buffer = new Buffer(6)
+				.put(COMMAND_ID)
+				.put(WAKE_UP_INTERVAL_SET)
+				.putInt24(seconds)
+				.put(getNode().getNodeId());
 		
 		send(buffer);
 	}
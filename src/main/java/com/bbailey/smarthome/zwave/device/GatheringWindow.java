@@ -0,0 +1,50 @@
+package com.bbailey.smarthome.zwave.device;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.bbailey.smarthome.zwave.CommandPriority;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+
+/**
+ * Commands for a node gathered for a short time, so they can go out together in one frame
+ * or on the back of a single wake up beam. Not thread safe, the node guards it
+ */
+class GatheringWindow {
+
+	private final List<HeldCommand> gathered = new ArrayList<>();
+
+
+	/**
+	 * Add a command to the window
+	 * @param command The command
+	 * @param priority The priority it was sent with
+	 * @return A future completing once the command has been sent
+	 */
+	public CompletableFuture<CommandSequence> add(SerializableCommand command, CommandPriority priority) {
+		HeldCommand held = new HeldCommand(command, priority);
+		gathered.add(held);
+		return held.getFuture();
+	}
+
+
+	/**
+	 * @return True if nothing has been gathered, so the next command opens the window
+	 */
+	public boolean isEmpty() {
+		return gathered.isEmpty();
+	}
+
+
+	/**
+	 * Close the window
+	 * @return The commands in the order they were gathered
+	 */
+	public List<HeldCommand> close() {
+		List<HeldCommand> closed = new ArrayList<>(gathered);
+		gathered.clear();
+		return closed;
+	}
+}
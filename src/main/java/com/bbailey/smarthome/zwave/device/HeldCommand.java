@@ -0,0 +1,63 @@
+package com.bbailey.smarthome.zwave.device;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.bbailey.smarthome.zwave.CommandPriority;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+
+/**
+ * A command a node is holding back before queueing it on the adapter, with the future
+ * already handed to its sender
+ */
+class HeldCommand {
+
+	private final SerializableCommand command;
+	private final CommandPriority priority;
+	private final CompletableFuture<CommandSequence> future = new CompletableFuture<>();
+
+
+	HeldCommand(SerializableCommand command, CommandPriority priority) {
+		this.command = command;
+		this.priority = priority;
+	}
+
+
+	/**
+	 * @return the command
+	 */
+	public SerializableCommand getCommand() {
+		return command;
+	}
+
+
+	/**
+	 * @return the priority it was sent with
+	 */
+	public CommandPriority getPriority() {
+		return priority;
+	}
+
+
+	/**
+	 * @return the future handed to the sender
+	 */
+	public CompletableFuture<CommandSequence> getFuture() {
+		return future;
+	}
+
+
+	/**
+	 * Complete the future handed to the sender with the outcome of the frame carrying the command
+	 * @param sent The future of the frame once sent
+	 */
+	public void deliver(CompletableFuture<CommandSequence> sent) {
+		sent.whenComplete((sequence, e) -> {
+			if (e != null) {
+				future.completeExceptionally(e);
+			} else {
+				future.complete(sequence);
+			}
+		});
+	}
+}
@@ -0,0 +1,60 @@
+package com.bbailey.smarthome.zwave.device;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.bbailey.smarthome.zwave.CommandPriority;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+
+/**
+ * Commands for a sleeping node, held until it wakes up rather than sent to a node that
+ * cannot hear them. Not thread safe, the node guards it
+ */
+class WakeupMailbox {
+
+	public static final int CAPACITY = 100;
+
+	private final List<HeldCommand> letters = new ArrayList<>();
+
+
+	/**
+	 * Hold a command until the node wakes up
+	 * @param command The command
+	 * @param priority The priority it was sent with
+	 * @return A future completing once the command has been sent after the node wakes up
+	 */
+	public CompletableFuture<CommandSequence> hold(SerializableCommand command, CommandPriority priority) {
+
+		HeldCommand held = new HeldCommand(command, priority);
+		if (letters.size() >= CAPACITY) {
+			held.getFuture().completeExceptionally(new IllegalStateException("Wake up mailbox is full"));
+		} else {
+			letters.add(held);
+		}
+		return held.getFuture();
+	}
+
+
+	/**
+	 * Take every held command
+	 * @return The commands by priority, in the order they were held within a priority
+	 */
+	public List<HeldCommand> drain() {
+
+		List<HeldCommand> drained = new ArrayList<>(letters);
+		letters.clear();
+		drained.sort(Comparator.comparing(HeldCommand::getPriority));
+		return drained;
+	}
+
+
+	/**
+	 * @return The number of commands held
+	 */
+	public int size() {
+		return letters.size();
+	}
+}
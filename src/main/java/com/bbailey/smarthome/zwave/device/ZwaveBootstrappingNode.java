@@ -1,9 +1,13 @@
 package com.bbailey.smarthome.zwave.device;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 
+import com.bbailey.smarthome.zwave.CommandPriority;
 import com.bbailey.smarthome.zwave.ZwaveAdapter;
 import com.bbailey.smarthome.zwave.api.ApplicationUpdate;
 import com.bbailey.smarthome.zwave.api.ApplicationUpdate.EventType;
@@ -13,9 +17,11 @@ import com.bbailey.smarthome.zwave.commandclass.AssociationCommandClass;
 import com.bbailey.smarthome.zwave.commandclass.BasicCommandClass;
 import com.bbailey.smarthome.zwave.commandclass.CommandClass;
 import com.bbailey.smarthome.zwave.commandclass.CommandClassFactory;
+import com.bbailey.smarthome.zwave.commandclass.MultiCommandCommandClass;
 import com.bbailey.smarthome.zwave.commandclass.VersionCommandClass;
 import com.bbailey.smarthome.zwave.commandclass.VersionCommandClass.VersionListener;
 import com.bbailey.smarthome.zwave.commandclass.VersionCommandClass.VersionedCommandClass;
+import com.bbailey.smarthome.zwave.commandclass.WakeupCommandClass;
 import com.bbailey.smarthome.zwave.utils.BitUtils;
 
 
@@ -38,13 +44,14 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 	
 	
 	private Queue<BootstrapStage> remainingStages = new LinkedList<>();
-	private Queue<Integer> undiscoveredCommandClasses = new LinkedList<>();
+	private Set<Integer> undiscoveredCommandClasses = new LinkedHashSet<>();
 	
 	private void progress() {
 		
 		BootstrapStage next = remainingStages.poll();
 		if (next == null) {
 			LOGGER.info("Node {} bootstrap complete", getNodeId());
+			setPriority(CommandPriority.INTERACTIVE);
 			return;
 		}
 	
@@ -66,16 +73,14 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 	
 	public ZwaveBootstrappingNode(ZwaveAdapter zwaveAdapter, int nodeId) {
 		super(zwaveAdapter, nodeId);
+		
+		// The interview must not hold up interactive commands for nodes already on the network
+		setPriority(CommandPriority.INTERVIEW);
 		this.remainingStages.add(BootstrapStage.NODE_DATA);
 		this.remainingStages.add(BootstrapStage.NIF);
 		
 		// Subscribe to the extra commands needed for Bootstrapping
-		getAdapter().subscribe(GetNodeInformationProtocolData.Response.class, this::processNodeData);
-		getAdapter().subscribe(
-				ApplicationUpdate.Request.class, 
-				this::processNif, 
-				c -> c.getRemoteNodeId() == getNodeId()
-			);
+		getAdapter().subscribe(ApplicationUpdate.Request.class, nodeId, this::processNif);
 		
 		
 	}
@@ -96,7 +101,17 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 	 */
 	private void requestNodeData() {
 		LOGGER.info("Requesting protocol data for node {}", getNodeId());
-		send(new GetNodeInformationProtocolData.Request(getNodeId()));
+		
+		// Wait on this request's own response rather than every node's response
+		send(new GetNodeInformationProtocolData.Request(getNodeId()))
+			.whenComplete((sequence, e) -> {
+				if (e != null) {
+					LOGGER.warn("Failed to request protocol data for node {} - {}", getNodeId(), e.getMessage());
+					progress();
+				} else {
+					processNodeData((GetNodeInformationProtocolData.Response)sequence.getResponse().get());
+				}
+			});
 	}
 	
 	
@@ -121,13 +136,18 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 				CommandClassFactory.create(this, VersionCommandClass.COMMAND_ID)
 			);
 		
+		// Unpack the reports if the Gets below go out in one Multi Command frame
+		if (getSupportedCommandClasses().contains(MultiCommandCommandClass.COMMAND_ID)) {
+			addCommandClass(CommandClassFactory.create(this, MultiCommandCommandClass.COMMAND_ID));
+		}
+		
 		ZwaveNode node = this;
 		versionCommandClass.addListener(new VersionListener() {
 
 			@Override
 			public void onProtocolVersionChange() {
 				LOGGER.info("Version data discovered for node {}", getNodeId());
-				requestNextCommandClass();
+				requestCommandClasses();
 			}
 
 			@Override
@@ -137,7 +157,11 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 				if (commandClass != null) {
 					node.addCommandClass(commandClass);
 				}
-				requestNextCommandClass();
+				
+				if (undiscoveredCommandClasses.remove(versionedCommandClass.getCommandClassId()) && undiscoveredCommandClasses.isEmpty()) {
+					LOGGER.info("Discovered all command classes");
+					progress();
+				}
 			}
 			
 			
@@ -147,18 +171,23 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 	}
 	
 	
-	private void requestNextCommandClass() {
+	/**
+	 * Ask for the version of every command class at once, so the Gets can share frames
+	 * on nodes that support Multi Command
+	 */
+	private void requestCommandClasses() {
 		
-		Integer commandClassId = undiscoveredCommandClasses.poll();
-		if (commandClassId == null) {
+		if (undiscoveredCommandClasses.isEmpty()) {
 			LOGGER.info("Discovered all command classes");
 			progress();
 			return;
 		}
 		
 		VersionCommandClass versionCommandClass = (VersionCommandClass) getCommandClass(VersionCommandClass.COMMAND_ID);
-		LOGGER.info("Requesting versions for node {} command class {}", getNodeId(), BitUtils.toHex(commandClassId));
-		versionCommandClass.sendCommandClassGet(commandClassId);
+		for (int commandClassId : new ArrayList<>(undiscoveredCommandClasses)) {
+			LOGGER.info("Requesting versions for node {} command class {}", getNodeId(), BitUtils.toHex(commandClassId));
+			versionCommandClass.sendCommandClassGet(commandClassId);
+		}
 	}
 	
 	/**
@@ -175,8 +204,6 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 	 */
 	private void processNodeData(GetNodeInformationProtocolData.Response response) {
 		
-		// TODO: Filter to just this node
-		
 		LOGGER.info("Applying node information for node {}", getNodeId());
 		setAlwaysListening(response.isListening());
 		setFrequentlyListening(response.isSensor250ms() || response.isSensor1000ms());
@@ -186,6 +213,15 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 		setBasicDeviceType(response.getBasicDeviceType());
 		setSpecificDeviceType(response.getSpecificDeviceClass());
 		
+		if (isAlwaysListening() || isFrequentlyListening()) {
+			setState(NodeState.AWAKE);
+		} else {
+			// A battery node only hears us after it reports it is awake, which needs the wake up command class
+			LOGGER.info("Node {} sleeps - holding commands until it wakes up", getNodeId());
+			addCommandClass(CommandClassFactory.create(this, WakeupCommandClass.COMMAND_ID));
+			setState(NodeState.SLEEPING);
+		}
+		
 		progress();
 	}
 	
@@ -202,6 +238,7 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 			return;
 		}
 		
+		heard();
 		LOGGER.info("Applying NIF for node {}", getNodeId());
 		
 		List<Integer> supportedCommandClasses = request.getSupportedCommands();
@@ -210,7 +247,6 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 			supportedCommandClasses.add(BasicCommandClass.COMMAND_ID);
 		}
 		
-		setSupportedCommandClasses(supportedCommandClasses);
 		undiscoveredCommandClasses.addAll(supportedCommandClasses);
 		
 		if (supportedCommandClasses.contains(VersionCommandClass.COMMAND_ID)) {
@@ -218,7 +254,7 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 		} else {
 			// Initialise the command classes on version 1
 			LOGGER.info("COMMAND_CLASS_VERSION not supported, defaulting to version 1 for all command classes");
-			for (int commandClassId : getSupportedCommandClasses()) {
+			for (int commandClassId : supportedCommandClasses) {
 				addCommandClass(CommandClassFactory.create(this, commandClassId));
 			}
 		}
@@ -227,6 +263,9 @@ public class ZwaveBootstrappingNode extends ZwaveNode {
 			remainingStages.add(BootstrapStage.ASSOCIATIONS);
 		}
 		
+		// Published once complete, as other threads read it
+		setSupportedCommandClasses(supportedCommandClasses);
+		
 		// Move on to the next stage
 		progress();
 	}
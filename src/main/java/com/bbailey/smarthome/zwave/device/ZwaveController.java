@@ -3,8 +3,7 @@ package com.bbailey.smarthome.zwave.device;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -75,8 +74,11 @@ public class ZwaveController extends ZwaveDevice implements SmartLifecycle {
 	
 	private AtomicInteger sessionTracker = new AtomicInteger();
 	
+	// How long the module takes to restart after a soft reset
+	private static final long RESET_DELAY_MS = 5000;
+	
 	public ZwaveController(ZwaveAdapter adapter) {
-		super(adapter, "controller");
+		super(adapter);
 		adapter.subscribe(GetNetworkIds.Response.class, (command) -> {
 			setHomeId(command.getHomeId());
 			setNodeId(command.getNodeId());
@@ -148,14 +150,19 @@ public class ZwaveController extends ZwaveDevice implements SmartLifecycle {
 		 */
 		
 		LOGGER.info("Performing a soft reset");
-		send(new SoftReset.Request());
 		
-		try {
-			Thread.currentThread().sleep(5000);
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		// Give the module time to restart before querying it, without holding up startup
+		send(new SoftReset.Request()).whenComplete((sequence, e) -> 
+			getAdapter().schedule(this::requestControllerData, RESET_DELAY_MS, TimeUnit.MILLISECONDS)
+		);
+	}
+	
+	
+	/**
+	 * Query the controller's properties and the nodes it knows about
+	 */
+	private void requestControllerData() {
+		
 		LOGGER.info("Triggering initialisation");
 		send(new GetLibraryVersion.Request());
 		send(new GetNetworkIds.Request());
@@ -167,13 +174,6 @@ public class ZwaveController extends ZwaveDevice implements SmartLifecycle {
 		// Find out all of the nodes that the controller knows about so we can build our view of the network
 		send(new GetInitData.Request());
 		
-		try {
-			Thread.currentThread().sleep(5000);
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		
 		//runDiscovery();
 	}
 	
@@ -234,13 +234,16 @@ public class ZwaveController extends ZwaveDevice implements SmartLifecycle {
 	private class DiscoverySession {
 		
 		private final int sessionId;
-		private final Timer timer;
+		private final long timeout;
+		private final TimeUnit unit;
+		private ScheduledFuture<?> timer;
 		
 		private DiscoveryState state = DiscoveryState.STOPPPED;
 		
 		public DiscoverySession(long timeout, TimeUnit unit) {
 			this.sessionId = sessionTracker.getAndIncrement();
-			this.timer = new Timer("device-discover");
+			this.timeout = timeout;
+			this.unit = unit;
 		}
 		
 		public void start() {
@@ -250,13 +253,7 @@ public class ZwaveController extends ZwaveDevice implements SmartLifecycle {
 			boolean networkWideInclusion = false;
 			AddNodeToNetwork.Request request = new AddNodeToNetwork.Request(true, networkWideInclusion, Mode.ANY, sessionId);
 			send(request);
-			TimerTask task = new TimerTask() {
-				@Override
-				public void run() {
-					stop();
-				}
-			};
-			timer.schedule(task, 60000);
+			timer = getAdapter().schedule(this::stop, timeout, unit);
 		}
 		
 		
@@ -267,7 +264,7 @@ public class ZwaveController extends ZwaveDevice implements SmartLifecycle {
 			boolean networkWideInclusion = false;
 			AddNodeToNetwork.Request request = new AddNodeToNetwork.Request(true, networkWideInclusion, Mode.STOP_INCLUSION, sessionId);
 			send(request);
-			timer.cancel();
+			timer.cancel(false);
 		}
 		
 	}
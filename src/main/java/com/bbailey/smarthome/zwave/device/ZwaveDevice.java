@@ -1,23 +1,18 @@
 package com.bbailey.smarthome.zwave.device;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.CompletableFuture;
 
+import com.bbailey.smarthome.zwave.CommandPriority;
 import com.bbailey.smarthome.zwave.ZwaveAdapter;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
 import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+import com.bbailey.smarthome.zwave.trace.Subsystem;
+import com.bbailey.smarthome.zwave.trace.Trace;
+import com.bbailey.smarthome.zwave.trace.TraceLevel;
 import com.bbailey.smarthome.zwave.utils.BitUtils;
 
 public abstract class ZwaveDevice {
 
-	private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
-	
 	private final ZwaveAdapter adapter;
 	
 	private int nodeId;
@@ -26,9 +21,7 @@ public abstract class ZwaveDevice {
 	private int deviceId;
 	private int deviceType;
 	
-	private BlockingQueue<SerializableCommand> sendQueue = new ArrayBlockingQueue<>(1000);
-	
-	private final ExecutorService executor;
+	private volatile CommandPriority priority = CommandPriority.INTERACTIVE;
 	
 	
 	/**
@@ -123,58 +116,41 @@ public abstract class ZwaveDevice {
 	}
 
 	
-	public ZwaveDevice(ZwaveAdapter adapter, String name) {
+	/**
+	 * The lane this device's commands are queued in
+	 * @return the priority
+	 */
+	public CommandPriority getPriority() {
+		return priority;
+	}
+	
+	
+	/**
+	 * @param priority the priority to set
+	 */
+	public void setPriority(CommandPriority priority) {
+		this.priority = priority;
+	}
+
+	
+	public ZwaveDevice(ZwaveAdapter adapter) {
 		this.adapter = adapter;
-		
-		ThreadFactory factory = new ThreadFactory() {
-			private final String threadName = name;
-			
-			@Override
-			public Thread newThread(Runnable r) {
-				return new Thread(r, threadName + "-send");
-			}
-		};
-		this.executor = Executors.newSingleThreadExecutor(factory);
-		this.executor.submit(new SendThread());
 	}
 	
 	
-	public void send(SerializableCommand command) {
-		sendQueue.add(command);
+	/**
+	 * Queue a command in this device's queue on the adapter. Commands from the same
+	 * device are sent in order
+	 * @param command The command to send
+	 * @return A future completing with the finished sequence
+	 */
+	public CompletableFuture<CommandSequence> send(SerializableCommand command) {
+		Trace.log(Subsystem.DEVICE, TraceLevel.INFO, "Node {} sending command: {}", nodeId, BitUtils.toHex(command.getCommandId()));
+		return adapter.sendCommandAsync(command, nodeId, priority);
 	}
 
 	@Override
 	public String toString() {
 		return "ZwaveDevice [nodeId=" + BitUtils.toHex(nodeId) + ", homeId=" + BitUtils.toHex(homeId) + "]";
 	}
-
-	private class SendThread implements Runnable {
-
-		
-		@Override
-		public void run() {
-			
-			LOGGER.info("Starting send-thread");
-			
-			while (true) {
-				
-				SerializableCommand command;
-				try {
-					command = sendQueue.poll(100, TimeUnit.MILLISECONDS);
-				} catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-					return;
-				}
-				if (command != null) {
-					LOGGER.info("Sending command: {}", BitUtils.toHex(command.getCommandId()));
-					try {
-						adapter.sendCommand(command);
-					} catch (Exception e) {
-						LOGGER.error("Failed to send command {} - {}", BitUtils.toHex(command.getCommandId()), e);
-					}
-				}
-			}
-		}
-		
-	}
 }
@@ -1,20 +1,34 @@
 package com.bbailey.smarthome.zwave.device;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.bbailey.smarthome.zwave.CommandPriority;
 import com.bbailey.smarthome.zwave.ZwaveAdapter;
 import com.bbailey.smarthome.zwave.api.ApplicationCommandHandler;
 import com.bbailey.smarthome.zwave.api.ApplicationUpdate;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
 import com.bbailey.smarthome.zwave.api.common.Command;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.NodeTarget;
+import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
 import com.bbailey.smarthome.zwave.commandclass.BasicCommandClass;
 import com.bbailey.smarthome.zwave.commandclass.CommandClass;
+import com.bbailey.smarthome.zwave.commandclass.MultiCommandCommandClass;
 import com.bbailey.smarthome.zwave.commandclass.WakeupCommandClass;
 import com.bbailey.smarthome.zwave.protocol.Buffer;
+import com.bbailey.smarthome.zwave.trace.Subsystem;
+import com.bbailey.smarthome.zwave.trace.Trace;
+import com.bbailey.smarthome.zwave.trace.TraceLevel;
 import com.bbailey.smarthome.zwave.utils.BitUtils;
 
 public class ZwaveNode extends ZwaveDevice {
@@ -23,21 +37,62 @@ public class ZwaveNode extends ZwaveDevice {
 	
 	private NodeState state = NodeState.INITIALISING;
 	
-	private boolean alwaysListening = false;
-	private boolean frequentlyListening = false;
-	private boolean beaming = false;
-	private int baudRate = 9600;
+	// Written by the bootstrap on the command completion thread, read on the dispatch lanes
+	private volatile boolean alwaysListening = false;
+	private volatile boolean frequentlyListening = false;
+	private volatile boolean beaming = false;
+	private volatile int baudRate = 9600;
 	
-	private BasicDeviceType basicDeviceType;
-	private GenericDeviceType genericDeviceType;
-	private SpecificDeviceType specificDeviceType;
+	private volatile BasicDeviceType basicDeviceType;
+	private volatile GenericDeviceType genericDeviceType;
+	private volatile SpecificDeviceType specificDeviceType;
 	
-	private List<Integer> supportedCommandClasses;
+	private volatile List<Integer> supportedCommandClasses;
 	
-	private Set<CommandClass> commandClasses = new HashSet<>();
+	// Keyed by command class id
+	private final Map<Integer, CommandClass> commandClasses = new ConcurrentHashMap<>();
+	
+	// Commands held while the node sleeps, also guards the state
+	private final WakeupMailbox mailbox = new WakeupMailbox();
+	
+	// How long commands for a frequently listening node are gathered before they are sent
+	public static final long GATHER_WINDOW_MS = 100;
+	
+	private final GatheringWindow window = new GatheringWindow();
+	
+	// How long a node that woke up is kept awake after the last frame to or from it, so replies and follow up commands get through
+	public static final long AWAKE_QUIET_MS = 1000;
+	
+	// The longest a node is kept awake, however busy it is
+	public static final long MAX_AWAKE_MS = 30000;
+	
+	// Guarded by the mailbox while the node is awake
+	private long awakeSince;
+	private int outstanding;
+	
+	// System.nanoTime() of the last frame sent to or received from the node
+	private volatile long lastActivity;
 
 	
 
+	/**
+	 * @return the state
+	 */
+	public NodeState getState() {
+		synchronized (mailbox) {
+			return state;
+		}
+	}
+
+
+	/**
+	 * @param state the state to set
+	 */
+	public void setState(NodeState state) {
+		synchronized (mailbox) {
+			this.state = state;
+		}
+	}
 
 
 	/**
@@ -169,15 +224,312 @@ public class ZwaveNode extends ZwaveDevice {
 
 
 	public ZwaveNode(ZwaveAdapter zwaveAdapter, int nodeId) {
-		super(zwaveAdapter, String.format("node-%d", nodeId));
+		super(zwaveAdapter);
 		setNodeId(nodeId);
 		
 		// Subscribe to ApplicationUdate callbacks
-		zwaveAdapter.subscribe(
-				ApplicationCommandHandler.Request.class, 
-				this::handleCommand, 
-				c -> c.getSourceNodeId() == getNodeId()
-			);
+		zwaveAdapter.subscribe(ApplicationCommandHandler.Request.class, nodeId, this::handleCommand);
+	}
+	
+	
+	/**
+	 * Queue a command for the node. While the node sleeps, commands that have to reach it
+	 * over the air are held until it wakes up. While it is awake they jump ahead of polling
+	 * and interviews on other nodes so they go out before it sleeps again.
+	 * 
+	 * Commands for a frequently listening node are gathered for {@link #GATHER_WINDOW_MS}
+	 * so they can follow a single wake up beam
+	 */
+	@Override
+	public CompletableFuture<CommandSequence> send(SerializableCommand command) {
+		
+		if (isFrequentlyListening() && command instanceof ControllerNodeSendData.Request) {
+			return gather((ControllerNodeSendData.Request)command);
+		}
+		
+		synchronized (mailbox) {
+			if (command instanceof NodeTarget) {
+				if (state == NodeState.SLEEPING) {
+					Trace.log(Subsystem.DEVICE, TraceLevel.INFO, "Node {} asleep - holding command {}", getNodeId(), BitUtils.toHex(command.getCommandId()));
+					return mailbox.hold(command, getPriority());
+				}
+				if (state == NodeState.AWAKE && sleeps()) {
+					return track(getAdapter().sendCommandAsync(command, getNodeId(), CommandPriority.WAKEUP));
+				}
+			}
+		}
+		return super.send(command);
+	}
+	
+	
+	/**
+	 * Queue a Get for the node. Where the node supports Multi Command, Gets sent within
+	 * {@link #GATHER_WINDOW_MS} of each other go out in one frame and the reports come back
+	 * through {@link MultiCommandCommandClass}. While the node sleeps they are held as usual
+	 * and packed when it wakes up
+	 * @param request The Get
+	 * @return A future completing once the frame carrying the Get has been sent
+	 */
+	public CompletableFuture<CommandSequence> sendGet(ControllerNodeSendData.Request request) {
+		
+		if (supportsMultiCommand() && getState() != NodeState.SLEEPING) {
+			return gather(request);
+		}
+		return send(request);
+	}
+	
+	
+	private CompletableFuture<CommandSequence> gather(ControllerNodeSendData.Request request) {
+		
+		synchronized (mailbox) {
+			CompletableFuture<CommandSequence> future;
+			synchronized (window) {
+				if (window.isEmpty()) {
+					getAdapter().schedule(this::flushWindow, GATHER_WINDOW_MS, TimeUnit.MILLISECONDS);
+				}
+				future = window.add(request, getPriority());
+			}
+			
+			// A node that woke up is kept awake until the gathered commands have been sent
+			if (state == NodeState.AWAKE && sleeps()) {
+				track(future);
+			}
+			return future;
+		}
+	}
+	
+	
+	/**
+	 * Send the gathered commands in the lane of the most urgent of them, so nothing for
+	 * another node goes between them. For a node that woke up that is the wake up lane, so
+	 * they go out ahead of the No More Information
+	 */
+	private void flushWindow() {
+		
+		List<HeldCommand> gathered;
+		synchronized (window) {
+			gathered = window.close();
+		}
+		
+		CommandPriority priority = gathered.stream()
+				.map(HeldCommand::getPriority)
+				.min(Comparator.naturalOrder())
+				.orElse(getPriority());
+		
+		synchronized (mailbox) {
+			if (sleeps() && state == NodeState.SLEEPING) {
+				// Back to sleep before the window closed, so hold them for the next wake up
+				gathered.forEach(held -> held.deliver(mailbox.hold(held.getCommand(), held.getPriority())));
+				return;
+			}
+			if (sleeps() && state == NodeState.AWAKE) {
+				priority = CommandPriority.WAKEUP;
+			}
+		}
+		
+		Trace.log(Subsystem.DEVICE, TraceLevel.INFO, "Node {} sending {} gathered commands", getNodeId(), gathered.size());
+		try {
+			sendPacked(gathered, priority);
+		} catch (RuntimeException e) {
+			// Runs on the scheduler, so nobody else would see this
+			LOGGER.error("Node {} failed to send gathered commands", getNodeId(), e);
+			gathered.forEach(held -> held.getFuture().completeExceptionally(e));
+		}
+	}
+	
+	
+	/**
+	 * Queue held commands back to back. Where the node supports it, consecutive SendData
+	 * commands are encapsulated in as few Multi Command frames as they fit in
+	 * @param commands The commands in the order to send them
+	 * @param priority The lane to send them in
+	 * @return The futures of the frames queued
+	 */
+	private List<CompletableFuture<CommandSequence>> sendPacked(List<HeldCommand> commands, CommandPriority priority) {
+		
+		List<CompletableFuture<CommandSequence>> sent = new ArrayList<>();
+		List<HeldCommand> run = new ArrayList<>();
+		boolean multiCommand = supportsMultiCommand();
+		
+		for (HeldCommand held : commands) {
+			if (multiCommand && held.getCommand() instanceof ControllerNodeSendData.Request) {
+				if (!run.isEmpty() && !MultiCommandCommandClass.fits(payloads(run, held))) {
+					sent.add(sendRun(run, priority));
+					run.clear();
+				}
+				run.add(held);
+				continue;
+			}
+			
+			if (!run.isEmpty()) {
+				sent.add(sendRun(run, priority));
+				run.clear();
+			}
+			CompletableFuture<CommandSequence> future = queue(held.getCommand(), priority);
+			held.deliver(future);
+			sent.add(future);
+		}
+		
+		if (!run.isEmpty()) {
+			sent.add(sendRun(run, priority));
+		}
+		return sent;
+	}
+	
+	
+	private CompletableFuture<CommandSequence> sendRun(List<HeldCommand> run, CommandPriority priority) {
+		
+		ControllerNodeSendData.Request first = (ControllerNodeSendData.Request)run.get(0).getCommand();
+		ControllerNodeSendData.Request request = first;
+		if (run.size() > 1) {
+			Trace.log(Subsystem.DEVICE, TraceLevel.INFO, "Node {} sending {} commands in one frame", getNodeId(), run.size());
+			request = new ControllerNodeSendData.Request(
+					getNodeId(),
+					MultiCommandCommandClass.encapsulate(payloads(run, null)),
+					first.getTransmitOptions(),
+					getAdapter().nextSessionId()
+				);
+		}
+		
+		CompletableFuture<CommandSequence> sent = queue(request, priority);
+		run.forEach(held -> held.deliver(sent));
+		return sent;
+	}
+	
+	
+	/**
+	 * Queue one frame of a batch, failing only its own future if it cannot be queued so
+	 * the rest of the batch still goes
+	 */
+	private CompletableFuture<CommandSequence> queue(SerializableCommand command, CommandPriority priority) {
+		
+		try {
+			return getAdapter().sendCommandAsync(command, getNodeId(), priority);
+		} catch (RuntimeException e) {
+			LOGGER.warn("Node {} could not queue command {} - {}", getNodeId(), BitUtils.toHex(command.getCommandId()), e.getMessage());
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+	
+	
+	private static List<Buffer> payloads(List<HeldCommand> run, HeldCommand next) {
+		
+		List<Buffer> payloads = run.stream()
+				.map(held -> ((ControllerNodeSendData.Request)held.getCommand()).getData())
+				.collect(Collectors.toList());
+		if (next != null) {
+			payloads.add(((ControllerNodeSendData.Request)next.getCommand()).getData());
+		}
+		return payloads;
+	}
+	
+	
+	/**
+	 * @return True if the node only hears us after it reports it is awake
+	 */
+	private boolean sleeps() {
+		return !isAlwaysListening() && !isFrequentlyListening();
+	}
+	
+	
+	// The reports only come back if there is an implementation to unpack them
+	private boolean supportsMultiCommand() {
+		return supportedCommandClasses != null 
+				&& supportedCommandClasses.contains(MultiCommandCommandClass.COMMAND_ID)
+				&& isCommandClassImplemented(MultiCommandCommandClass.COMMAND_ID);
+	}
+	
+	
+	/**
+	 * The node has reported that it is awake. Held commands are sent back to back, packed
+	 * into Multi Command frames where the node supports it. Once they are done and nothing
+	 * has been heard from the node for {@link #AWAKE_QUIET_MS}, it is told it can go back to sleep
+	 */
+	public void wakeUp() {
+		
+		synchronized (mailbox) {
+			state = NodeState.AWAKE;
+			awakeSince = System.nanoTime();
+			LOGGER.info("Node {} awake - sending {} held commands", getNodeId(), mailbox.size());
+			sendPacked(mailbox.drain(), CommandPriority.WAKEUP).forEach(this::track);
+		}
+		
+		getAdapter().schedule(this::sleepWhenQuiet, AWAKE_QUIET_MS, TimeUnit.MILLISECONDS);
+	}
+	
+	
+	/**
+	 * Record that a frame was received from the node, which keeps it awake a little longer
+	 */
+	protected void heard() {
+		lastActivity = System.nanoTime();
+	}
+	
+	
+	/**
+	 * Count a command sent while the node is awake until it has been sent
+	 */
+	private CompletableFuture<CommandSequence> track(CompletableFuture<CommandSequence> sent) {
+		
+		synchronized (mailbox) {
+			outstanding++;
+			lastActivity = System.nanoTime();
+		}
+		sent.whenComplete((sequence, e) -> {
+			synchronized (mailbox) {
+				outstanding--;
+				lastActivity = System.nanoTime();
+			}
+		});
+		return sent;
+	}
+	
+	
+	/**
+	 * Send the node back to sleep once every command sent while it was awake is done and the
+	 * link to it has been quiet for {@link #AWAKE_QUIET_MS}, e.g. the replies to held Gets
+	 * have arrived. Otherwise check again later
+	 */
+	private void sleepWhenQuiet() {
+		
+		long quietNanos = TimeUnit.MILLISECONDS.toNanos(AWAKE_QUIET_MS);
+		long wait;
+		synchronized (mailbox) {
+			if (state != NodeState.AWAKE) {
+				return;
+			}
+			
+			long now = System.nanoTime();
+			long quietFor = now - lastActivity;
+			boolean tooLong = now - awakeSince >= TimeUnit.MILLISECONDS.toNanos(MAX_AWAKE_MS);
+			if (tooLong || (outstanding == 0 && quietFor >= quietNanos)) {
+				sleep();
+				return;
+			}
+			wait = outstanding == 0 ? quietNanos - quietFor : quietNanos;
+		}
+		
+		getAdapter().schedule(this::sleepWhenQuiet, wait, TimeUnit.NANOSECONDS);
+	}
+	
+	
+	/**
+	 * Tell the node there is nothing more to send and hold commands from now on
+	 */
+	private void sleep() {
+		
+		synchronized (mailbox) {
+			if (state != NodeState.AWAKE) {
+				return;
+			}
+			
+			WakeupCommandClass wakeup = (WakeupCommandClass)getCommandClass(WakeupCommandClass.COMMAND_ID);
+			if (wakeup != null) {
+				wakeup.sendWakeupNoMoreInformation();
+			}
+			state = NodeState.SLEEPING;
+		}
+		LOGGER.info("Node {} back to sleep", getNodeId());
 	}
 	
 	
@@ -199,7 +551,8 @@ public class ZwaveNode extends ZwaveDevice {
 		
 		if (commandClass != null) {
 			LOGGER.info("Adding command class {} to node {}", BitUtils.toHex(commandClass.getCommandId()), getNodeId());
-			commandClasses.add(commandClass);
+			// A versioned implementation replaces one added before the version was known
+			commandClasses.put(commandClass.getCommandId(), commandClass);
 		}
 		
 		return commandClass;
@@ -212,7 +565,7 @@ public class ZwaveNode extends ZwaveDevice {
 	 * @return True if there is an implementation, false otherwise
 	 */
 	public boolean isCommandClassImplemented(int commandClassId) {
-		return commandClasses.stream().anyMatch(c -> c.getCommandId() == commandClassId);
+		return commandClasses.containsKey(commandClassId);
 	}
 	
 
@@ -225,7 +578,17 @@ public class ZwaveNode extends ZwaveDevice {
 			return;
 		}
 		
-		Buffer payload = request.getPayload();
+		receive(request.getPayload());
+	}
+	
+	
+	/**
+	 * Pass a command from the node to its command class
+	 * @param payload The command, starting with the command class id
+	 */
+	public void receive(Buffer payload) {
+		
+		heard();
 		int commandClassId = payload.next();
 		CommandClass commandClass = getCommandClass(commandClassId);
 		
@@ -239,11 +602,6 @@ public class ZwaveNode extends ZwaveDevice {
 	
 	
 	public CommandClass getCommandClass(int commandClassId) {
-		CommandClass commandClass = commandClasses.stream()
-				.filter(cc -> cc.getCommandId() == commandClassId)
-				.findAny()
-				.orElse(null);
-		
-		return commandClass;
-	}	
+		return commandClasses.get(commandClassId);
+	}
 }
@@ -0,0 +1,361 @@
+package com.bbailey.smarthome.zwave.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import com.bbailey.smarthome.zwave.api.common.CommandFlow;
+
+/**
+ * Generates the command and command class registries at build time.
+ *
+ * Every {@code @CommandFrame} class becomes an entry in {@code api.CommandRegistry}, with
+ * its decoders bound to the Buffer constructors by method reference, and every
+ * {@code @CommandClassMeta} class becomes an entry in {@code commandclass.CommandClassRegistry}.
+ * The rules previously checked when the adapter started are checked here instead, so a
+ * misconfigured command fails the build:
+ * <ul>
+ * <li>the response and callback classes match what the flow expects</li>
+ * <li>UNSOLICITED requests are DeserializableCommands</li>
+ * <li>every class that is decoded has a public Buffer constructor</li>
+ * <li>command classes extend CommandClass and have a public (int, ZwaveNode) constructor</li>
+ * <li>no two classes share an id</li>
+ * </ul>
+ *
+ * The annotation types are referenced by name because the processor is compiled before them.
+ */
+@SupportedAnnotationTypes({ RegistryProcessor.COMMAND_FRAME, RegistryProcessor.COMMAND_CLASS_META })
+public class RegistryProcessor extends AbstractProcessor {
+
+	static final String BASE_PACKAGE = "com.bbailey.smarthome.zwave";
+	static final String COMMAND_FRAME = BASE_PACKAGE + ".api.common.CommandFrame";
+	static final String COMMAND_CLASS_META = BASE_PACKAGE + ".commandclass.CommandClassMeta";
+
+	private static final String COMMAND = BASE_PACKAGE + ".api.common.Command";
+	private static final String DESERIALIZABLE_COMMAND = BASE_PACKAGE + ".api.common.DeserializableCommand";
+	private static final String NO_RESPONSE = BASE_PACKAGE + ".api.common.NoResponse";
+	private static final String BUFFER = BASE_PACKAGE + ".protocol.Buffer";
+	private static final String COMMAND_CLASS = BASE_PACKAGE + ".commandclass.CommandClass";
+	private static final String ZWAVE_NODE = BASE_PACKAGE + ".device.ZwaveNode";
+
+	private static final String COMMAND_REGISTRY_PACKAGE = BASE_PACKAGE + ".api";
+	private static final String COMMAND_CLASS_REGISTRY_PACKAGE = BASE_PACKAGE + ".commandclass";
+
+	private final Map<Integer, String> commands = new TreeMap<>();
+	private final Map<Integer, String> commandClasses = new TreeMap<>();
+	private boolean generated = false;
+
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		for (TypeElement annotation : annotations) {
+			String name = annotation.getQualifiedName().toString();
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (COMMAND_FRAME.equals(name)) {
+					processCommandFrame((TypeElement)element);
+				} else if (COMMAND_CLASS_META.equals(name)) {
+					processCommandClass((TypeElement)element);
+				}
+			}
+		}
+
+		if (roundEnv.processingOver() || generated || (commands.isEmpty() && commandClasses.isEmpty())) {
+			return false;
+		}
+
+		// Everything annotated is seen in the first round, so the registries are written once
+		generated = true;
+		if (!commands.isEmpty()) {
+			writeCommandRegistry();
+		}
+		if (!commandClasses.isEmpty()) {
+			writeCommandClassRegistry();
+		}
+		return false;
+	}
+
+
+	private void processCommandFrame(TypeElement element) {
+
+		AnnotationMirror mirror = getAnnotation(element, COMMAND_FRAME);
+		Map<String, AnnotationValue> values = getValues(mirror);
+
+		int commandId = (Integer)values.get("value").getValue();
+		CommandFlow flow = CommandFlow.valueOf(((VariableElement)values.get("flow").getValue()).getSimpleName().toString());
+		TypeElement requestClass = getClass(values.get("requestClass"));
+		TypeElement responseClass = getOptionalClass(values.get("responseClass"));
+		TypeElement callbackClass = getOptionalClass(values.get("callbackClass"));
+
+		boolean valid = checkId(commands, commandId, element, mirror);
+
+		if (flow.hasResponse() && responseClass == null) {
+			valid = error(element, mirror, "A response class is expected for flow " + flow);
+		}
+		if (!flow.hasResponse() && responseClass != null) {
+			valid = error(element, mirror, "No response is expected for a flow of " + flow);
+		}
+		if (flow.hasCallback() && callbackClass == null) {
+			valid = error(element, mirror, "A callback class is expected for flow " + flow);
+		}
+		if (!flow.hasCallback() && callbackClass != null) {
+			valid = error(element, mirror, "No callback is expected for a flow of " + flow);
+		}
+
+		boolean requestDecoded = isSubtype(requestClass, DESERIALIZABLE_COMMAND);
+		if (flow == CommandFlow.UNSOLICITED && !requestDecoded) {
+			valid = error(element, mirror, "UNSOLICTED requests must be DeserializableCommand classes");
+		}
+
+		if (requestDecoded) {
+			valid &= checkBufferConstructor(requestClass, element, mirror);
+		}
+		if (responseClass != null) {
+			valid &= checkBufferConstructor(responseClass, element, mirror);
+		}
+		if (callbackClass != null) {
+			valid &= checkBufferConstructor(callbackClass, element, mirror);
+		}
+
+		if (!valid) {
+			return;
+		}
+
+		commands.put(commandId, String.format("new CommandRegistration(0x%02X, CommandFlow.%s, %s.class, %s, %s, %s)",
+				commandId,
+				flow.name(),
+				requestClass.getQualifiedName(),
+				requestDecoded ? requestClass.getQualifiedName() + "::new" : "null",
+				responseClass != null ? responseClass.getQualifiedName() + "::new" : "null",
+				callbackClass != null ? callbackClass.getQualifiedName() + "::new" : "null"));
+	}
+
+
+	private void processCommandClass(TypeElement element) {
+
+		AnnotationMirror mirror = getAnnotation(element, COMMAND_CLASS_META);
+		Map<String, AnnotationValue> values = getValues(mirror);
+		int commandClassId = (Integer)values.get("id").getValue();
+
+		boolean valid = checkId(commandClasses, commandClassId, element, mirror);
+
+		if (!isSubtype(element, COMMAND_CLASS) || element.getModifiers().contains(Modifier.ABSTRACT)) {
+			valid = error(element, mirror, "Command class " + element.getQualifiedName() + " must be a concrete CommandClass");
+		}
+		if (!isAccessible(element) || !hasConstructor(element, "int", ZWAVE_NODE)) {
+			valid = error(element, mirror, "Command class " + element.getQualifiedName() + " must have a public (int, ZwaveNode) constructor");
+		}
+
+		if (valid) {
+			commandClasses.put(commandClassId, element.getQualifiedName() + "::new");
+		}
+	}
+
+
+	private boolean checkId(Map<Integer, String> registered, int id, TypeElement element, AnnotationMirror mirror) {
+
+		if (id < 0 || id > 0xFF) {
+			return error(element, mirror, String.format("Id 0x%X does not fit in a single byte", id));
+		}
+		if (registered.containsKey(id)) {
+			return error(element, mirror, String.format("Id 0x%02X is already registered", id));
+		}
+		return true;
+	}
+
+
+	private boolean checkBufferConstructor(TypeElement clazz, TypeElement element, AnnotationMirror mirror) {
+
+		if (!isAccessible(clazz) || !hasConstructor(clazz, BUFFER)) {
+			return error(element, mirror, "Class " + clazz.getQualifiedName() + " must have a Buffer constructor");
+		}
+		return true;
+	}
+
+
+	private boolean hasConstructor(TypeElement clazz, String... parameterTypes) {
+
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(clazz.getEnclosedElements())) {
+			if (!constructor.getModifiers().contains(Modifier.PUBLIC) || constructor.getParameters().size() != parameterTypes.length) {
+				continue;
+			}
+
+			boolean matches = true;
+			for (int i = 0 ; i < parameterTypes.length ; i++) {
+				TypeMirror type = processingEnv.getTypeUtils().erasure(constructor.getParameters().get(i).asType());
+				matches &= parameterTypes[i].equals(type.toString());
+			}
+			if (matches) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * The class must be instantiable from the generated registry
+	 */
+	private boolean isAccessible(TypeElement clazz) {
+
+		if (!clazz.getModifiers().contains(Modifier.PUBLIC)) {
+			return false;
+		}
+		if (clazz.getNestingKind() == NestingKind.MEMBER) {
+			return clazz.getModifiers().contains(Modifier.STATIC) && isAccessible((TypeElement)clazz.getEnclosingElement());
+		}
+		return clazz.getNestingKind() == NestingKind.TOP_LEVEL;
+	}
+
+
+	private boolean isSubtype(TypeElement clazz, String superType) {
+		TypeElement type = processingEnv.getElementUtils().getTypeElement(superType);
+		return type != null && processingEnv.getTypeUtils().isSubtype(clazz.asType(), type.asType());
+	}
+
+
+	private AnnotationMirror getAnnotation(TypeElement element, String annotation) {
+
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) {
+				return mirror;
+			}
+		}
+		throw new IllegalStateException(element + " is not annotated with " + annotation);
+	}
+
+
+	private Map<String, AnnotationValue> getValues(AnnotationMirror mirror) {
+
+		Map<String, AnnotationValue> values = new TreeMap<>();
+		processingEnv.getElementUtils().getElementValuesWithDefaults(mirror)
+				.forEach((method, value) -> values.put(method.getSimpleName().toString(), value));
+		return values;
+	}
+
+
+	private TypeElement getClass(AnnotationValue value) {
+		TypeMirror type = (TypeMirror)value.getValue();
+		return (TypeElement)((DeclaredType)type).asElement();
+	}
+
+
+	/**
+	 * Read a class value where NoResponse stands for no class
+	 */
+	private TypeElement getOptionalClass(AnnotationValue value) {
+
+		TypeMirror type = (TypeMirror)value.getValue();
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+
+		TypeElement clazz = (TypeElement)((DeclaredType)type).asElement();
+		return clazz.getQualifiedName().contentEquals(NO_RESPONSE) ? null : clazz;
+	}
+
+
+	private boolean error(Element element, AnnotationMirror mirror, String message) {
+		processingEnv.getMessager().printMessage(Kind.ERROR, message, element, mirror);
+		return false;
+	}
+
+
+	private void writeCommandRegistry() {
+
+		List<String> lines = new ArrayList<>();
+		lines.add("package " + COMMAND_REGISTRY_PACKAGE + ";");
+		lines.add("");
+		lines.add("import java.util.List;");
+		lines.add("");
+		lines.add("import javax.annotation.processing.Generated;");
+		lines.add("");
+		lines.add("import " + BASE_PACKAGE + ".api.common.CommandFlow;");
+		lines.add("import " + BASE_PACKAGE + ".api.common.CommandRegistration;");
+		lines.add("");
+		lines.add("/**");
+		lines.add(" * Every {@code @CommandFrame} command, generated at build time");
+		lines.add(" */");
+		lines.add("@Generated(\"" + RegistryProcessor.class.getName() + "\")");
+		lines.add("public final class CommandRegistry {");
+		lines.add("");
+		lines.add("\tprivate static final List<CommandRegistration> COMMANDS = List.of(");
+		lines.add(String.join(",\n", commands.values().stream().map(c -> "\t\t\t" + c).toArray(String[]::new)));
+		lines.add("\t\t);");
+		lines.add("");
+		lines.add("\tpublic static List<CommandRegistration> getCommands() {");
+		lines.add("\t\treturn COMMANDS;");
+		lines.add("\t}");
+		lines.add("");
+		lines.add("\tprivate CommandRegistry() {");
+		lines.add("\t}");
+		lines.add("}");
+
+		write(COMMAND_REGISTRY_PACKAGE + ".CommandRegistry", lines);
+	}
+
+
+	private void writeCommandClassRegistry() {
+
+		List<String> lines = new ArrayList<>();
+		lines.add("package " + COMMAND_CLASS_REGISTRY_PACKAGE + ";");
+		lines.add("");
+		lines.add("import javax.annotation.processing.Generated;");
+		lines.add("");
+		lines.add("/**");
+		lines.add(" * Every {@code @CommandClassMeta} command class, generated at build time");
+		lines.add(" */");
+		lines.add("@Generated(\"" + RegistryProcessor.class.getName() + "\")");
+		lines.add("final class CommandClassRegistry {");
+		lines.add("");
+		lines.add("\tstatic void registerAll(CommandClassFactory factory) {");
+		commandClasses.forEach((id, constructor) -> lines.add(String.format("\t\tfactory.register(0x%02X, %s);", id, constructor)));
+		lines.add("\t}");
+		lines.add("");
+		lines.add("\tprivate CommandClassRegistry() {");
+		lines.add("\t}");
+		lines.add("}");
+
+		write(COMMAND_CLASS_REGISTRY_PACKAGE + ".CommandClassRegistry", lines);
+	}
+
+
+	private void write(String className, List<String> lines) {
+
+		try (PrintWriter writer = new PrintWriter(processingEnv.getFiler().createSourceFile(className).openWriter())) {
+			for (String line : lines) {
+				writer.println(line);
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR, "Failed to write " + className + " - " + e.getMessage());
+		}
+	}
+}
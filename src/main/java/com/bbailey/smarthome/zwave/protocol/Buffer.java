@@ -1,49 +1,76 @@
 package com.bbailey.smarthome.zwave.protocol;
 
-import java.util.Arrays;
-
-import org.apache.logging.log4j.util.Strings;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import com.bbailey.smarthome.zwave.utils.BitUtils;
 
 /**
- * Wrapper class for a byte array ensuring all of the casting from and to integers is handled
+ * Wrapper class for a {@link ByteBuffer} ensuring all of the casting from and to integers is handled.
+ *
+ * A buffer has independent read and write positions. {@link #next()} and friends consume bytes
+ * from the read position, while {@link #put(int)} and friends append at the write position.
+ * {@link #slice(int, int)} returns a view that shares storage with this buffer so nested payloads
+ * can be built and parsed without intermediate copies.
  */
 public class Buffer {
 
-	private final byte[] data;
+	private static final AtomicIntegerFieldUpdater<Buffer> REFERENCES = AtomicIntegerFieldUpdater.newUpdater(Buffer.class, "references");
+
+	private final ByteBuffer data;
+	private final FramePool pool;
+
+	// The buffer that owns the storage and its reference count. A buffer owns itself unless it is a slice
+	private final Buffer root;
+
 	private int index = 0;
-	
-	
+	private int writeIndex = 0;
+	private volatile int references = 1;
+
+
 	/**
-	 * Get the underlying array of bytes
-	 * @return The underlying byte array
+	 * Get a copy of the bytes held in the buffer
+	 * @return The buffer contents
 	 */
 	public byte[] getData() {
-		return data;
+		byte[] bytes = new byte[length()];
+		getBytes(0, bytes, 0, bytes.length);
+		return bytes;
 	}
-	
-	
+
+
 	/**
 	 * Get a value from the buffer
 	 * @param idx The index
 	 * @return The value at that index
 	 */
 	public int get(int idx) {
-		return data[idx] & 0xFF;
+		return data.get(idx) & 0xFF;
 	}
-	
-	
+
+
+	/**
+	 * Copy a range of the buffer into an array
+	 * @param idx The index of the first byte to copy
+	 * @param dst The destination array
+	 * @param offset The position in the destination to copy to
+	 * @param count The number of bytes to copy
+	 */
+	public void getBytes(int idx, byte[] dst, int offset, int count) {
+		data.get(idx, dst, offset, count);
+	}
+
+
 	/**
 	 * Set a value in the buffer
 	 * @param idx The index to set at
 	 * @param value The value
 	 */
 	public void set(int idx, int value) {
-		this.data[idx] = (byte)(value & 0xFF);
+		data.put(idx, (byte)(value & 0xFF));
 	}
-	
-	
+
+
 	/**
 	 * Get the next value from the buffer
 	 * @return The next value in the buffer
@@ -51,8 +78,18 @@ public class Buffer {
 	public int next() {
 		return get(index++);
 	}
-	
-	
+
+
+	/**
+	 * Get the next INT16 value from the buffer. This will
+	 * consume 2 bytes
+	 * @return The next INT 16
+	 */
+	public int nextInt16() {
+		return BitUtils.convertToInt16(next(), next());
+	}
+
+
 	/**
 	 * Get the next INT24 value from the buffer. This will
 	 * consume 3 bytes
@@ -61,60 +98,233 @@ public class Buffer {
 	public int nextInt24() {
 		return BitUtils.convertToInt24(next(), next(), next());
 	}
-	
-	
+
+
+	/**
+	 * Get the next INT32 value from the buffer. This will
+	 * consume 4 bytes
+	 * @return The next INT 32
+	 */
+	public int nextInt32() {
+		return BitUtils.convertToInt32(next(), next(), next(), next());
+	}
+
+
+	/**
+	 * Copy the next bytes out of the buffer
+	 * @param count The number of bytes to consume
+	 * @return The bytes
+	 */
+	public byte[] nextBytes(int count) {
+		byte[] bytes = new byte[count];
+		getBytes(index, bytes, 0, count);
+		index += count;
+		return bytes;
+	}
+
+
+	/**
+	 * Consume the next bytes as a view sharing storage with this buffer.
+	 * The view holds a reference to the storage until it is released.
+	 * @param count The number of bytes to consume
+	 * @return The view
+	 */
+	public Buffer nextSlice(int count) {
+		Buffer slice = slice(index, count);
+		index += count;
+		return slice;
+	}
+
+
+	/**
+	 * Create a view of part of this buffer that shares its storage. Writes to either
+	 * buffer are visible in the other. The view holds a reference to the storage
+	 * until it is released.
+	 * @param offset The index the view starts at
+	 * @param count The number of bytes in the view
+	 * @return The view
+	 */
+	public Buffer slice(int offset, int count) {
+		root.retain();
+		return new Buffer(data.slice(offset, count), root);
+	}
+
+
 	/**
 	 * Returns true if there is still data in the buffer
 	 * @return True if there is data to read, false otherwise
 	 */
 	public boolean hasNext() {
-		return index < data.length;
+		return index < length();
+	}
+
+
+	/**
+	 * The number of bytes left to read
+	 * @return The remaining bytes
+	 */
+	public int remaining() {
+		return length() - index;
 	}
-	
-	
+
+
+	/**
+	 * Write a single byte at the write position
+	 * @param value The value
+	 * @return This buffer
+	 */
+	public Buffer put(int value) {
+		set(writeIndex++, value);
+		return this;
+	}
+
+
+	/**
+	 * Write an INT16 value at the write position, most significant byte first
+	 * @param value The value
+	 * @return This buffer
+	 */
+	public Buffer putInt16(int value) {
+		return put(BitUtils.byte1(value)).put(BitUtils.byte0(value));
+	}
+
+
+	/**
+	 * Write an INT24 value at the write position, most significant byte first
+	 * @param value The value
+	 * @return This buffer
+	 */
+	public Buffer putInt24(int value) {
+		return put(BitUtils.byte2(value)).put(BitUtils.byte1(value)).put(BitUtils.byte0(value));
+	}
+
+
+	/**
+	 * Write an INT32 value at the write position, most significant byte first
+	 * @param value The value
+	 * @return This buffer
+	 */
+	public Buffer putInt32(int value) {
+		return put(BitUtils.byte3(value)).putInt24(value);
+	}
+
+
+	/**
+	 * Copy the contents of another buffer to the write position
+	 * @param source The buffer to copy
+	 * @return This buffer
+	 */
+	public Buffer putBytes(Buffer source) {
+		data.put(writeIndex, source.data, 0, source.length());
+		writeIndex += source.length();
+		return this;
+	}
+
+
+	/**
+	 * Copy part of an array to the write position
+	 * @param source The array to copy from
+	 * @param offset The index of the first byte to copy
+	 * @param count The number of bytes to copy
+	 * @return This buffer
+	 */
+	public Buffer putBytes(byte[] source, int offset, int count) {
+		data.put(writeIndex, source, offset, count);
+		writeIndex += count;
+		return this;
+	}
+
+
 	/**
 	 * Get the length of the buffer
 	 * @return The buffer length
 	 */
 	public int length() {
-		return data.length;
+		return data.limit();
 	}
-	
+
+
+	/**
+	 * Take an additional reference to a pooled buffer. Each call must be matched
+	 * by a call to {@link #release()}
+	 * @return This buffer
+	 */
+	public Buffer retain() {
+		REFERENCES.incrementAndGet(root);
+		return this;
+	}
+
+
+	/**
+	 * Release a reference to the buffer. Once the last reference is released a pooled
+	 * buffer is returned to its pool and must no longer be used, along with any slices
+	 * taken from it. This is a no-op for buffers that were not taken from a pool.
+	 */
+	public void release() {
+		if (root.pool != null && REFERENCES.decrementAndGet(root) == 0) {
+			root.pool.recycle(root);
+		}
+	}
+
+
+	/**
+	 * Prepare a recycled buffer for reuse
+	 * @param length The number of bytes that will be used
+	 */
+	void reset(int length) {
+		if (length > data.capacity()) {
+			throw new IllegalArgumentException("Length " + length + " exceeds the buffer capacity of " + data.capacity());
+		}
+		data.limit(length);
+		this.index = 0;
+		this.writeIndex = 0;
+		this.references = 1;
+	}
+
 	public Buffer(byte[] data) {
-		this.data = data;
+		this.data = ByteBuffer.wrap(data);
+		this.pool = null;
+		this.root = this;
 	}
-	
+
 	public Buffer(int length) {
-		this.data = new byte[length];
+		this(new byte[length]);
+	}
+
+	Buffer(int capacity, FramePool pool) {
+		this.data = ByteBuffer.allocate(capacity);
+		this.pool = pool;
+		this.root = this;
+	}
+
+	private Buffer(ByteBuffer data, Buffer root) {
+		this.data = data;
+		this.pool = null;
+		this.root = root;
 	}
 
 	public Buffer() {
 		this(0);
 	}
-	
+
 	public static Buffer of(int... values) {
 		Buffer buffer = new Buffer(values.length);
 		for (int i = 0 ; i < values.length ; i++) {
 			buffer.set(i, values[i]);
 		}
-		
+
 		return buffer;
 	}
-	
+
 	public static Buffer empty() {
 		return new Buffer();
 	}
-	
+
 
 	@Override
 	public String toString() {
-		String[] hex = new String[data.length];
-		for (int i = 0 ; i < data.length ; i++) {
-			hex[i] = BitUtils.toHex(get(i));
-		}
-		
-		return "[" + Strings.join(Arrays.asList(hex), ',') + "]";
+		return BitUtils.toHex(getData());
 	}
-	
-	
+
+
 }
@@ -2,14 +2,20 @@ package com.bbailey.smarthome.zwave.protocol;
 
 public class CancelFrame extends ZwaveFrame {
 
+	/**
+	 * Shared instance. The frame carries no state so a single instance is reused
+	 */
+	public static final CancelFrame INSTANCE = new CancelFrame();
+	
+	// The pre-encoded frame. Callers must not modify the returned array
+	private static final byte[] ENCODED = new byte[] { (byte)FrameType.CAN.getProtocolValue() };
+
 	public CancelFrame() {
 		super(FrameType.CAN);
 	}
 	
 	@Override
 	public byte[] serialize() {
-		byte b = (byte)(getFrameType().getProtocolValue() & 0xFF);
-		return new byte[] { b };
+		return ENCODED;
 	}
-
 }
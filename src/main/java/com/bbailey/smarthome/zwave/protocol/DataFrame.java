@@ -42,6 +42,10 @@ public class DataFrame extends ZwaveFrame {
 	// The message checksum - 1 byte
 	// Checksum includes the length, type, commandId and commandPayload fields.
 	private int checksum;
+	
+	// The pool this frame is returned to on release, null if the frame is not pooled
+	private final FramePool pool;
+	private boolean released = false;
 
 	/**
 	 * @return the length
@@ -115,6 +119,13 @@ public class DataFrame extends ZwaveFrame {
 	
 	public DataFrame() {
 		super(FrameType.SOF);
+		this.pool = null;
+	}
+	
+	
+	DataFrame(FramePool pool) {
+		super(FrameType.SOF);
+		this.pool = pool;
 	}
 	
 
@@ -127,22 +138,77 @@ public class DataFrame extends ZwaveFrame {
 	}
 	
 	
+	/**
+	 * Build a frame from an already serialized payload
+	 * @param type Whether the frame is a request or a response
+	 * @param commandId The command id
+	 * @param commandPayload The payload
+	 */
+	public DataFrame(CommandType type, int commandId, Buffer commandPayload) {
+		this();
+		this.type = type;
+		this.commandId = commandId;
+		this.commandPayload = commandPayload;
+		this.length = commandPayload.length() + 3;
+	}
+	
+	
 	public DataFrame(int length, byte[] buffer) {
-		super(FrameType.SOF);
+		this(length, buffer, 0);
+	}
+	
+	
+	/**
+	 * Parse a data frame out of a larger array of received bytes
+	 * @param length The value of the frame's length field
+	 * @param buffer The received bytes
+	 * @param offset The index of the type field within the buffer
+	 */
+	public DataFrame(int length, byte[] buffer, int offset) {
+		this();
+		load(length, buffer, offset, new Buffer(length - 3));
+	}
+	
+	
+	/**
+	 * Populate the frame from received bytes
+	 * @param length The value of the frame's length field
+	 * @param buffer The received bytes
+	 * @param offset The index of the type field within the buffer
+	 * @param payload The buffer to copy the command payload into
+	 */
+	void load(int length, byte[] buffer, int offset, Buffer payload) {
 		this.length = length;
+		this.released = false;
 		
-		int idx = 0;
+		int idx = offset;
 		this.type = buffer[idx++] == CommandType.REQUEST.getProtocolValue() ? CommandType.REQUEST : CommandType.RESPONSE;
-		this.commandId = buffer[idx++];
+		this.commandId = buffer[idx++] & 0xFF;
 		
-		this.commandPayload = new Buffer(length - 3);
-		for (int i = 0 ; i < this.commandPayload.length() ; i++) {
-			commandPayload.set(i, buffer[idx++]);
-		}
+		this.commandPayload = payload;
+		payload.putBytes(buffer, idx, payload.length());
+		idx += payload.length();
 		
 		this.checksum = buffer[idx++];
 	}
 	
+	
+	/**
+	 * Return a pooled frame and its payload to the pool. The frame must not be used
+	 * after it has been released. This is a no-op for frames that were not pooled.
+	 */
+	public void release() {
+		
+		if (pool == null || released) {
+			return;
+		}
+		
+		released = true;
+		commandPayload.release();
+		commandPayload = null;
+		pool.recycle(this);
+	}
+	
 	@Override
 	public byte[] serialize() {
 		
@@ -152,9 +218,7 @@ public class DataFrame extends ZwaveFrame {
 		packet[1] = (byte)(length & 0xFF);
 		packet[2] = (byte)(type.getProtocolValue() & 0xFF);
 		packet[3] = (byte)(commandId & 0xFF);
-		for (int i = 0 ; i < commandPayload.length() ; i++) {
-			packet[4 + i] = (byte)commandPayload.get(i);
-		}
+		commandPayload.getBytes(0, packet, 4, commandPayload.length());
 		
 		int checksum = calculateChecksum();
 		packet[packet.length - 1] = (byte)(checksum & 0xFF);
@@ -175,4 +239,22 @@ public class DataFrame extends ZwaveFrame {
 		
 		return checksum;
 	}
+	
+	
+	/**
+	 * Calculate the checksum of a serialized frame without parsing it
+	 * @param buffer The raw bytes
+	 * @param offset The index of the length field
+	 * @param count The number of bytes covered by the checksum (the value of the length field)
+	 * @return The checksum between 0x00-0xFF
+	 */
+	public static int calculateChecksum(byte[] buffer, int offset, int count) {
+		
+		int checksum = 0xFF;
+		for (int i = offset ; i < offset + count ; i++) {
+			checksum ^= buffer[i];
+		}
+		
+		return checksum & 0xFF;
+	}
 }
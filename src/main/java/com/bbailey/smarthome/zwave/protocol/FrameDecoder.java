@@ -0,0 +1,208 @@
+package com.bbailey.smarthome.zwave.protocol;
+
+import com.bbailey.smarthome.zwave.protocol.ZwaveFrame.FrameType;
+import com.bbailey.smarthome.zwave.utils.BitUtils;
+
+/**
+ * Decodes the raw byte stream received from the Z-Wave module into {@link ZwaveFrame}s.
+ *
+ * Each chunk handed to {@link #decode(byte[], int, int)} is scanned in bulk. Frame boundaries
+ * are located with index arithmetic and data frames are validated directly in the received
+ * array before being parsed into a frame taken from the {@link FramePool}. Only a frame that
+ * is split across two chunks is first copied into the decoder's assembly buffer.
+ */
+public class FrameDecoder {
+
+	/**
+	 * The smallest legal value of the length field (type, command id and checksum)
+	 */
+	public static final int MIN_FRAME_LENGTH = 3;
+
+	/**
+	 * The largest value the single byte length field can hold
+	 */
+	public static final int MAX_FRAME_LENGTH = 0xFF;
+
+	/**
+	 * Receiver of the frames and errors found by the decoder
+	 */
+	public interface FrameListener {
+
+		/**
+		 * A complete and valid frame has been decoded
+		 * @param frame The frame
+		 */
+		public void onFrame(ZwaveFrame frame);
+
+		/**
+		 * A data frame was received but failed validation
+		 * @param reason Description of the failure
+		 */
+		public void onInvalidFrame(String reason);
+
+		/**
+		 * A byte was received that does not start a frame
+		 * @param value The byte value
+		 */
+		public void onOutOfFrame(int value);
+	}
+
+
+	private final FrameListener listener;
+	private final FramePool pool;
+
+	// Assembly buffer for data frames that span more than one chunk, starting at the length field
+	private final byte[] pending = new byte[MAX_FRAME_LENGTH + 1];
+	private int pendingCount = 0;
+	private boolean inFrame = false;
+
+
+	public FrameDecoder(FrameListener listener) {
+		this(listener, FramePool.getInstance());
+	}
+	
+	
+	public FrameDecoder(FrameListener listener, FramePool pool) {
+		this.listener = listener;
+		this.pool = pool;
+	}
+
+
+	/**
+	 * Check whether the decoder is part way through a data frame
+	 * @return True if a SOF has been received but the frame is not yet complete
+	 */
+	public boolean isInFrame() {
+		return inFrame;
+	}
+
+
+	/**
+	 * Discard any partially received frame
+	 */
+	public void reset() {
+		inFrame = false;
+		pendingCount = 0;
+	}
+
+
+	/**
+	 * Decode a complete chunk of received bytes
+	 * @param data The received bytes
+	 */
+	public void decode(byte[] data) {
+		decode(data, 0, data.length);
+	}
+
+
+	/**
+	 * Decode a region of received bytes
+	 * @param data The received bytes
+	 * @param offset The index of the first byte to decode
+	 * @param length The number of bytes to decode
+	 */
+	public void decode(byte[] data, int offset, int length) {
+
+		int idx = offset;
+		int end = offset + length;
+
+		if (inFrame && idx < end) {
+			idx = continueFrame(data, idx, end);
+		}
+
+		while (idx < end) {
+
+			int value = data[idx] & 0xFF;
+			FrameType frameType = FrameType.lookup(value);
+			if (frameType == null) {
+				listener.onOutOfFrame(value);
+				idx++;
+			} else if (frameType != FrameType.SOF) {
+				listener.onFrame(ZwaveFrame.of(frameType));
+				idx++;
+			} else if (idx + 1 < end) {
+				idx = startFrame(data, idx + 1, end);
+			} else {
+				// Only the SOF made it into this chunk
+				inFrame = true;
+				pendingCount = 0;
+				idx++;
+			}
+		}
+	}
+
+
+	/**
+	 * Handle a data frame whose length field is at the given index
+	 * @return The index of the first byte after the frame
+	 */
+	private int startFrame(byte[] data, int lengthIdx, int end) {
+
+		int frameLength = data[lengthIdx] & 0xFF;
+		if (frameLength < MIN_FRAME_LENGTH) {
+			listener.onInvalidFrame("Frame length " + frameLength + " is not valid");
+			// Resynchronise on the byte following the SOF
+			return lengthIdx;
+		}
+
+		int frameEnd = lengthIdx + 1 + frameLength;
+		if (frameEnd <= end) {
+			// The whole frame is in this chunk so parse it in place
+			emitDataFrame(data, lengthIdx);
+			return frameEnd;
+		}
+
+		// The remainder of the frame will arrive with a later chunk
+		inFrame = true;
+		pendingCount = end - lengthIdx;
+		System.arraycopy(data, lengthIdx, pending, 0, pendingCount);
+		return end;
+	}
+
+
+	/**
+	 * Continue assembling a data frame started in an earlier chunk
+	 * @return The index of the first byte after the frame
+	 */
+	private int continueFrame(byte[] data, int idx, int end) {
+
+		if (pendingCount == 0) {
+			// Still waiting for the length field
+			inFrame = false;
+			return startFrame(data, idx, end);
+		}
+
+		int remaining = (pending[0] & 0xFF) + 1 - pendingCount;
+		int available = Math.min(remaining, end - idx);
+		System.arraycopy(data, idx, pending, pendingCount, available);
+		pendingCount += available;
+
+		if (available == remaining) {
+			inFrame = false;
+			pendingCount = 0;
+			emitDataFrame(pending, 0);
+		}
+
+		return idx + available;
+	}
+
+
+	/**
+	 * Validate and publish the data frame whose length field is at the given index
+	 */
+	private void emitDataFrame(byte[] data, int lengthIdx) {
+
+		int frameLength = data[lengthIdx] & 0xFF;
+		int checksumIdx = lengthIdx + frameLength;
+
+		int expected = DataFrame.calculateChecksum(data, lengthIdx, frameLength);
+		int received = data[checksumIdx] & 0xFF;
+		if (expected != received) {
+			listener.onInvalidFrame("Invalid checksum: received " + BitUtils.toHex(received) + " - expected " + BitUtils.toHex(expected));
+			return;
+		}
+
+		// Pooled frames are handed back by the listener with DataFrame.release()
+		listener.onFrame(pool.acquireFrame(frameLength, data, lengthIdx + 1));
+	}
+}
@@ -0,0 +1,97 @@
+package com.bbailey.smarthome.zwave.protocol;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of recyclable {@link DataFrame} and {@link Buffer} instances used on the receive path.
+ *
+ * Frames and buffers are taken from the pool by the decoder and handed back with
+ * {@link DataFrame#release()} / {@link Buffer#release()} once they have been processed.
+ * When the pool is empty a new instance is allocated, and instances released to a full
+ * pool are left for the garbage collector, so the pool never blocks.
+ */
+public class FramePool {
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final FramePool INSTANCE = new FramePool(DEFAULT_CAPACITY);
+
+	private final BlockingQueue<DataFrame> frames;
+	private final BlockingQueue<Buffer> buffers;
+
+	private final AtomicLong allocations = new AtomicLong();
+
+
+	/**
+	 * Get the pool shared by the receive path
+	 * @return The shared pool
+	 */
+	public static FramePool getInstance() {
+		return INSTANCE;
+	}
+
+
+	public FramePool(int capacity) {
+		this.frames = new ArrayBlockingQueue<>(capacity);
+		this.buffers = new ArrayBlockingQueue<>(capacity);
+	}
+
+
+	/**
+	 * The number of frames and buffers the pool has had to allocate
+	 * @return the allocations
+	 */
+	public long getAllocations() {
+		return allocations.get();
+	}
+
+
+	/**
+	 * Take a buffer from the pool
+	 * @param length The number of bytes required
+	 * @return A buffer with a single reference and the read position at the start
+	 */
+	public Buffer acquireBuffer(int length) {
+
+		Buffer buffer = buffers.poll();
+		if (buffer == null) {
+			allocations.incrementAndGet();
+			buffer = new Buffer(FrameDecoder.MAX_FRAME_LENGTH, this);
+		}
+
+		buffer.reset(length);
+		return buffer;
+	}
+
+
+	/**
+	 * Take a frame from the pool and parse the received bytes into it
+	 * @param length The value of the frame's length field
+	 * @param data The received bytes
+	 * @param offset The index of the type field
+	 * @return The parsed frame
+	 */
+	public DataFrame acquireFrame(int length, byte[] data, int offset) {
+
+		DataFrame frame = frames.poll();
+		if (frame == null) {
+			allocations.incrementAndGet();
+			frame = new DataFrame(this);
+		}
+
+		frame.load(length, data, offset, acquireBuffer(length - 3));
+		return frame;
+	}
+
+
+	void recycle(Buffer buffer) {
+		buffers.offer(buffer);
+	}
+
+
+	void recycle(DataFrame frame) {
+		frames.offer(frame);
+	}
+}
@@ -0,0 +1,183 @@
+package com.bbailey.smarthome.zwave.protocol;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bbailey.smarthome.zwave.protocol.ZwaveFrame.FrameType;
+import com.bbailey.smarthome.zwave.utils.MpscRingBuffer;
+
+/**
+ * Owns the outbound side of the link. Frames are queued by any thread and written
+ * by a single writer thread, so senders never block on each other or on the receive path.
+ *
+ * ACK, NAK and CAN frames go into a separate lane that is always drained before the
+ * next data frame is written, keeping the ACK turnaround short while data is queued.
+ */
+public class FrameWriter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FrameWriter.class);
+
+	public static final int DATA_CAPACITY = 256;
+	public static final int CONTROL_CAPACITY = 64;
+
+	/**
+	 * The destination for encoded frames
+	 */
+	public interface FrameOutput {
+
+		/**
+		 * Write an encoded data frame
+		 * @param packet The frame bytes
+		 * @throws IOException If the write fails
+		 */
+		public void write(byte[] packet) throws IOException;
+
+		/**
+		 * Write a single byte control frame
+		 * @param value The protocol value of the frame
+		 * @throws IOException If the write fails
+		 */
+		public void write(int value) throws IOException;
+	}
+
+	/**
+	 * Notified on the writer thread as each frame is written
+	 */
+	public interface WriteListener {
+
+		public void onFrameWritten(ZwaveFrame frame, byte[] packet);
+	}
+
+
+	private final String name;
+	private final FrameOutput output;
+	private final WriteListener listener;
+
+	private final MpscRingBuffer<ZwaveFrame> controlFrames = new MpscRingBuffer<>(CONTROL_CAPACITY);
+	private final MpscRingBuffer<ZwaveFrame> dataFrames = new MpscRingBuffer<>(DATA_CAPACITY);
+
+	private volatile boolean running = false;
+	private volatile boolean sleeping = false;
+	private Thread thread;
+
+
+	public FrameWriter(FrameOutput output, WriteListener listener) {
+		this("serial-write", output, listener);
+	}
+
+
+	/**
+	 * @param name The name of the writer thread
+	 * @param output The destination for encoded frames
+	 * @param listener Notified as each frame is written
+	 */
+	public FrameWriter(String name, FrameOutput output, WriteListener listener) {
+		this.name = name;
+		this.output = output;
+		this.listener = listener;
+	}
+
+
+	/**
+	 * Start the writer thread
+	 */
+	public synchronized void start() {
+
+		if (running) {
+			return;
+		}
+
+		running = true;
+		thread = new Thread(this::run, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+
+	/**
+	 * Stop the writer thread. Frames still queued are discarded
+	 */
+	public synchronized void stop() {
+
+		if (!running) {
+			return;
+		}
+
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Queue a frame for sending. Control frames are queued ahead of data frames.
+	 * Data frames wait for space if the queue is full, control frames are dropped.
+	 * @param frame The frame to send
+	 */
+	public void send(ZwaveFrame frame) {
+
+		if (frame.getFrameType() != FrameType.SOF) {
+			if (!controlFrames.offer(frame)) {
+				LOGGER.warn("Control queue full - dropping {}", frame.getFrameType());
+			}
+		} else {
+			while (!dataFrames.offer(frame)) {
+				LockSupport.parkNanos(100_000);
+			}
+		}
+
+		if (sleeping) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+
+	private void run() {
+
+		while (running) {
+
+			ZwaveFrame frame = controlFrames.poll();
+			if (frame == null) {
+				frame = dataFrames.poll();
+			}
+
+			if (frame != null) {
+				write(frame);
+				continue;
+			}
+
+			// Publish that we are about to sleep, then check again so a frame queued in between is not missed
+			sleeping = true;
+			if (controlFrames.isEmpty() && dataFrames.isEmpty() && running) {
+				LockSupport.park(this);
+			}
+			sleeping = false;
+		}
+	}
+
+
+	private void write(ZwaveFrame frame) {
+
+		try {
+			byte[] packet = null;
+			if (frame.getFrameType() == FrameType.SOF) {
+				packet = frame.serialize();
+				output.write(packet);
+			} else {
+				output.write(frame.getFrameType().getProtocolValue());
+			}
+			listener.onFrameWritten(frame, packet);
+		} catch (IOException e) {
+			LOGGER.error("Failed to send frame - {}", e.getMessage());
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed to send frame - {}", e);
+		}
+	}
+}
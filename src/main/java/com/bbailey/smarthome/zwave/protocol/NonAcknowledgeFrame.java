@@ -2,13 +2,20 @@ package com.bbailey.smarthome.zwave.protocol;
 
 public class NonAcknowledgeFrame extends ZwaveFrame {
 
+	/**
+	 * Shared instance. The frame carries no state so a single instance is reused
+	 */
+	public static final NonAcknowledgeFrame INSTANCE = new NonAcknowledgeFrame();
+	
+	// The pre-encoded frame. Callers must not modify the returned array
+	private static final byte[] ENCODED = new byte[] { (byte)FrameType.NAK.getProtocolValue() };
+
 	public NonAcknowledgeFrame() {
 		super(FrameType.NAK);
 	}
 	
 	@Override
 	public byte[] serialize() {
-		byte b = (byte)(getFrameType().getProtocolValue() & 0xFF);
-		return new byte[] { b };
+		return ENCODED;
 	}
 }
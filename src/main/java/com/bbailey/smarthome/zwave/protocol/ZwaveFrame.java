@@ -37,13 +37,24 @@ public abstract class ZwaveFrame {
 		}
 		
 		public static Optional<FrameType> fromProtocolValue(int value) {
+			return Optional.ofNullable(lookup(value));
+		}
+		
+		
+		/**
+		 * Find the frame type for a protocol value without allocating
+		 * @param value The received byte
+		 * @return The frame type or null if the byte does not start a frame
+		 */
+		public static FrameType lookup(int value) {
+			return BY_PROTOCOL_VALUE[value & 0xFF];
+		}
+		
+		private static final FrameType[] BY_PROTOCOL_VALUE = new FrameType[256];
+		static {
 			for (FrameType frameType : FrameType.values()) {
-				if (frameType.getProtocolValue() == value) {
-					return Optional.of(frameType);
-				}
+				BY_PROTOCOL_VALUE[frameType.getProtocolValue()] = frameType;
 			}
-			
-			return Optional.empty();
 		}
 	}
 	
@@ -72,11 +83,11 @@ public abstract class ZwaveFrame {
 	public static ZwaveFrame of(FrameType frameType) {
 		switch (frameType) {
 		case ACK:
-			return new AcknowledgeFrame();
+			return AcknowledgeFrame.INSTANCE;
 		case CAN:
-			return new CancelFrame();
+			return CancelFrame.INSTANCE;
 		case NAK:
-			return new NonAcknowledgeFrame();
+			return NonAcknowledgeFrame.INSTANCE;
 		case SOF:
 			return new DataFrame();
 		default:
@@ -0,0 +1,422 @@
+package com.bbailey.smarthome.zwave.simulator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bbailey.smarthome.zwave.SimulatorConfiguration;
+import com.bbailey.smarthome.zwave.api.ApiStarted;
+import com.bbailey.smarthome.zwave.api.ApplicationCommandHandler;
+import com.bbailey.smarthome.zwave.api.ApplicationUpdate;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.GetBackgroundRssi;
+import com.bbailey.smarthome.zwave.api.GetCapabilities;
+import com.bbailey.smarthome.zwave.api.GetControllerCapabilities;
+import com.bbailey.smarthome.zwave.api.GetInitData;
+import com.bbailey.smarthome.zwave.api.GetLibraryVersion;
+import com.bbailey.smarthome.zwave.api.GetNetworkIds;
+import com.bbailey.smarthome.zwave.api.GetNodeInformationProtocolData;
+import com.bbailey.smarthome.zwave.api.GetSucNodeId;
+import com.bbailey.smarthome.zwave.api.RequestNodeInformation;
+import com.bbailey.smarthome.zwave.api.SoftReset;
+import com.bbailey.smarthome.zwave.commandclass.BasicCommandClass;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+import com.bbailey.smarthome.zwave.protocol.DataFrame;
+import com.bbailey.smarthome.zwave.protocol.DataFrame.CommandType;
+import com.bbailey.smarthome.zwave.protocol.FrameDecoder;
+import com.bbailey.smarthome.zwave.protocol.FrameWriter;
+import com.bbailey.smarthome.zwave.protocol.ZwaveFrame;
+import com.bbailey.smarthome.zwave.protocol.ZwaveFrame.FrameType;
+import com.bbailey.smarthome.zwave.transport.ZwaveTransport;
+import com.bbailey.smarthome.zwave.utils.BitUtils;
+
+/**
+ * A simulated Z-Wave API module. It sits on the module end of a transport and speaks
+ * the Host API framing, so the adapter cannot tell it apart from a real stick.
+ *
+ * The controller is node 1 and the virtual nodes are numbered from 2. Every valid data
+ * frame is ACKed and the commands needed to initialise the controller and bootstrap the
+ * nodes are answered. Each virtual node also sends BASIC reports at the configured rate,
+ * randomly spread by the configured jitter, to generate unsolicited load.
+ */
+public class VirtualController implements ZwaveTransport.Receiver, FrameDecoder.FrameListener, FrameWriter.FrameOutput, FrameWriter.WriteListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(VirtualController.class);
+
+	public static final int CONTROLLER_NODE_ID = 1;
+
+	private static final String LIBRARY_VERSION = "Z-Wave 7.18";
+	private static final int LIBRARY_TYPE_STATIC_CONTROLLER = 0x01;
+	private static final int NODE_LIST_LENGTH = 29;
+	private static final int NODE_INFO_RECEIVED = 0x84;
+	private static final int BASIC_REPORT = 0x03;
+	private static final int RSSI = 0xC4;
+
+	// A listening, routing 40kbps node that reports as a binary switch
+	private static final int[] NODE_PROTOCOL_DATA = { 0xD3, 0x1C, 0x01, 0x04, 0x10, 0x01 };
+	private static final int[] NODE_COMMAND_CLASSES = { BasicCommandClass.COMMAND_ID, 0x25 };
+
+	private final ZwaveTransport transport;
+	private final SimulatorConfiguration config;
+
+	private final FrameDecoder decoder = new FrameDecoder(this);
+	private final FrameWriter writer = new FrameWriter("simulator-write", this, this);
+	private final ScheduledExecutorService scheduler;
+
+	private final int[] nodeValues;
+
+	private final AtomicLong framesReceived = new AtomicLong();
+	private final AtomicLong framesSent = new AtomicLong();
+	private final AtomicLong acksReceived = new AtomicLong();
+	private final AtomicLong reportsSent = new AtomicLong();
+
+
+	public VirtualController(ZwaveTransport transport, SimulatorConfiguration config) {
+		this.transport = transport;
+		this.config = config;
+		this.nodeValues = new int[config.getNodes() + CONTROLLER_NODE_ID + 1];
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "simulator");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+
+	/**
+	 * The number of valid data frames received from the host
+	 * @return the framesReceived
+	 */
+	public long getFramesReceived() {
+		return framesReceived.get();
+	}
+
+
+	/**
+	 * The number of data frames sent to the host
+	 * @return the framesSent
+	 */
+	public long getFramesSent() {
+		return framesSent.get();
+	}
+
+
+	/**
+	 * The number of ACKs received from the host
+	 * @return the acksReceived
+	 */
+	public long getAcksReceived() {
+		return acksReceived.get();
+	}
+
+
+	/**
+	 * The number of unsolicited reports sent by the virtual nodes
+	 * @return the reportsSent
+	 */
+	public long getReportsSent() {
+		return reportsSent.get();
+	}
+
+
+	/**
+	 * Start answering the host and sending reports
+	 * @return True if the transport opened
+	 */
+	public boolean start() {
+
+		LOGGER.info("Starting virtual controller with {} nodes at {} reports/s per node", config.getNodes(), config.getReportsPerSecond());
+		if (!transport.open(this)) {
+			return false;
+		}
+		writer.start();
+
+		if (config.getReportsPerSecond() > 0) {
+			for (int nodeId = firstNodeId() ; nodeId <= lastNodeId() ; nodeId++) {
+				scheduleReport(nodeId);
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Stop the simulator
+	 */
+	public void stop() {
+		scheduler.shutdownNow();
+		writer.stop();
+		transport.close();
+	}
+
+
+	@Override
+	public void onData(byte[] data) {
+		decoder.decode(data);
+	}
+
+
+	@Override
+	public void onFrame(ZwaveFrame frame) {
+
+		switch (frame.getFrameType()) {
+		case ACK:
+			acksReceived.incrementAndGet();
+			break;
+		case NAK:
+		case CAN:
+			LOGGER.info("Virtual controller received {}", frame.getFrameType());
+			break;
+		case SOF:
+			DataFrame dataFrame = (DataFrame)frame;
+			try {
+				framesReceived.incrementAndGet();
+				writer.send(ZwaveFrame.of(FrameType.ACK));
+				handleRequest(dataFrame.getCommandId(), dataFrame.getCommandPayload());
+			} finally {
+				dataFrame.release();
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+
+	@Override
+	public void onInvalidFrame(String reason) {
+		LOGGER.warn("Virtual controller received invalid frame - {}", reason);
+		decoder.reset();
+		writer.send(ZwaveFrame.of(FrameType.NAK));
+	}
+
+
+	@Override
+	public void onOutOfFrame(int value) {
+		LOGGER.warn("Virtual controller received byte {} out of frame", BitUtils.toHex(value));
+	}
+
+
+	@Override
+	public void write(byte[] packet) throws IOException {
+		transport.write(packet);
+	}
+
+
+	@Override
+	public void write(int value) throws IOException {
+		transport.write(value);
+	}
+
+
+	@Override
+	public void onFrameWritten(ZwaveFrame frame, byte[] packet) {
+		if (packet != null) {
+			framesSent.incrementAndGet();
+		}
+	}
+
+
+	private void handleRequest(int commandId, Buffer payload) {
+
+		switch (commandId) {
+		case GetLibraryVersion.COMMAND_ID:
+			// The version string is null padded to 12 bytes
+			byte[] version = Arrays.copyOf(LIBRARY_VERSION.getBytes(StandardCharsets.US_ASCII), 12);
+			respond(commandId, new Buffer(13).putBytes(version, 0, version.length).put(LIBRARY_TYPE_STATIC_CONTROLLER));
+			break;
+		case GetNetworkIds.COMMAND_ID:
+			respond(commandId, new Buffer(5).putInt32(config.getHomeId()).put(CONTROLLER_NODE_ID));
+			break;
+		case GetSucNodeId.COMMAND_ID:
+			respond(commandId, Buffer.of(CONTROLLER_NODE_ID));
+			break;
+		case GetControllerCapabilities.COMMAND_ID:
+			respond(commandId, Buffer.of(0x10));
+			break;
+		case GetCapabilities.COMMAND_ID:
+			respond(commandId, getCapabilities());
+			break;
+		case GetBackgroundRssi.COMMAND_ID:
+			respond(commandId, Buffer.of(0x7F, 0x7F, 0x7F));
+			break;
+		case GetInitData.COMMAND_ID:
+			respond(commandId, getInitData());
+			break;
+		case GetNodeInformationProtocolData.COMMAND_ID:
+			respond(commandId, Buffer.of(NODE_PROTOCOL_DATA));
+			break;
+		case RequestNodeInformation.COMMAND_ID:
+			respond(commandId, Buffer.of(0x01));
+			sendNodeInformation(payload.get(0));
+			break;
+		case ControllerNodeSendData.COMMAND_ID:
+			respond(commandId, Buffer.of(0x01));
+			sendData(payload);
+			break;
+		case SoftReset.COMMAND_ID:
+			// No response, the module restarts and announces itself
+			scheduler.schedule(() -> request(ApiStarted.COMMAND_ID, Buffer.of(0x00, 0x00, 0x01, 0x02, 0x01, 0x00, 0x00)), 100, TimeUnit.MILLISECONDS);
+			break;
+		default:
+			LOGGER.info("Virtual controller does not support command {}", BitUtils.toHex(commandId));
+			break;
+		}
+	}
+
+
+	private Buffer getCapabilities() {
+
+		Buffer buffer = new Buffer(8 + 32)
+				.put(0x01).put(0x00)
+				.putInt16(0x0000)
+				.putInt16(0x0001)
+				.putInt16(0x0001);
+
+		// Report every command we can answer as supported
+		int[] supported = {
+				GetInitData.COMMAND_ID, GetControllerCapabilities.COMMAND_ID, GetCapabilities.COMMAND_ID, SoftReset.COMMAND_ID,
+				ControllerNodeSendData.COMMAND_ID, GetLibraryVersion.COMMAND_ID, GetNetworkIds.COMMAND_ID, GetBackgroundRssi.COMMAND_ID,
+				GetNodeInformationProtocolData.COMMAND_ID, GetSucNodeId.COMMAND_ID, RequestNodeInformation.COMMAND_ID
+			};
+		int[] mask = new int[32];
+		for (int commandId : supported) {
+			mask[(commandId - 1) / 8] |= 1 << ((commandId - 1) % 8);
+		}
+		for (int b : mask) {
+			buffer.put(b);
+		}
+		return buffer;
+	}
+
+
+	private Buffer getInitData() {
+
+		Buffer buffer = new Buffer(5 + NODE_LIST_LENGTH)
+				.put(0x08)
+				.put(0x08)
+				.put(NODE_LIST_LENGTH);
+
+		int[] nodeMask = new int[NODE_LIST_LENGTH];
+		for (int nodeId = CONTROLLER_NODE_ID ; nodeId <= lastNodeId() ; nodeId++) {
+			nodeMask[(nodeId - 1) / 8] |= 1 << ((nodeId - 1) % 8);
+		}
+		for (int b : nodeMask) {
+			buffer.put(b);
+		}
+
+		return buffer.put(0x07).put(0x00);
+	}
+
+
+	private void sendNodeInformation(int nodeId) {
+
+		if (!isVirtualNode(nodeId)) {
+			request(ApplicationUpdate.COMMAND_ID, Buffer.of(0x81, nodeId, 0x00));
+			return;
+		}
+
+		Buffer buffer = new Buffer(6 + NODE_COMMAND_CLASSES.length)
+				.put(NODE_INFO_RECEIVED)
+				.put(nodeId)
+				.put(3 + NODE_COMMAND_CLASSES.length)
+				.put(NODE_PROTOCOL_DATA[3])
+				.put(NODE_PROTOCOL_DATA[4])
+				.put(NODE_PROTOCOL_DATA[5]);
+		for (int commandClass : NODE_COMMAND_CLASSES) {
+			buffer.put(commandClass);
+		}
+
+		scheduler.schedule(() -> request(ApplicationUpdate.COMMAND_ID, buffer), config.getTransmitDelayMs(), TimeUnit.MILLISECONDS);
+	}
+
+
+	/**
+	 * Simulate transmitting to a node. The callback follows after the transmit delay and
+	 * a BASIC GET or SET is answered by the node as a real device would.
+	 */
+	private void sendData(Buffer payload) {
+
+		int nodeId = payload.next();
+		int length = payload.next();
+		Buffer data = new Buffer(payload.nextBytes(length));
+		payload.next();
+		int sessionId = payload.next();
+
+		boolean delivered = isVirtualNode(nodeId);
+		scheduler.schedule(() -> {
+			request(ControllerNodeSendData.COMMAND_ID, Buffer.of(sessionId, delivered ? 0x00 : 0x01));
+			if (delivered && data.length() >= 2 && data.get(0) == BasicCommandClass.COMMAND_ID) {
+				handleBasic(nodeId, data);
+			}
+		}, config.getTransmitDelayMs(), TimeUnit.MILLISECONDS);
+	}
+
+
+	private void handleBasic(int nodeId, Buffer data) {
+
+		switch (data.get(1)) {
+		case 0x01:
+			nodeValues[nodeId] = data.get(2);
+			break;
+		case 0x02:
+			sendReport(nodeId);
+			break;
+		default:
+			break;
+		}
+	}
+
+
+	private void scheduleReport(int nodeId) {
+
+		double interval = 1000.0 / config.getReportsPerSecond();
+		double jitter = interval * config.getJitter() * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+		long delay = Math.max(0, Math.round(interval + jitter));
+
+		scheduler.schedule(() -> {
+			nodeValues[nodeId] = ThreadLocalRandom.current().nextInt(100);
+			sendReport(nodeId);
+			reportsSent.incrementAndGet();
+			scheduleReport(nodeId);
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+
+	private void sendReport(int nodeId) {
+		request(ApplicationCommandHandler.COMMAND_ID, Buffer.of(0x00, nodeId, 3, BasicCommandClass.COMMAND_ID, BASIC_REPORT, nodeValues[nodeId], RSSI));
+	}
+
+
+	private void respond(int commandId, Buffer payload) {
+		writer.send(new DataFrame(CommandType.RESPONSE, commandId, payload));
+	}
+
+
+	private void request(int commandId, Buffer payload) {
+		writer.send(new DataFrame(CommandType.REQUEST, commandId, payload));
+	}
+
+
+	private boolean isVirtualNode(int nodeId) {
+		return nodeId >= firstNodeId() && nodeId <= lastNodeId();
+	}
+
+
+	private int firstNodeId() {
+		return CONTROLLER_NODE_ID + 1;
+	}
+
+
+	private int lastNodeId() {
+		return CONTROLLER_NODE_ID + config.getNodes();
+	}
+}
@@ -0,0 +1,37 @@
+package com.bbailey.smarthome.zwave.trace;
+
+/**
+ * The areas of the service that can be traced independently
+ */
+public enum Subsystem {
+
+	/**
+	 * Bytes read from and written to the transport
+	 */
+	TRANSPORT,
+
+	/**
+	 * Frames sent and received on the link
+	 */
+	FRAME,
+
+	/**
+	 * Command transmission and the matching of responses and callbacks
+	 */
+	COMMAND,
+
+	/**
+	 * Delivery of received commands to subscribers
+	 */
+	DISPATCH,
+
+	/**
+	 * Commands queued by devices
+	 */
+	DEVICE,
+
+	/**
+	 * The virtual controller
+	 */
+	SIMULATOR;
+}
@@ -0,0 +1,218 @@
+package com.bbailey.smarthome.zwave.trace;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bbailey.smarthome.zwave.utils.BitUtils;
+
+/**
+ * Runtime switchable tracing for the hot paths of the service.
+ *
+ * Each {@link Subsystem} has its own {@link TraceLevel} and sample rate, which can be changed
+ * while the service is running. Checking whether a message is wanted is a volatile read and
+ * an array lookup, and messages are only formatted once they have passed that check, so a
+ * disabled trace point costs next to nothing.
+ *
+ * Messages are written at INFO to the logger {@code zwave.trace.<subsystem>}, independently
+ * of the level the rest of the service logs at.
+ */
+public final class Trace {
+
+	public static final String LOGGER_PREFIX = "zwave.trace.";
+
+	private static final Subsystem[] SUBSYSTEMS = Subsystem.values();
+	private static final Logger[] LOGGERS = new Logger[SUBSYSTEMS.length];
+
+	static {
+		for (Subsystem subsystem : SUBSYSTEMS) {
+			LOGGERS[subsystem.ordinal()] = LoggerFactory.getLogger(LOGGER_PREFIX + subsystem.name().toLowerCase());
+		}
+	}
+
+	private static final AtomicLongArray COUNTERS = new AtomicLongArray(SUBSYSTEMS.length);
+
+	// Replaced as a whole on every change so readers always see a consistent level and rate
+	private static volatile Settings settings = new Settings(new int[SUBSYSTEMS.length], filled(1));
+
+
+	private Trace() {
+	}
+
+
+	/**
+	 * Check whether a subsystem traces at a level. Use this to guard any work needed to build
+	 * the arguments of a message
+	 * @param subsystem The subsystem
+	 * @param level The level of the message
+	 * @return True if messages at the level are traced
+	 */
+	public static boolean isEnabled(Subsystem subsystem, TraceLevel level) {
+		int ordinal = level.ordinal();
+		return ordinal != 0 && ordinal <= settings.levels[subsystem.ordinal()];
+	}
+
+
+	/**
+	 * Trace a message with one argument
+	 * @param subsystem The subsystem
+	 * @param level The level of the message
+	 * @param format The SLF4J style message format
+	 * @param arg The argument, only converted to a string if the message is written
+	 */
+	public static void log(Subsystem subsystem, TraceLevel level, String format, Object arg) {
+		if (isEnabled(subsystem, level) && sampled(subsystem)) {
+			LOGGERS[subsystem.ordinal()].info(format, arg);
+		}
+	}
+
+
+	/**
+	 * Trace a message with two arguments
+	 * @param subsystem The subsystem
+	 * @param level The level of the message
+	 * @param format The SLF4J style message format
+	 * @param arg1 The first argument
+	 * @param arg2 The second argument
+	 */
+	public static void log(Subsystem subsystem, TraceLevel level, String format, Object arg1, Object arg2) {
+		if (isEnabled(subsystem, level) && sampled(subsystem)) {
+			LOGGERS[subsystem.ordinal()].info(format, arg1, arg2);
+		}
+	}
+
+
+	/**
+	 * Trace a message with three arguments
+	 * @param subsystem The subsystem
+	 * @param level The level of the message
+	 * @param format The SLF4J style message format
+	 * @param arg1 The first argument
+	 * @param arg2 The second argument
+	 * @param arg3 The third argument
+	 */
+	public static void log(Subsystem subsystem, TraceLevel level, String format, Object arg1, Object arg2, Object arg3) {
+		if (isEnabled(subsystem, level) && sampled(subsystem)) {
+			LOGGERS[subsystem.ordinal()].info(format, arg1, arg2, arg3);
+		}
+	}
+
+
+	/**
+	 * Trace a hex dump of some bytes
+	 * @param subsystem The subsystem
+	 * @param level The level of the message
+	 * @param prefix Written ahead of the dump, e.g. the direction
+	 * @param data The bytes, only formatted if the message is written
+	 */
+	public static void hex(Subsystem subsystem, TraceLevel level, String prefix, byte[] data) {
+		if (isEnabled(subsystem, level) && sampled(subsystem)) {
+			LOGGERS[subsystem.ordinal()].info("{} - {}", prefix, BitUtils.toHex(data));
+		}
+	}
+
+
+	/**
+	 * Get the level a subsystem traces at
+	 * @param subsystem The subsystem
+	 * @return The level
+	 */
+	public static TraceLevel getLevel(Subsystem subsystem) {
+		return TraceLevel.values()[settings.levels[subsystem.ordinal()]];
+	}
+
+
+	/**
+	 * Get how often a subsystem's messages are written
+	 * @param subsystem The subsystem
+	 * @return One in this many messages are written
+	 */
+	public static int getSampleRate(Subsystem subsystem) {
+		return settings.sampleRates[subsystem.ordinal()];
+	}
+
+
+	/**
+	 * Change the level a subsystem traces at
+	 * @param subsystem The subsystem
+	 * @param level The new level
+	 */
+	public static synchronized void setLevel(Subsystem subsystem, TraceLevel level) {
+		int[] levels = settings.levels.clone();
+		levels[subsystem.ordinal()] = level.ordinal();
+		settings = new Settings(levels, settings.sampleRates);
+	}
+
+
+	/**
+	 * Only write one in every N of a subsystem's messages. Useful for following
+	 * a busy link without flooding the log
+	 * @param subsystem The subsystem
+	 * @param sampleRate One in this many messages are written, 1 writes them all
+	 */
+	public static synchronized void setSampleRate(Subsystem subsystem, int sampleRate) {
+
+		if (sampleRate < 1) {
+			throw new IllegalArgumentException("Sample rate must be at least 1: " + sampleRate);
+		}
+
+		int[] sampleRates = settings.sampleRates.clone();
+		sampleRates[subsystem.ordinal()] = sampleRate;
+		settings = new Settings(settings.levels, sampleRates);
+		COUNTERS.set(subsystem.ordinal(), 0);
+	}
+
+
+	/**
+	 * Get the level of every subsystem
+	 * @return The levels by subsystem
+	 */
+	public static Map<Subsystem, TraceLevel> getLevels() {
+		Map<Subsystem, TraceLevel> levels = new EnumMap<>(Subsystem.class);
+		for (Subsystem subsystem : SUBSYSTEMS) {
+			levels.put(subsystem, getLevel(subsystem));
+		}
+		return levels;
+	}
+
+
+	/**
+	 * Turn tracing off and write every message for all subsystems
+	 */
+	public static synchronized void reset() {
+		settings = new Settings(new int[SUBSYSTEMS.length], filled(1));
+		for (int i = 0 ; i < SUBSYSTEMS.length ; i++) {
+			COUNTERS.set(i, 0);
+		}
+	}
+
+
+	private static boolean sampled(Subsystem subsystem) {
+		int sampleRate = settings.sampleRates[subsystem.ordinal()];
+		return sampleRate == 1 || COUNTERS.getAndIncrement(subsystem.ordinal()) % sampleRate == 0;
+	}
+
+
+	private static int[] filled(int value) {
+		int[] values = new int[SUBSYSTEMS.length];
+		for (int i = 0 ; i < values.length ; i++) {
+			values[i] = value;
+		}
+		return values;
+	}
+
+
+	private static final class Settings {
+
+		private final int[] levels;
+		private final int[] sampleRates;
+
+		private Settings(int[] levels, int[] sampleRates) {
+			this.levels = levels;
+			this.sampleRates = sampleRates;
+		}
+	}
+}
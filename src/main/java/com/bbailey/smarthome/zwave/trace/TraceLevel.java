@@ -0,0 +1,27 @@
+package com.bbailey.smarthome.zwave.trace;
+
+/**
+ * How much detail a subsystem traces. Each level includes the ones below it
+ */
+public enum TraceLevel {
+
+	/**
+	 * Nothing is traced
+	 */
+	OFF,
+
+	/**
+	 * Commands and state changes
+	 */
+	INFO,
+
+	/**
+	 * Individual frames and notifications
+	 */
+	DEBUG,
+
+	/**
+	 * Raw bytes as they cross the transport
+	 */
+	TRACE;
+}
@@ -0,0 +1,150 @@
+package com.bbailey.smarthome.zwave.transport;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One end of an in-memory connection. Bytes written to one end are delivered
+ * to the receiver of the other end on that end's receive thread, in the same
+ * way a serial port delivers data from its event thread. As with a serial line,
+ * bytes written while the other end is not open are lost.
+ *
+ * Used to run the full stack against a simulated module with no hardware attached.
+ */
+public class LoopbackTransport implements ZwaveTransport {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoopbackTransport.class);
+
+	private static final byte[] CLOSED = new byte[0];
+
+	private final String name;
+	private final BlockingQueue<byte[]> inbound = new LinkedBlockingQueue<>();
+	private LoopbackTransport peer;
+
+	private volatile boolean open = false;
+	private Thread thread;
+
+
+	/**
+	 * Create a connected pair of transports
+	 * @return The host end. The other end is available from {@link #getPeer()}
+	 */
+	public static LoopbackTransport pair() {
+
+		LoopbackTransport host = new LoopbackTransport("loopback-host");
+		LoopbackTransport module = new LoopbackTransport("loopback-module");
+		host.peer = module;
+		module.peer = host;
+		return host;
+	}
+
+
+	private LoopbackTransport(String name) {
+		this.name = name;
+	}
+
+
+	/**
+	 * Get the other end of the connection
+	 * @return The peer
+	 */
+	public LoopbackTransport getPeer() {
+		return peer;
+	}
+
+
+	@Override
+	public synchronized boolean open(Receiver receiver) {
+
+		if (open) {
+			return true;
+		}
+
+		open = true;
+		thread = new Thread(() -> deliver(receiver), name + "-receive");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+
+	@Override
+	public synchronized boolean close() {
+
+		if (!open) {
+			return true;
+		}
+
+		open = false;
+		inbound.offer(CLOSED);
+		try {
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		inbound.clear();
+		return true;
+	}
+
+
+	@Override
+	public void write(byte[] data) throws IOException {
+		peer.receive(data.clone());
+	}
+
+
+	@Override
+	public void write(int value) throws IOException {
+		peer.receive(new byte[] { (byte)value });
+	}
+
+
+	@Override
+	public void discardBuffers() {
+		inbound.clear();
+	}
+
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+
+	private void receive(byte[] data) {
+
+		if (!open) {
+			LOGGER.debug("{} is not open - dropping {} bytes", name, data.length);
+			return;
+		}
+		inbound.offer(data);
+	}
+
+
+	private void deliver(Receiver receiver) {
+
+		while (open) {
+			byte[] data;
+			try {
+				data = inbound.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			if (data == CLOSED) {
+				return;
+			}
+
+			try {
+				receiver.onData(data);
+			} catch (RuntimeException e) {
+				LOGGER.error("{} receiver failed - {}", name, e);
+			}
+		}
+	}
+}
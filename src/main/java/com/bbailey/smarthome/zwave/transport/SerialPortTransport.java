@@ -0,0 +1,96 @@
+package com.bbailey.smarthome.zwave.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bbailey.smarthome.zwave.trace.Subsystem;
+import com.bbailey.smarthome.zwave.trace.Trace;
+import com.bbailey.smarthome.zwave.trace.TraceLevel;
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListener;
+import com.fazecast.jSerialComm.SerialPortEvent;
+
+/**
+ * Transport for a Z-Wave module attached to a local serial port
+ */
+public class SerialPortTransport implements ZwaveTransport, SerialPortDataListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SerialPortTransport.class);
+
+	private final SerialPort serialPort;
+	private volatile Receiver receiver;
+
+
+	public SerialPortTransport(SerialPort serialPort) {
+		this.serialPort = serialPort;
+	}
+
+
+	@Override
+	public boolean open(Receiver receiver) {
+
+		this.receiver = receiver;
+		this.serialPort.addDataListener(this);
+
+		boolean isOpen = serialPort.openPort(100);
+		if (!isOpen) {
+			LOGGER.error("Failed to open serial port {}", serialPort.getSystemPortName());
+			serialPort.removeDataListener();
+		}
+		return isOpen;
+	}
+
+
+	@Override
+	public boolean close() {
+		serialPort.removeDataListener();
+		return serialPort.closePort();
+	}
+
+
+	@Override
+	public void write(byte[] data) throws IOException {
+		OutputStream out = serialPort.getOutputStream();
+		out.write(data);
+		out.flush();
+	}
+
+
+	@Override
+	public void write(int value) throws IOException {
+		OutputStream out = serialPort.getOutputStream();
+		out.write(value);
+		out.flush();
+	}
+
+
+	@Override
+	public void discardBuffers() {
+		serialPort.flushIOBuffers();
+	}
+
+
+	@Override
+	public String getName() {
+		return "serial:" + serialPort.getSystemPortName();
+	}
+
+
+	@Override
+	public int getListeningEvents() {
+		Thread.currentThread().setName("serial-receive");
+		return SerialPort.LISTENING_EVENT_DATA_RECEIVED;
+	}
+
+
+	@Override
+	public void serialEvent(SerialPortEvent event) {
+
+		byte[] data = event.getReceivedData();
+		Trace.log(Subsystem.TRANSPORT, TraceLevel.DEBUG, "Received Serial Event - {} bytes", data.length);
+		receiver.onData(data);
+	}
+}
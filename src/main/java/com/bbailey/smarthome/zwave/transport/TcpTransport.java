@@ -0,0 +1,152 @@
+package com.bbailey.smarthome.zwave.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bbailey.smarthome.zwave.trace.Subsystem;
+import com.bbailey.smarthome.zwave.trace.Trace;
+import com.bbailey.smarthome.zwave.trace.TraceLevel;
+
+/**
+ * Transport for a Z-Wave module exposed over TCP by a serial bridge such as ser2net.
+ * The bridge passes bytes through unchanged so the Host API framing is the same
+ * as for a local serial port.
+ */
+public class TcpTransport implements ZwaveTransport {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TcpTransport.class);
+
+	public static final int CONNECT_TIMEOUT_MS = 5000;
+
+	private final String host;
+	private final int port;
+
+	private volatile Socket socket;
+	private volatile OutputStream out;
+	private Thread thread;
+
+
+	public TcpTransport(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+
+	@Override
+	public synchronized boolean open(Receiver receiver) {
+
+		try {
+			Socket s = new Socket();
+			s.setTcpNoDelay(true);
+			s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+			this.out = s.getOutputStream();
+			this.socket = s;
+		} catch (IOException e) {
+			LOGGER.error("Failed to connect to {} - {}", getName(), e.getMessage());
+			return false;
+		}
+
+		InputStream in;
+		try {
+			in = socket.getInputStream();
+		} catch (IOException e) {
+			LOGGER.error("Failed to open input from {} - {}", getName(), e.getMessage());
+			close();
+			return false;
+		}
+
+		thread = new Thread(() -> read(in, receiver), "tcp-receive");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+
+	@Override
+	public synchronized boolean close() {
+
+		Socket s = socket;
+		socket = null;
+		if (s == null) {
+			return true;
+		}
+
+		try {
+			s.close();
+		} catch (IOException e) {
+			LOGGER.warn("Failed to close connection to {} - {}", getName(), e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+
+	@Override
+	public void write(byte[] data) throws IOException {
+		out.write(data);
+		out.flush();
+	}
+
+
+	@Override
+	public void write(int value) throws IOException {
+		out.write(value);
+		out.flush();
+	}
+
+
+	@Override
+	public void discardBuffers() {
+
+		// Nothing is buffered on the send side. Drop whatever has arrived but not been read
+		Socket s = socket;
+		if (s == null) {
+			return;
+		}
+
+		try {
+			InputStream in = s.getInputStream();
+			in.skip(in.available());
+		} catch (IOException e) {
+			LOGGER.warn("Failed to discard input from {} - {}", getName(), e.getMessage());
+		}
+	}
+
+
+	@Override
+	public String getName() {
+		return "tcp:" + host + ":" + port;
+	}
+
+
+	private void read(InputStream in, Receiver receiver) {
+
+		byte[] buffer = new byte[1024];
+		while (socket != null) {
+			int count;
+			try {
+				count = in.read(buffer);
+			} catch (IOException e) {
+				if (socket != null) {
+					LOGGER.error("Connection to {} failed - {}", getName(), e.getMessage());
+				}
+				return;
+			}
+
+			if (count < 0) {
+				LOGGER.warn("Connection to {} closed by the bridge", getName());
+				return;
+			}
+
+			Trace.log(Subsystem.TRANSPORT, TraceLevel.DEBUG, "Received TCP data - {} bytes", count);
+			receiver.onData(Arrays.copyOf(buffer, count));
+		}
+	}
+}
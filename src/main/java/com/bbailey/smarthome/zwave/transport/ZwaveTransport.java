@@ -0,0 +1,71 @@
+package com.bbailey.smarthome.zwave.transport;
+
+import java.io.IOException;
+
+/**
+ * The byte level link between the adapter and a Z-Wave module.
+ *
+ * A transport only moves bytes. Framing, acknowledgement and retransmission are handled
+ * by the adapter, so the same stack runs over a serial port, a TCP serial bridge or an
+ * in-memory loopback.
+ */
+public interface ZwaveTransport {
+
+	/**
+	 * Receiver of the bytes read from the transport
+	 */
+	public interface Receiver {
+
+		/**
+		 * Bytes have been read from the transport. Called from a single thread
+		 * owned by the transport, and the array is not reused by the transport
+		 * once handed over.
+		 * @param data The bytes read
+		 */
+		public void onData(byte[] data);
+	}
+
+
+	/**
+	 * Open the transport and start delivering received bytes
+	 * @param receiver The receiver of incoming data
+	 * @return True if the transport was opened
+	 */
+	public boolean open(Receiver receiver);
+
+
+	/**
+	 * Close the transport. No more data is delivered once this returns
+	 * @return True if the transport closed cleanly
+	 */
+	public boolean close();
+
+
+	/**
+	 * Write bytes to the module
+	 * @param data The bytes to write
+	 * @throws IOException If the write fails
+	 */
+	public void write(byte[] data) throws IOException;
+
+
+	/**
+	 * Write a single byte to the module
+	 * @param value The byte to write
+	 * @throws IOException If the write fails
+	 */
+	public void write(int value) throws IOException;
+
+
+	/**
+	 * Discard any bytes buffered in either direction but not yet delivered
+	 */
+	public void discardBuffers();
+
+
+	/**
+	 * A description of the transport for logging
+	 * @return The description
+	 */
+	public String getName();
+}
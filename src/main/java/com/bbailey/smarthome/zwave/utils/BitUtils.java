@@ -11,6 +11,17 @@ public class BitUtils {
 	public final static int BIT_1 = 0x02;
 	public final static int BIT_0 = 0x01;
 	
+	private final static char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	
+	// Formatted once up front so logging a byte never goes through String.format
+	private final static String[] HEX = new String[256];
+	
+	static {
+		for (int i = 0 ; i < HEX.length ; i++) {
+			HEX[i] = new String(new char[] { '0', 'x', HEX_DIGITS[i >> 4], HEX_DIGITS[i & 0x0F] });
+		}
+	}
+	
 	public static int convertToInt16(int msb, int lsb) {
 		return (msb << 8) | lsb;
 	}
@@ -25,7 +36,37 @@ public class BitUtils {
 	
 	
 	public static String toHex(int value) {
-		return String.format("0x%02X", (value & 0xFF));
+		return HEX[value & 0xFF];
+	}
+	
+	/**
+	 * Format bytes as a comma separated list of hex values, e.g. [0x01,0x03]
+	 * @param data The bytes
+	 * @return The formatted bytes
+	 */
+	public static String toHex(byte[] data) {
+		return toHex(data, 0, data.length);
+	}
+	
+	/**
+	 * Format part of an array as a comma separated list of hex values, e.g. [0x01,0x03]
+	 * @param data The bytes
+	 * @param offset The index of the first byte
+	 * @param count The number of bytes
+	 * @return The formatted bytes
+	 */
+	public static String toHex(byte[] data, int offset, int count) {
+		
+		StringBuilder builder = new StringBuilder(2 + count * 5);
+		builder.append('[');
+		for (int i = 0 ; i < count ; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			int value = data[offset + i] & 0xFF;
+			builder.append('0').append('x').append(HEX_DIGITS[value >> 4]).append(HEX_DIGITS[value & 0x0F]);
+		}
+		return builder.append(']').toString();
 	}
 	
 	public static boolean isBit7(int value) {
@@ -0,0 +1,133 @@
+package com.bbailey.smarthome.zwave.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free multi-producer single-consumer ring buffer.
+ *
+ * Each slot carries a sequence number. Producers claim a slot by advancing the shared tail
+ * with a CAS and publish the element by moving the slot's sequence on. The single consumer
+ * only reads slots whose sequence shows they have been published, so neither side takes a
+ * lock and nothing is allocated after construction.
+ *
+ * @param <E> The element type
+ */
+public class MpscRingBuffer<E> {
+
+	private final Object[] elements;
+	private final AtomicLongArray sequences;
+	private final int mask;
+
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head = 0;
+
+
+	/**
+	 * @param capacity The number of slots. Rounded up to the next power of two
+	 */
+	public MpscRingBuffer(int capacity) {
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.elements = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0 ; i < size ; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+
+	/**
+	 * The number of slots in the ring
+	 * @return The capacity
+	 */
+	public int capacity() {
+		return elements.length;
+	}
+
+
+	/**
+	 * Add an element. Safe to call from any thread
+	 * @param element The element, must not be null
+	 * @return True if the element was added, false if the ring is full
+	 */
+	public boolean offer(E element) {
+
+		if (element == null) {
+			throw new IllegalArgumentException("Cannot add a null element");
+		}
+
+		long position;
+		while (true) {
+			position = tail.get();
+			long sequence = sequences.get((int)position & mask);
+			long difference = sequence - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (difference < 0) {
+				// The consumer has not freed this slot yet
+				return false;
+			}
+			// Otherwise another producer claimed the slot first, try again
+		}
+
+		int idx = (int)position & mask;
+		elements[idx] = element;
+		// A full volatile store, so a producer checking afterwards whether the consumer is asleep
+		// cannot miss it going to sleep after finding this slot empty
+		sequences.set(idx, position + 1);
+		return true;
+	}
+
+
+	/**
+	 * Remove the oldest element. Must only be called from the consumer thread
+	 * @return The element or null if the ring is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+
+		long position = head;
+		int idx = (int)position & mask;
+		if (sequences.get(idx) != position + 1) {
+			return null;
+		}
+
+		E element = (E)elements[idx];
+		elements[idx] = null;
+		sequences.lazySet(idx, position + elements.length);
+		head = position + 1;
+		return element;
+	}
+
+
+	/**
+	 * Check whether there is anything to consume
+	 * @return True if empty
+	 */
+	public boolean isEmpty() {
+		long position = head;
+		return sequences.get((int)position & mask) != position + 1;
+	}
+
+
+	/**
+	 * The approximate number of elements in the ring
+	 * @return The size
+	 */
+	public int size() {
+		long size = tail.get() - head;
+		return (int)Math.max(0, Math.min(size, elements.length));
+	}
+}
@@ -0,0 +1,197 @@
+package com.bbailey.smarthome.zwave.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Bounded, lock-free single-producer ring buffer.
+ *
+ * One thread adds elements and one thread takes them. The producer may also take the oldest
+ * element to make room, swap a queued element for a newer one, or remove one from the middle,
+ * so taking an element claims the head with a CAS and reads the slot atomically. As in {@link MpscRingBuffer} each slot
+ * carries a sequence number showing whether it holds a published element or is free to reuse,
+ * and nothing is allocated after construction.
+ *
+ * @param <E> The element type
+ */
+public class SpscRingBuffer<E> {
+
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final int mask;
+
+	// Head value while the producer has the queued elements to itself, see remove()
+	private static final long LOCKED = -1;
+
+	private final AtomicLong head = new AtomicLong();
+
+	// Only written by the producer
+	private volatile long tail = 0;
+
+
+	/**
+	 * @param capacity The number of slots. Rounded up to the next power of two
+	 */
+	public SpscRingBuffer(int capacity) {
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.elements = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0 ; i < size ; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+
+	/**
+	 * The number of slots in the ring
+	 * @return The capacity
+	 */
+	public int capacity() {
+		return elements.length();
+	}
+
+
+	/**
+	 * Add an element. Must only be called from the producer thread
+	 * @param element The element, must not be null
+	 * @return True if the element was added, false if the ring is full
+	 */
+	public boolean offer(E element) {
+
+		if (element == null) {
+			throw new IllegalArgumentException("Cannot add a null element");
+		}
+
+		long position = tail;
+		int idx = (int)position & mask;
+		if (sequences.get(idx) != position) {
+			// The slot has not been taken and freed yet
+			return false;
+		}
+
+		elements.lazySet(idx, element);
+		sequences.set(idx, position + 1);
+		tail = position + 1;
+		return true;
+	}
+
+
+	/**
+	 * Remove the oldest element. Called by the consumer, or by the producer to make room
+	 * @return The element or null if the ring is empty
+	 */
+	public E poll() {
+
+		while (true) {
+			long position = head.get();
+			if (position == LOCKED) {
+				// The producer is removing an element, which only takes a moment
+				Thread.onSpinWait();
+				continue;
+			}
+			int idx = (int)position & mask;
+			long sequence = sequences.get(idx);
+			if (sequence < position + 1) {
+				return null;
+			}
+			if (sequence == position + 1 && head.compareAndSet(position, position + 1)) {
+				E element = elements.getAndSet(idx, null);
+				sequences.lazySet(idx, position + elements.length());
+				return element;
+			}
+			// Taken by the other side first, try the next one
+		}
+	}
+
+
+	/**
+	 * Swap the newest queued element matching a condition for another element, which takes
+	 * its place in the ring. Must only be called from the producer thread
+	 * @param match The condition
+	 * @param replacement The element to put in its place
+	 * @return The element replaced, or null if none matched before the consumer reached them
+	 */
+	public E replace(Predicate<? super E> match, E replacement) {
+
+		long first = head.get();
+		for (long position = tail - 1 ; position >= first ; position--) {
+			int idx = (int)position & mask;
+			E element = elements.get(idx);
+			// A null slot has already been taken by the consumer
+			if (element != null && match.test(element) && elements.compareAndSet(idx, element, replacement)) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Remove the oldest queued element matching a condition. The elements queued ahead of it
+	 * move up one slot, so the order of the rest is kept and the free slot ends up at the head.
+	 * The consumer waits while they move. Must only be called from the producer thread
+	 * @param match The condition
+	 * @return The element removed, or null if none matched before the consumer reached them
+	 */
+	public E remove(Predicate<? super E> match) {
+
+		long first;
+		do {
+			first = head.get();
+		} while (!head.compareAndSet(first, LOCKED));
+
+		long position = first;
+		while (position < tail && !match.test(elements.get((int)position & mask))) {
+			position++;
+		}
+		if (position == tail) {
+			head.set(first);
+			return null;
+		}
+
+		E removed = elements.get((int)position & mask);
+		for ( ; position > first ; position--) {
+			elements.set((int)position & mask, elements.get((int)(position - 1) & mask));
+		}
+		int idx = (int)first & mask;
+		elements.set(idx, null);
+		sequences.set(idx, first + elements.length());
+		head.set(first + 1);
+		return removed;
+	}
+
+
+	/**
+	 * Check whether there is anything to consume
+	 * @return True if empty
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+
+	/**
+	 * The approximate number of elements in the ring
+	 * @return The size
+	 */
+	public int size() {
+		long first;
+		while ((first = head.get()) == LOCKED) {
+			Thread.onSpinWait();
+		}
+		long size = tail - first;
+		return (int)Math.max(0, Math.min(size, elements.length()));
+	}
+}
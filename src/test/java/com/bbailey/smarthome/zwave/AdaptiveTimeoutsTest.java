@@ -0,0 +1,113 @@
+package com.bbailey.smarthome.zwave;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.AdaptiveTimeouts.Estimator;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.common.CommandFlow;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence.SequenceState;
+import com.bbailey.smarthome.zwave.api.common.TxOptions;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+public class AdaptiveTimeoutsTest {
+
+	@Test
+	public void testUnmeasuredCommandsUseCeilings() {
+
+		AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
+		CommandSequence sequence = sendData(2);
+
+		assertEquals(AdaptiveTimeouts.ACK_CEILING_MS, timeouts.ackTimeout(sequence));
+		assertEquals(AdaptiveTimeouts.RESPONSE_CEILING_MS, timeouts.responseTimeout(sequence));
+		assertEquals(AdaptiveTimeouts.CALLBACK_CEILING_MS, timeouts.callbackTimeout(sequence));
+	}
+
+
+	@Test
+	public void testMeasuredCommandsFallToFloors() throws Exception {
+
+		AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
+		CommandSequence sequence = sendData(2);
+		sequence.startSequence();
+		TimeUnit.MILLISECONDS.sleep(1);
+		sequence.acknowledgeRequest();
+		TimeUnit.MILLISECONDS.sleep(1);
+		sequence.updateResponse(null);
+		TimeUnit.MILLISECONDS.sleep(1);
+		sequence.updateCallback(null);
+		assertEquals(SequenceState.COMPLETE, sequence.getState());
+		assertTrue(sequence.getStageLatency(SequenceState.WAITING_FOR_CALLBACK) > 0);
+
+		timeouts.record(sequence);
+
+		assertEquals(AdaptiveTimeouts.ACK_FLOOR_MS, timeouts.ackTimeout(sequence));
+		assertEquals(AdaptiveTimeouts.RESPONSE_FLOOR_MS, timeouts.responseTimeout(sequence));
+		assertEquals(AdaptiveTimeouts.CALLBACK_FLOOR_MS, timeouts.callbackTimeout(sequence));
+
+		// Another node falls back to the estimate for the command
+		assertEquals(AdaptiveTimeouts.CALLBACK_FLOOR_MS, timeouts.callbackTimeout(sendData(3)));
+	}
+
+
+	@Test
+	public void testEstimatorFollowsVariance() {
+
+		Estimator estimator = new Estimator();
+		estimator.sample(TimeUnit.SECONDS.toNanos(2));
+		assertEquals(6000, estimator.timeout(0, 60000));
+
+		// A steady link shrinks the variance and so the timeout
+		for (int i = 0 ; i < 50 ; i++) {
+			estimator.sample(TimeUnit.SECONDS.toNanos(2));
+		}
+		assertTrue(estimator.timeout(0, 60000) < 2100);
+		assertEquals(5000, estimator.timeout(5000, 60000));
+	}
+
+
+	@Test
+	public void testTimeoutsBackOffUntilNextSample() throws Exception {
+
+		AdaptiveTimeouts timeouts = new AdaptiveTimeouts();
+		CommandSequence sequence = completed(sendData(2));
+		timeouts.record(sequence);
+		assertEquals(AdaptiveTimeouts.CALLBACK_FLOOR_MS, timeouts.callbackTimeout(sequence));
+
+		timeouts.timedOut(sequence, SequenceState.WAITING_FOR_CALLBACK);
+		assertEquals(2 * AdaptiveTimeouts.CALLBACK_FLOOR_MS, timeouts.callbackTimeout(sequence));
+
+		for (int i = 0 ; i < 10 ; i++) {
+			timeouts.timedOut(sequence, SequenceState.WAITING_FOR_CALLBACK);
+		}
+		assertEquals(AdaptiveTimeouts.CALLBACK_CEILING_MS, timeouts.callbackTimeout(sequence));
+
+		// The next successful sample resets it
+		timeouts.record(completed(sendData(2)));
+		assertEquals(AdaptiveTimeouts.CALLBACK_FLOOR_MS, timeouts.callbackTimeout(sequence));
+	}
+
+
+	private static CommandSequence completed(CommandSequence sequence) throws InterruptedException {
+		sequence.startSequence();
+		sequence.acknowledgeRequest();
+		sequence.updateResponse(null);
+		TimeUnit.MILLISECONDS.sleep(1);
+		sequence.updateCallback(null);
+		return sequence;
+	}
+
+
+	private static CommandSequence sendData(int nodeId) {
+		ControllerNodeSendData.Request request = new ControllerNodeSendData.Request(
+				nodeId, Buffer.of(0x20, 0x02), EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK), 1
+			);
+		return new CommandSequence(request, CommandFlow.ACK_FRAME_WITH_RESPONSE_AND_CALLBACK);
+	}
+}
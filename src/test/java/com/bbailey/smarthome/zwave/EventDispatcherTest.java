@@ -0,0 +1,230 @@
+package com.bbailey.smarthome.zwave;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.api.common.Coalescable;
+import com.bbailey.smarthome.zwave.api.common.Command;
+import com.bbailey.smarthome.zwave.api.common.NodeSource;
+
+public class EventDispatcherTest {
+
+	@Test
+	public void testSlowNodeDoesNotHoldUpOthers() throws Exception {
+
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch delivered = new CountDownLatch(1);
+		EventDispatcher dispatcher = new EventDispatcher(2, command -> {
+			try {
+				if (((Report)command).getSourceNodeId() == 2) {
+					release.await();
+				} else {
+					delivered.countDown();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		dispatcher.start();
+		try {
+			dispatcher.dispatch(new Report(2, 0));
+			dispatcher.dispatch(new Report(3, 0));
+
+			// Node 3 is on the other stripe so it is delivered while node 2 is stuck
+			assertTrue(delivered.await(1, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+			dispatcher.stop();
+		}
+	}
+
+
+	@Test
+	public void testNodeOrderPreserved() throws Exception {
+
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(100);
+		EventDispatcher dispatcher = new EventDispatcher(4, command -> {
+			Report report = (Report)command;
+			if (report.getSourceNodeId() == 5) {
+				received.add(report.index);
+			}
+			done.countDown();
+		});
+		dispatcher.start();
+		try {
+			for (int i = 0 ; i < 50 ; i++) {
+				dispatcher.dispatch(new Report(5, i));
+				dispatcher.dispatch(new Report(6 + i % 3, i));
+			}
+			assertTrue(done.await(1, TimeUnit.SECONDS));
+		} finally {
+			dispatcher.stop();
+		}
+
+		for (int i = 0 ; i < 50 ; i++) {
+			assertEquals(i, received.get(i));
+		}
+	}
+
+
+	@Test
+	public void testDropOldestWhenFull() throws Exception {
+
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		EventDispatcher dispatcher = new EventDispatcher(1, 4, OverflowPolicy.DROP_OLDEST, blockFirst(received, started, release));
+		dispatcher.start();
+		try {
+			dispatcher.dispatch(new Report(2, 0));
+			assertTrue(started.await(1, TimeUnit.SECONDS));
+
+			for (int i = 1 ; i <= 6 ; i++) {
+				dispatcher.dispatch(new Report(2, i));
+			}
+
+			DispatchStatistics statistics = dispatcher.getStatistics().get(1);
+			assertEquals(4, statistics.getDepth());
+			assertEquals(2, statistics.getDropped());
+
+			release.countDown();
+			awaitDelivered(dispatcher, 5);
+		} finally {
+			release.countDown();
+			dispatcher.stop();
+		}
+
+		assertEquals(List.of(0, 3, 4, 5, 6), received);
+	}
+
+
+	@Test
+	public void testDropOldestFromSameNodeFirst() throws Exception {
+
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		EventDispatcher dispatcher = new EventDispatcher(1, 4, OverflowPolicy.DROP_OLDEST, blockFirst(received, started, release));
+		dispatcher.start();
+		try {
+			dispatcher.dispatch(new Report(2, 0));
+			assertTrue(started.await(1, TimeUnit.SECONDS));
+
+			// Node 3 reports once, then node 2 keeps the lane full
+			dispatcher.dispatch(new Report(3, 1));
+			for (int i = 2 ; i <= 6 ; i++) {
+				dispatcher.dispatch(new Report(2, i));
+			}
+
+			DispatchStatistics statistics = dispatcher.getStatistics().get(1);
+			assertEquals(4, statistics.getDepth());
+			assertEquals(2, statistics.getDropped());
+
+			release.countDown();
+			awaitDelivered(dispatcher, 5);
+		} finally {
+			release.countDown();
+			dispatcher.stop();
+		}
+
+		assertEquals(List.of(0, 1, 4, 5, 6), received);
+	}
+
+
+	@Test
+	public void testCoalesceWhenFull() throws Exception {
+
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		EventDispatcher dispatcher = new EventDispatcher(1, 2, OverflowPolicy.COALESCE, blockFirst(received, started, release));
+		dispatcher.start();
+		try {
+			dispatcher.dispatch(new Report(2, 0));
+			assertTrue(started.await(1, TimeUnit.SECONDS));
+
+			dispatcher.dispatch(new Reading(2, 1, 10));
+			dispatcher.dispatch(new Reading(2, 2, 20));
+			dispatcher.dispatch(new Reading(2, 1, 11));
+
+			DispatchStatistics statistics = dispatcher.getStatistics().get(1);
+			assertEquals(1, statistics.getCoalesced());
+			assertEquals(0, statistics.getDropped());
+
+			release.countDown();
+			awaitDelivered(dispatcher, 3);
+		} finally {
+			release.countDown();
+			dispatcher.stop();
+		}
+
+		// The newer reading of the same kind took the older one's place
+		assertEquals(List.of(0, 11, 20), received);
+	}
+
+
+	private static Consumer<Command> blockFirst(List<Integer> received, CountDownLatch started, CountDownLatch release) {
+		return command -> {
+			received.add(((Report)command).index);
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+	}
+
+
+	private static void awaitDelivered(EventDispatcher dispatcher, long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 1000;
+		while (dispatcher.getStatistics().get(1).getDelivered() < count && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(count, dispatcher.getStatistics().get(1).getDelivered());
+	}
+
+
+	private static class Reading extends Report implements Coalescable {
+
+		private final int kind;
+
+		private Reading(int sourceNodeId, int kind, int value) {
+			super(sourceNodeId, value);
+			this.kind = kind;
+		}
+
+		@Override
+		public boolean supersedes(Command queued) {
+			return queued instanceof Reading && ((Reading)queued).kind == kind
+					&& ((Reading)queued).getSourceNodeId() == getSourceNodeId();
+		}
+	}
+
+
+	private static class Report extends Command implements NodeSource {
+
+		private final int sourceNodeId;
+		private final int index;
+
+		private Report(int sourceNodeId, int index) {
+			super(0x04);
+			this.sourceNodeId = sourceNodeId;
+			this.index = index;
+		}
+
+		@Override
+		public int getSourceNodeId() {
+			return sourceNodeId;
+		}
+	}
+}
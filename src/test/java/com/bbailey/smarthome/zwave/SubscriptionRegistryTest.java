@@ -0,0 +1,88 @@
+package com.bbailey.smarthome.zwave;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.ZwaveAdapter.Subscription;
+import com.bbailey.smarthome.zwave.api.common.Command;
+import com.bbailey.smarthome.zwave.api.common.NodeSource;
+
+public class SubscriptionRegistryTest {
+
+	@Test
+	public void testNodeSubscriptionsOnlySeeTheirNode() {
+
+		SubscriptionRegistry registry = new SubscriptionRegistry();
+		List<String> received = new ArrayList<>();
+		registry.add(new Subscription<>(Report.class, c -> received.add("any-" + c.getSourceNodeId()), null));
+		registry.add(new Subscription<>(Report.class, 2, c -> received.add("node2"), null));
+		registry.add(new Subscription<>(Report.class, 3, c -> received.add("node3"), null));
+		registry.add(new Subscription<>(Other.class, c -> received.add("other"), null));
+
+		registry.dispatch(new Report(2));
+
+		assertEquals(List.of("any-2", "node2"), received);
+	}
+
+
+	@Test
+	public void testUnsubscribe() {
+
+		SubscriptionRegistry registry = new SubscriptionRegistry();
+		List<Integer> received = new ArrayList<>();
+		Subscription<Report> subscription = new Subscription<>(Report.class, 2, c -> received.add(c.getSourceNodeId()), null);
+		registry.add(subscription);
+
+		assertTrue(registry.remove(subscription));
+		assertFalse(registry.remove(subscription));
+		registry.dispatch(new Report(2));
+
+		assertTrue(received.isEmpty());
+	}
+
+
+	@Test
+	public void testSubscribeWhileDispatching() {
+
+		SubscriptionRegistry registry = new SubscriptionRegistry();
+		List<String> received = new ArrayList<>();
+		registry.add(new Subscription<>(Report.class, c -> {
+			received.add("first");
+			registry.add(new Subscription<>(Report.class, d -> received.add("added"), null));
+		}, null));
+
+		// The dispatch in progress works from its own snapshot
+		registry.dispatch(new Report(2));
+		assertEquals(List.of("first"), received);
+	}
+
+
+	private static class Report extends Command implements NodeSource {
+
+		private final int sourceNodeId;
+
+		private Report(int sourceNodeId) {
+			super(0x04);
+			this.sourceNodeId = sourceNodeId;
+		}
+
+		@Override
+		public int getSourceNodeId() {
+			return sourceNodeId;
+		}
+	}
+
+
+	private static class Other extends Command {
+
+		private Other() {
+			super(0x05);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.bbailey.smarthome.zwave;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.common.CommandFlow;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.TxOptions;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+public class TransactionSchedulerTest {
+
+	@Test
+	public void testHigherPriorityServedFirst() throws Exception {
+
+		TransactionScheduler scheduler = new TransactionScheduler(10);
+		CommandSequence interview = sendData(2);
+		CommandSequence poll = sendData(3);
+		CommandSequence interactive = sendData(4);
+		scheduler.submit(interview, 2, CommandPriority.INTERVIEW);
+		scheduler.submit(poll, 3, CommandPriority.POLL);
+		scheduler.submit(interactive, 4, CommandPriority.INTERACTIVE);
+
+		assertSame(interactive, next(scheduler));
+		assertSame(poll, next(scheduler));
+		assertSame(interview, next(scheduler));
+		assertNull(scheduler.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+
+	@Test
+	public void testNodesTakeTurns() throws Exception {
+
+		TransactionScheduler scheduler = new TransactionScheduler(10);
+		CommandSequence[] node2 = { sendData(2), sendData(2), sendData(2) };
+		CommandSequence node3 = sendData(3);
+		for (CommandSequence sequence : node2) {
+			scheduler.submit(sequence, 2, CommandPriority.INTERVIEW);
+		}
+		scheduler.submit(node3, 3, CommandPriority.INTERVIEW);
+
+		// Node 3 does not wait behind node 2's whole queue, and node 2 keeps its order
+		assertSame(node2[0], next(scheduler));
+		assertSame(node3, next(scheduler));
+		assertSame(node2[1], next(scheduler));
+		assertSame(node2[2], next(scheduler));
+	}
+
+
+	@Test
+	public void testCapacityAndDrain() {
+
+		TransactionScheduler scheduler = new TransactionScheduler(2);
+		scheduler.submit(sendData(2), 2, CommandPriority.POLL);
+		scheduler.submit(sendData(3), 3, CommandPriority.INTERACTIVE);
+		assertThrows(IllegalStateException.class, () -> scheduler.submit(sendData(4), 4, CommandPriority.INTERACTIVE));
+
+		assertEquals(2, scheduler.drain().size());
+		assertEquals(0, scheduler.size());
+	}
+
+
+	private static CommandSequence next(TransactionScheduler scheduler) throws InterruptedException {
+		return scheduler.poll(0, TimeUnit.MILLISECONDS);
+	}
+
+
+	private static CommandSequence sendData(int nodeId) {
+		ControllerNodeSendData.Request request = new ControllerNodeSendData.Request(
+				nodeId, Buffer.of(0x20, 0x02), EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK), 1
+			);
+		return new CommandSequence(request, CommandFlow.ACK_FRAME_WITH_RESPONSE_AND_CALLBACK);
+	}
+}
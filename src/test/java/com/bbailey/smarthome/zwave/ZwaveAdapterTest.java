@@ -0,0 +1,148 @@
+package com.bbailey.smarthome.zwave;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.GetInitData;
+import com.bbailey.smarthome.zwave.api.SoftReset;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence.SequenceState;
+import com.bbailey.smarthome.zwave.api.common.TxOptions;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+import com.bbailey.smarthome.zwave.protocol.DataFrame;
+import com.bbailey.smarthome.zwave.protocol.DataFrame.CommandType;
+import com.bbailey.smarthome.zwave.protocol.ZwaveFrame.FrameType;
+import com.bbailey.smarthome.zwave.transport.LoopbackTransport;
+
+public class ZwaveAdapterTest {
+
+	private LoopbackTransport module;
+	private ZwaveAdapter adapter;
+
+	// The command id of each data frame the module receives
+	private final List<Integer> received = new CopyOnWriteArrayList<>();
+
+	// The number of data frames the module refuses before acknowledging
+	private final AtomicInteger refusals = new AtomicInteger();
+
+	// The number of data frames the module ignores before answering
+	private final AtomicInteger ignored = new AtomicInteger();
+
+
+	@BeforeEach
+	public void setUp() {
+
+		LoopbackTransport host = LoopbackTransport.pair();
+		module = host.getPeer();
+		module.open(this::onModuleData);
+
+		adapter = new ZwaveAdapter(host);
+		adapter.start();
+	}
+
+
+	@AfterEach
+	public void tearDown() {
+		adapter.stop();
+		module.close();
+	}
+
+
+	@Test
+	public void testRetransmitAfterCan() {
+
+		refusals.set(1);
+		long start = System.nanoTime();
+		CommandSequence sequence = adapter.sendCommand(new SoftReset.Request());
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertEquals(SequenceState.COMPLETE, sequence.getState());
+		assertEquals(2, sequence.getAttempt());
+		assertEquals(List.of(SoftReset.COMMAND_ID, SoftReset.COMMAND_ID), received);
+
+		// Retransmitted after the backoff rather than an ACK timeout
+		assertTrue(elapsed >= 100 && elapsed < AdaptiveTimeouts.ACK_FLOOR_MS, "Took " + elapsed + "ms");
+	}
+
+
+	@Test
+	public void testSoftResetWhenRetriesExhausted() throws Exception {
+
+		refusals.set(3);
+		CommandSequence sequence = adapter.sendCommand(new GetInitData.Request());
+		assertEquals(SequenceState.FAILED, sequence.getState());
+
+		// The reset follows the failure
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (received.size() < 4 && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(List.of(GetInitData.COMMAND_ID, GetInitData.COMMAND_ID, GetInitData.COMMAND_ID, SoftReset.COMMAND_ID), received);
+	}
+
+
+	@Test
+	public void testLateReplyDuringBackoffKeepsTransmitting() throws Exception {
+
+		ignored.set(1);
+		CompletableFuture<CommandSequence> late = adapter.sendCommandAsync(new ControllerNodeSendData.Request(2, Buffer.of(0x20, 0x02), EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK), 7));
+
+		// The ACK timeout has passed, so the request is waiting to be retransmitted when the replies arrive
+		TimeUnit.MILLISECONDS.sleep(AdaptiveTimeouts.ACK_FLOOR_MS + 50);
+		module.write(FrameType.ACK.getProtocolValue());
+		module.write(new DataFrame(CommandType.RESPONSE, ControllerNodeSendData.COMMAND_ID, Buffer.of(0x01)).serialize());
+		module.write(new DataFrame(CommandType.REQUEST, ControllerNodeSendData.COMMAND_ID, Buffer.of(7, 0x00)).serialize());
+
+		// The callback shows the module carried out the request
+		assertEquals(SequenceState.COMPLETE, late.get(1, TimeUnit.SECONDS).getState());
+
+		CommandSequence sequence = adapter.sendCommand(new SoftReset.Request());
+		assertEquals(SequenceState.COMPLETE, sequence.getState());
+	}
+
+
+	@Test
+	public void testRetryDelayGrows() {
+
+		for (int i = 0 ; i < 3 ; i++) {
+			long delay = AdaptiveTimeouts.retransmitDelay(i);
+			assertTrue(delay >= 100 + i * 1000 && delay < 100 + i * 1000 + AdaptiveTimeouts.RETRANSMIT_JITTER_MS);
+		}
+	}
+
+
+	private void onModuleData(byte[] data) {
+
+		// Only data frames are answered, the ACKs the adapter sends need nothing back
+		if (data[0] != FrameType.SOF.getProtocolValue()) {
+			return;
+		}
+
+		received.add(data[3] & 0xFF);
+		if (ignored.getAndDecrement() > 0) {
+			return;
+		}
+		try {
+			if (refusals.getAndDecrement() > 0) {
+				module.write(FrameType.CAN.getProtocolValue());
+			} else {
+				module.write(FrameType.ACK.getProtocolValue());
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.bbailey.smarthome.zwave.api;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+public class ApplicationCommandHandlerTest {
+
+	@Test
+	public void testStateReportSupersedesOlderReport() {
+
+		assertTrue(request(2, 0x80, 0x03, 0x50).supersedes(request(2, 0x80, 0x03, 0x51)));
+
+		// Temperature in Celsius, precision 1
+		assertTrue(request(2, 0x31, 0x05, 0x01, 0x22, 0x00, 0xE1).supersedes(request(2, 0x31, 0x05, 0x01, 0x22, 0x00, 0xDC)));
+	}
+
+
+	@Test
+	public void testDifferentValuesAreKept() {
+
+		// Another node
+		assertFalse(request(2, 0x80, 0x03, 0x50).supersedes(request(3, 0x80, 0x03, 0x50)));
+
+		// Temperature and luminance
+		assertFalse(request(2, 0x31, 0x05, 0x01, 0x22, 0x00, 0xE1).supersedes(request(2, 0x31, 0x05, 0x03, 0x0A, 0x20)));
+
+		// Temperature in Celsius and Fahrenheit
+		assertFalse(request(2, 0x31, 0x05, 0x01, 0x22, 0x00, 0xE1).supersedes(request(2, 0x31, 0x05, 0x01, 0x2A, 0x01, 0x97)));
+	}
+
+
+	@Test
+	public void testEventsAndEncapsulationsAreKept() {
+
+		// Central Scene notifications
+		assertFalse(request(2, 0x5B, 0x03, 0x01, 0x00, 0x01).supersedes(request(2, 0x5B, 0x03, 0x02, 0x00, 0x01)));
+
+		// Multi Channel replies from different endpoints
+		assertFalse(request(2, 0x60, 0x0D, 0x01, 0x00, 0x25, 0x03, 0xFF).supersedes(request(2, 0x60, 0x0D, 0x02, 0x00, 0x25, 0x03, 0x00)));
+
+		// Multi Command replies
+		assertFalse(request(2, 0x8F, 0x01, 0x01, 0x03, 0x80, 0x03, 0x50).supersedes(request(2, 0x8F, 0x01, 0x01, 0x03, 0x80, 0x03, 0x51)));
+	}
+
+
+	private static ApplicationCommandHandler.Request request(int sourceNodeId, int... payload) {
+
+		int[] frame = new int[payload.length + 4];
+		frame[0] = 0x00;
+		frame[1] = sourceNodeId;
+		frame[2] = payload.length;
+		System.arraycopy(payload, 0, frame, 3, payload.length);
+		frame[frame.length - 1] = 0x7F;
+		return new ApplicationCommandHandler.Request(Buffer.of(frame));
+	}
+}
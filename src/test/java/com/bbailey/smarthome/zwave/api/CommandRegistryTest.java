@@ -0,0 +1,48 @@
+package com.bbailey.smarthome.zwave.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.api.common.Command;
+import com.bbailey.smarthome.zwave.api.common.CommandFlow;
+import com.bbailey.smarthome.zwave.api.common.CommandRegistration;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+import com.bbailey.smarthome.zwave.protocol.DataFrame.CommandType;
+
+public class CommandRegistryTest {
+
+	@Test
+	public void testSendDataDecoders() {
+		
+		CommandRegistration registration = find(ControllerNodeSendData.COMMAND_ID);
+		assertEquals(CommandFlow.ACK_FRAME_WITH_RESPONSE_AND_CALLBACK, registration.getFlow());
+		
+		Command response = registration.getDecoder(CommandType.RESPONSE).decode(Buffer.of(0x01));
+		assertTrue(response instanceof ControllerNodeSendData.Response);
+		
+		Command callback = registration.getDecoder(CommandType.REQUEST).decode(Buffer.of(0x0A, 0x00));
+		assertEquals(0x0A, ((ControllerNodeSendData.Callback)callback).getSessionId());
+	}
+	
+	
+	@Test
+	public void testUnsolicitedRequestIsDecoded() {
+		
+		CommandRegistration registration = find(ApplicationCommandHandler.COMMAND_ID);
+		assertNull(registration.getDecoder(CommandType.RESPONSE));
+		
+		Command request = registration.getDecoder(CommandType.REQUEST).decode(Buffer.of(0x00, 0x05, 0x02, 0x20, 0x02, 0x7F));
+		assertEquals(0x05, ((ApplicationCommandHandler.Request)request).getSourceNodeId());
+	}
+	
+	
+	private CommandRegistration find(int commandId) {
+		return CommandRegistry.getCommands().stream()
+				.filter(r -> r.getCommandId() == commandId)
+				.findFirst()
+				.orElseThrow();
+	}
+}
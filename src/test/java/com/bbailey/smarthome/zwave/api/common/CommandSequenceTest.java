@@ -0,0 +1,69 @@
+package com.bbailey.smarthome.zwave.api.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence.SequenceState;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+public class CommandSequenceTest {
+
+	@Test
+	public void testCallbackAfterFailureIsRejected() {
+
+		CommandSequence sequence = waitingForCallback();
+		assertTrue(sequence.markAsFailed());
+
+		assertFalse(sequence.updateCallback(null));
+		assertFalse(sequence.markAsFailed());
+		assertEquals(SequenceState.FAILED, sequence.getState());
+	}
+
+
+	@Test
+	public void testFailureAfterCallbackIsIgnored() {
+
+		CommandSequence sequence = waitingForCallback();
+		assertTrue(sequence.updateCallback(null));
+
+		assertFalse(sequence.markAsFailed());
+		assertEquals(SequenceState.COMPLETE, sequence.getState());
+	}
+
+
+	@Test
+	public void testLateCallbackCompletesRetriedSequence() {
+
+		CommandSequence sequence = new CommandSequence(sendData(), CommandFlow.ACK_FRAME_WITH_RESPONSE_AND_CALLBACK);
+
+		// A callback before the request was even acknowledged is unexpected
+		sequence.startSequence();
+		assertFalse(sequence.updateCallback(null));
+
+		// Once retried, an earlier attempt's callback shows the module carried it out
+		sequence.retry();
+		assertTrue(sequence.updateCallback(null));
+		assertEquals(SequenceState.COMPLETE, sequence.getState());
+	}
+
+
+	private static CommandSequence waitingForCallback() {
+
+		CommandSequence sequence = new CommandSequence(sendData(), CommandFlow.ACK_FRAME_WITH_RESPONSE_AND_CALLBACK);
+		sequence.startSequence();
+		sequence.acknowledgeRequest();
+		sequence.updateResponse(null);
+		return sequence;
+	}
+
+
+	private static ControllerNodeSendData.Request sendData() {
+		return new ControllerNodeSendData.Request(2, Buffer.of(0x20, 0x02), EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK), 1);
+	}
+}
@@ -0,0 +1,135 @@
+package com.bbailey.smarthome.zwave.capture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.bbailey.smarthome.zwave.capture.JournalRecord.Direction;
+import com.bbailey.smarthome.zwave.capture.ReplayTransport.ReplaySpeed;
+
+public class FrameJournalTest {
+
+	private static final byte[] FRAME = { 0x01, 0x03, 0x00, 0x20, (byte)0xDC };
+	
+	@TempDir
+	Path directory;
+	
+	
+	@Test
+	public void testRecordsAreReadBackInOrderAcrossSegments() throws Exception {
+		
+		// Small segments so the journal has to roll
+		try (FrameJournal journal = new FrameJournal(directory, 300)) {
+			for (int i = 0 ; i < 20 ; i++) {
+				journal.append(Direction.OUTBOUND, FRAME, 0, FRAME.length);
+				journal.append(Direction.INBOUND, 0x06);
+			}
+		}
+		
+		assertTrue(JournalReader.listSegments(directory).size() > 1);
+		
+		List<JournalRecord> records = new JournalReader(directory).readAll();
+		assertEquals(40, records.size());
+		assertEquals(Direction.OUTBOUND, records.get(0).getDirection());
+		assertArrayEquals(FRAME, records.get(0).getData());
+		assertEquals(Direction.INBOUND, records.get(39).getDirection());
+		assertArrayEquals(new byte[] { 0x06 }, records.get(39).getData());
+		assertTrue(records.get(39).getTimestampNanos() >= records.get(0).getTimestampNanos());
+	}
+	
+	
+	@Test
+	public void testReplayDeliversInboundRecords() throws Exception {
+		
+		try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE / 64)) {
+			journal.append(Direction.OUTBOUND, 0x06);
+			journal.append(Direction.INBOUND, FRAME, 0, FRAME.length);
+		}
+		
+		BlockingQueue<byte[]> received = new ArrayBlockingQueue<>(10);
+		ReplayTransport transport = new ReplayTransport(new JournalReader(directory), ReplaySpeed.MAX);
+		transport.open(received::add);
+		
+		assertArrayEquals(FRAME, received.poll(1, TimeUnit.SECONDS));
+		transport.close();
+		assertTrue(received.isEmpty());
+	}
+	
+	
+	@Test
+	public void testNumberingContinuesAfterDeletedSegment() throws Exception {
+		
+		for (int i = 0 ; i < 2 ; i++) {
+			new FrameJournal(directory, 300).close();
+		}
+		Files.delete(directory.resolve("journal-00000" + FrameJournal.SEGMENT_SUFFIX));
+		
+		new FrameJournal(directory, 300).close();
+		
+		assertEquals(List.of(directory.resolve("journal-00001" + FrameJournal.SEGMENT_SUFFIX), directory.resolve("journal-00002" + FrameJournal.SEGMENT_SUFFIX)),
+				JournalReader.listSegments(directory));
+	}
+	
+	
+	@Test
+	public void testOldestSegmentsAreDeleted() throws Exception {
+		
+		try (FrameJournal journal = new FrameJournal(directory, 300, 3)) {
+			for (int i = 0 ; i < 100 ; i++) {
+				journal.append(Direction.OUTBOUND, FRAME, 0, FRAME.length);
+			}
+		}
+		
+		List<Path> segments = JournalReader.listSegments(directory);
+		assertEquals(3, segments.size());
+		assertFalse(segments.contains(directory.resolve("journal-00000" + FrameJournal.SEGMENT_SUFFIX)));
+	}
+	
+	
+	@Test
+	public void testReplayPacesSegmentsFromDifferentRuns() throws Exception {
+		
+		// The second run's nanoTime is far ahead of the first's, only the wall clocks line up
+		long wallClock = System.currentTimeMillis();
+		writeSegment("journal-00000", wallClock, 5_000_000L);
+		writeSegment("journal-00001", wallClock + 20, Long.MAX_VALUE / 2);
+		
+		BlockingQueue<byte[]> received = new ArrayBlockingQueue<>(10);
+		ReplayTransport transport = new ReplayTransport(new JournalReader(directory), ReplaySpeed.ORIGINAL);
+		transport.open(received::add);
+		
+		assertArrayEquals(FRAME, received.poll(1, TimeUnit.SECONDS));
+		assertArrayEquals(FRAME, received.poll(1, TimeUnit.SECONDS));
+		transport.close();
+	}
+	
+	
+	/**
+	 * Write a segment holding one inbound frame captured a millisecond after it was opened
+	 */
+	private void writeSegment(String name, long openedMillis, long openedNanos) throws Exception {
+		
+		ByteBuffer segment = ByteBuffer.allocate(FrameJournal.HEADER_LENGTH + FrameJournal.RECORD_HEADER_LENGTH + FRAME.length + 4);
+		segment.putInt(FrameJournal.MAGIC);
+		segment.putInt(FrameJournal.VERSION);
+		segment.putLong(openedMillis);
+		segment.putLong(openedNanos);
+		segment.putInt(FrameJournal.RECORD_HEADER_LENGTH + FRAME.length);
+		segment.putLong(openedNanos + TimeUnit.MILLISECONDS.toNanos(1));
+		segment.put((byte)Direction.INBOUND.getProtocolValue());
+		segment.put(FRAME);
+		Files.write(directory.resolve(name + FrameJournal.SEGMENT_SUFFIX), segment.array());
+	}
+}
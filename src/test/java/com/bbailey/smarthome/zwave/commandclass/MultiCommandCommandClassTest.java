@@ -0,0 +1,94 @@
+package com.bbailey.smarthome.zwave.commandclass;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.CommandPriority;
+import com.bbailey.smarthome.zwave.ZwaveAdapter;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+import com.bbailey.smarthome.zwave.device.ZwaveNode;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+import com.bbailey.smarthome.zwave.transport.LoopbackTransport;
+
+public class MultiCommandCommandClassTest {
+
+	@Test
+	public void testEncapsulate() {
+
+		Buffer buffer = MultiCommandCommandClass.encapsulate(List.of(Buffer.of(0x80, 0x02), Buffer.of(0x84, 0x05)));
+
+		assertArrayEquals(new byte[] { (byte)0x8F, 0x01, 0x02, 0x02, (byte)0x80, 0x02, 0x02, (byte)0x84, 0x05 }, buffer.getData());
+	}
+
+
+	@Test
+	public void testFits() {
+
+		assertTrue(MultiCommandCommandClass.fits(List.of(Buffer.of(0x80, 0x02), Buffer.of(0x84, 0x05))));
+		assertFalse(MultiCommandCommandClass.fits(Collections.nCopies(15, Buffer.of(0x80, 0x02))));
+	}
+
+
+	@Test
+	public void testEncapsulatedReportsReachTheirCommandClasses() {
+
+		ZwaveNode node = new ZwaveNode(new ZwaveAdapter(LoopbackTransport.pair()), 2);
+		BatteryCommandClass battery = (BatteryCommandClass)node.addCommandClass(new BatteryCommandClass(1, node));
+		WakeupCommandClass wakeup = (WakeupCommandClass)node.addCommandClass(new WakeupCommandClass(1, node));
+		node.addCommandClass(new MultiCommandCommandClass(1, node));
+
+		node.receive(MultiCommandCommandClass.encapsulate(List.of(
+				Buffer.of(0x80, 0x03, 0x50),
+				Buffer.of(0x84, 0x06, 0x00, 0x00, 0x3C, 0x01)
+			)));
+
+		assertEquals(0x50, battery.getValue());
+		assertEquals(Duration.ofSeconds(60), wakeup.getInterval());
+	}
+
+
+	@Test
+	public void testGetsShareOneFrame() throws InterruptedException {
+
+		List<SerializableCommand> sent = new CopyOnWriteArrayList<>();
+		CountDownLatch latch = new CountDownLatch(1);
+		ZwaveAdapter adapter = new ZwaveAdapter(LoopbackTransport.pair()) {
+			@Override
+			public CompletableFuture<CommandSequence> sendCommandAsync(SerializableCommand request, int nodeId, CommandPriority priority) {
+				sent.add(request);
+				latch.countDown();
+				return new CompletableFuture<>();
+			}
+		};
+
+		ZwaveNode node = new ZwaveNode(adapter, 2);
+		node.setSupportedCommandClasses(List.of(0x80, 0x84, 0x8F));
+		BatteryCommandClass battery = (BatteryCommandClass)node.addCommandClass(new BatteryCommandClass(1, node));
+		WakeupCommandClass wakeup = (WakeupCommandClass)node.addCommandClass(new WakeupCommandClass(1, node));
+		node.addCommandClass(new MultiCommandCommandClass(1, node));
+
+		battery.sendGetBattery();
+		wakeup.sendGetInterval();
+
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertEquals(1, sent.size());
+		assertArrayEquals(
+				MultiCommandCommandClass.encapsulate(List.of(Buffer.of(0x80, 0x02), Buffer.of(0x84, 0x05))).getData(),
+				((ControllerNodeSendData.Request)sent.get(0)).getData().getData()
+			);
+	}
+}
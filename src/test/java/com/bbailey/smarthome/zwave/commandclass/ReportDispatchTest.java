@@ -0,0 +1,34 @@
+package com.bbailey.smarthome.zwave.commandclass;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+public class ReportDispatchTest {
+
+	@Test
+	public void testReportIsDispatchedToHandler() {
+		
+		BatteryCommandClass first = new BatteryCommandClass(1, null);
+		BatteryCommandClass second = new BatteryCommandClass(1, null);
+		
+		first.receive(Buffer.of(0x03, 0x50));
+		second.receive(Buffer.of(0x03, 0x20));
+		
+		assertEquals(0x50, first.getValue());
+		assertEquals(0x20, second.getValue());
+	}
+	
+	
+	@Test
+	public void testUnsupportedCmdIsIgnored() {
+		
+		BatteryCommandClass battery = new BatteryCommandClass(1, null);
+		battery.receive(Buffer.of(0x7F, 0x50));
+		
+		assertNull(battery.getValue());
+	}
+}
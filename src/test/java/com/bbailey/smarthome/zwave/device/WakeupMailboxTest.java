@@ -0,0 +1,81 @@
+package com.bbailey.smarthome.zwave.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.CommandPriority;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.common.CommandFlow;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.TxOptions;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+
+public class WakeupMailboxTest {
+
+	@Test
+	public void testDrainedInPriorityOrder() {
+
+		WakeupMailbox mailbox = new WakeupMailbox();
+		ControllerNodeSendData.Request interview = sendData(1);
+		ControllerNodeSendData.Request poll = sendData(2);
+		ControllerNodeSendData.Request interactive = sendData(3);
+		ControllerNodeSendData.Request poll2 = sendData(4);
+		mailbox.hold(interview, CommandPriority.INTERVIEW);
+		mailbox.hold(poll, CommandPriority.POLL);
+		mailbox.hold(interactive, CommandPriority.INTERACTIVE);
+		mailbox.hold(poll2, CommandPriority.POLL);
+
+		List<HeldCommand> letters = mailbox.drain();
+
+		assertEquals(0, mailbox.size());
+		assertSame(interactive, letters.get(0).getCommand());
+		assertSame(poll, letters.get(1).getCommand());
+		assertSame(poll2, letters.get(2).getCommand());
+		assertSame(interview, letters.get(3).getCommand());
+	}
+
+
+	@Test
+	public void testHeldFutureFollowsDelivery() {
+
+		WakeupMailbox mailbox = new WakeupMailbox();
+		ControllerNodeSendData.Request request = sendData(1);
+		CompletableFuture<CommandSequence> held = mailbox.hold(request, CommandPriority.INTERACTIVE);
+		assertFalse(held.isDone());
+
+		CompletableFuture<CommandSequence> sent = new CompletableFuture<>();
+		mailbox.drain().get(0).deliver(sent);
+		CommandSequence sequence = new CommandSequence(request, CommandFlow.ACK_FRAME_WITH_RESPONSE_AND_CALLBACK);
+		sent.complete(sequence);
+
+		assertTrue(held.isDone());
+		assertSame(sequence, held.join());
+	}
+
+
+	@Test
+	public void testFullMailboxRefuses() {
+
+		WakeupMailbox mailbox = new WakeupMailbox();
+		for (int i = 0 ; i < WakeupMailbox.CAPACITY ; i++) {
+			mailbox.hold(sendData(i), CommandPriority.POLL);
+		}
+
+		assertTrue(mailbox.hold(sendData(0), CommandPriority.POLL).isCompletedExceptionally());
+	}
+
+
+	private static ControllerNodeSendData.Request sendData(int sessionId) {
+		return new ControllerNodeSendData.Request(
+				2, Buffer.of(0x20, 0x02), EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK), sessionId
+			);
+	}
+}
@@ -0,0 +1,246 @@
+package com.bbailey.smarthome.zwave.device;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.CommandPriority;
+import com.bbailey.smarthome.zwave.ZwaveAdapter;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.SerializableCommand;
+import com.bbailey.smarthome.zwave.api.common.TxOptions;
+import com.bbailey.smarthome.zwave.commandclass.BasicCommandClass;
+import com.bbailey.smarthome.zwave.commandclass.BatteryCommandClass;
+import com.bbailey.smarthome.zwave.commandclass.MultiCommandCommandClass;
+import com.bbailey.smarthome.zwave.commandclass.WakeupCommandClass;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+import com.bbailey.smarthome.zwave.transport.LoopbackTransport;
+
+public class ZwaveNodeTest {
+
+	private static final byte[] BASIC_GET = { 0x20, 0x02 };
+	private static final byte[] BATTERY_GET = { (byte)0x80, 0x02 };
+	private static final byte[] NO_MORE_INFORMATION = { (byte)0x84, 0x08 };
+
+	// The payload and lane of each SendData the node queues on the adapter
+	private final List<byte[]> sent = new CopyOnWriteArrayList<>();
+	private final List<CommandPriority> priorities = new CopyOnWriteArrayList<>();
+
+	// Set to have the adapter refuse commands the way a full transmit queue does
+	private volatile boolean full;
+
+	// Set to have building a Multi Command frame fail
+	private volatile boolean noSessions;
+
+	private ZwaveNode node;
+	private BasicCommandClass basic;
+	private BatteryCommandClass battery;
+
+
+	@BeforeEach
+	public void setUp() {
+
+		ZwaveAdapter adapter = new ZwaveAdapter(LoopbackTransport.pair()) {
+			@Override
+			public CompletableFuture<CommandSequence> sendCommandAsync(SerializableCommand request, int nodeId, CommandPriority priority) {
+				if (full) {
+					throw new IllegalStateException("Transmit queue is full");
+				}
+				sent.add(((ControllerNodeSendData.Request)request).getData().getData());
+				priorities.add(priority);
+				return CompletableFuture.completedFuture(null);
+			}
+
+			@Override
+			public synchronized int nextSessionId() {
+				if (noSessions) {
+					throw new IllegalStateException("No session ids");
+				}
+				return super.nextSessionId();
+			}
+		};
+
+		node = new ZwaveNode(adapter, 2);
+		basic = (BasicCommandClass)node.addCommandClass(new BasicCommandClass(1, node));
+		battery = (BatteryCommandClass)node.addCommandClass(new BatteryCommandClass(1, node));
+		node.addCommandClass(new WakeupCommandClass(1, node));
+	}
+
+
+	@Test
+	public void testHeldCommandsSentByPriorityThenNoMoreInformation() throws InterruptedException {
+
+		node.setState(NodeState.SLEEPING);
+		node.setPriority(CommandPriority.POLL);
+		battery.sendGetBattery();
+		node.setPriority(CommandPriority.INTERACTIVE);
+		basic.sendGet();
+		assertTrue(sent.isEmpty());
+
+		node.wakeUp();
+
+		assertEquals(2, sent.size());
+		assertArrayEquals(BASIC_GET, sent.get(0));
+		assertArrayEquals(BATTERY_GET, sent.get(1));
+		assertEquals(List.of(CommandPriority.WAKEUP, CommandPriority.WAKEUP), priorities);
+
+		awaitSent(3, ZwaveNode.AWAKE_QUIET_MS * 2);
+		assertArrayEquals(NO_MORE_INFORMATION, sent.get(2));
+		assertEquals(NodeState.SLEEPING, node.getState());
+	}
+
+
+	@Test
+	public void testHeldCommandsFailWhenQueueFullAndNodeStillSleeps() throws InterruptedException {
+
+		node.setState(NodeState.SLEEPING);
+		CompletableFuture<CommandSequence> first = node.sendGet(get(BASIC_GET));
+		CompletableFuture<CommandSequence> second = node.sendGet(get(BATTERY_GET));
+
+		full = true;
+		node.wakeUp();
+		full = false;
+
+		assertTrue(first.isCompletedExceptionally());
+		assertTrue(second.isCompletedExceptionally());
+		assertTrue(sent.isEmpty());
+
+		awaitSent(1, ZwaveNode.AWAKE_QUIET_MS * 2);
+		assertArrayEquals(NO_MORE_INFORMATION, sent.get(0));
+		assertEquals(NodeState.SLEEPING, node.getState());
+	}
+
+
+	@Test
+	public void testReplyKeepsNodeAwake() throws InterruptedException {
+
+		node.setState(NodeState.SLEEPING);
+		battery.sendGetBattery();
+		node.wakeUp();
+
+		// The report arrives part way through the quiet period, which starts again from it
+		TimeUnit.MILLISECONDS.sleep(ZwaveNode.AWAKE_QUIET_MS * 7 / 10);
+		node.receive(Buffer.of(0x80, 0x03, 0x50));
+		TimeUnit.MILLISECONDS.sleep(ZwaveNode.AWAKE_QUIET_MS * 5 / 10);
+		assertEquals(1, sent.size());
+		assertEquals(NodeState.AWAKE, node.getState());
+
+		awaitSent(2, ZwaveNode.AWAKE_QUIET_MS * 2);
+		assertArrayEquals(NO_MORE_INFORMATION, sent.get(1));
+	}
+
+
+	@Test
+	public void testFrequentlyListeningNodeGathersCommandsIntoOneFrame() throws InterruptedException {
+
+		node.setFrequentlyListening(true);
+		node.setState(NodeState.AWAKE);
+		node.setSupportedCommandClasses(List.of(0x20, 0x80, 0x84, 0x8F));
+		node.addCommandClass(new MultiCommandCommandClass(1, node));
+
+		basic.sendSet(0xFF);
+		battery.sendGetBattery();
+		assertTrue(sent.isEmpty());
+
+		awaitSent(1, ZwaveNode.GATHER_WINDOW_MS * 5);
+		assertArrayEquals(
+				MultiCommandCommandClass.encapsulate(List.of(Buffer.of(0x20, 0x01, 0xFF), Buffer.of(0x80, 0x02))).getData(),
+				sent.get(0)
+			);
+	}
+
+
+	@Test
+	public void testGatheredCommandsFailWhenFlushFails() {
+
+		node.setFrequentlyListening(true);
+		node.setState(NodeState.AWAKE);
+		node.setSupportedCommandClasses(List.of(0x20, 0x80, 0x84, 0x8F));
+		node.addCommandClass(new MultiCommandCommandClass(1, node));
+
+		CompletableFuture<CommandSequence> first = node.sendGet(get(BASIC_GET));
+		CompletableFuture<CommandSequence> second = node.sendGet(get(BATTERY_GET));
+		noSessions = true;
+
+		for (CompletableFuture<CommandSequence> future : List.of(first, second)) {
+			ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(ZwaveNode.GATHER_WINDOW_MS * 5, TimeUnit.MILLISECONDS));
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertTrue(sent.isEmpty());
+	}
+
+
+	@Test
+	public void testFrequentlyListeningNodeWithoutMultiCommandGetsCommandsBackToBack() throws InterruptedException {
+
+		node.setFrequentlyListening(true);
+		node.setState(NodeState.AWAKE);
+		node.setPriority(CommandPriority.POLL);
+
+		basic.sendSet(0xFF);
+		node.setPriority(CommandPriority.INTERACTIVE);
+		battery.sendGetBattery();
+		assertTrue(sent.isEmpty());
+
+		// Both go in the lane of the most urgent
+		awaitSent(2, ZwaveNode.GATHER_WINDOW_MS * 5);
+		assertArrayEquals(new byte[] { 0x20, 0x01, (byte)0xFF }, sent.get(0));
+		assertArrayEquals(BATTERY_GET, sent.get(1));
+		assertEquals(List.of(CommandPriority.INTERACTIVE, CommandPriority.INTERACTIVE), priorities);
+	}
+
+
+	@Test
+	public void testAwakeNodeGathersGetsInWakeupLaneBeforeNoMoreInformation() throws InterruptedException {
+
+		node.setState(NodeState.SLEEPING);
+		node.setSupportedCommandClasses(List.of(0x20, 0x80, 0x84, 0x8F));
+		node.addCommandClass(new MultiCommandCommandClass(1, node));
+		node.setPriority(CommandPriority.POLL);
+		node.wakeUp();
+
+		basic.sendGet();
+		battery.sendGetBattery();
+
+		awaitSent(1, ZwaveNode.GATHER_WINDOW_MS * 5);
+		assertArrayEquals(
+				MultiCommandCommandClass.encapsulate(List.of(Buffer.of(0x20, 0x02), Buffer.of(0x80, 0x02))).getData(),
+				sent.get(0)
+			);
+		assertEquals(CommandPriority.WAKEUP, priorities.get(0));
+
+		awaitSent(2, ZwaveNode.AWAKE_QUIET_MS * 2);
+		assertArrayEquals(NO_MORE_INFORMATION, sent.get(1));
+	}
+
+
+	private ControllerNodeSendData.Request get(byte[] payload) {
+		return new ControllerNodeSendData.Request(
+				node.getNodeId(),
+				new Buffer(payload),
+				EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK),
+				node.getAdapter().nextSessionId()
+			);
+	}
+
+
+	private void awaitSent(int count, long timeoutMs) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		while (sent.size() < count && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(count, sent.size());
+	}
+}
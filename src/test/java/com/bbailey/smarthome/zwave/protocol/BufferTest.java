@@ -0,0 +1,59 @@
+package com.bbailey.smarthome.zwave.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class BufferTest {
+
+	@Test
+	public void testWriteAndRead() {
+
+		Buffer buffer = new Buffer(10)
+				.put(0x84)
+				.putInt16(0x1234)
+				.putInt24(0x056789)
+				.putInt32(0xCAFEBABE);
+
+		assertEquals(0x84, buffer.next());
+		assertEquals(0x1234, buffer.nextInt16());
+		assertEquals(0x056789, buffer.nextInt24());
+		assertEquals(0xCAFEBABE, buffer.nextInt32());
+		assertFalse(buffer.hasNext());
+	}
+
+
+	@Test
+	public void testSliceSharesStorage() {
+
+		Buffer buffer = Buffer.of(0x01, 0x02, 0x03, 0x04);
+		buffer.next();
+		Buffer slice = buffer.nextSlice(2);
+
+		assertEquals(2, slice.length());
+		assertEquals(0x02, slice.next());
+		assertEquals(0x04, buffer.next());
+
+		slice.set(1, 0xFF);
+		assertEquals(0xFF, buffer.get(2));
+		assertArrayEquals(new byte[] { 0x02, (byte)0xFF }, slice.getData());
+	}
+
+
+	@Test
+	public void testPooledBufferRecycledAfterSlicesReleased() {
+
+		FramePool pool = new FramePool(1);
+		Buffer buffer = pool.acquireBuffer(4);
+		Buffer slice = buffer.slice(1, 2);
+
+		buffer.release();
+		slice.release();
+
+		assertSame(buffer, pool.acquireBuffer(2));
+		assertEquals(1, pool.getAllocations());
+	}
+}
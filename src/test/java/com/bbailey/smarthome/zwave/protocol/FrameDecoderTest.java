@@ -0,0 +1,117 @@
+package com.bbailey.smarthome.zwave.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.api.GetNetworkIds;
+import com.bbailey.smarthome.zwave.protocol.DataFrame.CommandType;
+import com.bbailey.smarthome.zwave.protocol.ZwaveFrame.FrameType;
+
+public class FrameDecoderTest {
+
+	// SOF, length, RESPONSE, GetNetworkIds, homeId, nodeId, checksum
+	private static final byte[] NETWORK_IDS = new byte[] { 0x01,0x08,0x01,0x20,(byte)0xC6,0x24,(byte)0xF7,0x62,0x01,(byte)0xA0 };
+
+
+	@Test
+	public void testDecodeControlAndDataFrames() {
+
+		RecordingListener listener = new RecordingListener();
+		FrameDecoder decoder = new FrameDecoder(listener);
+
+		byte[] chunk = new byte[NETWORK_IDS.length + 2];
+		chunk[0] = 0x06;
+		System.arraycopy(NETWORK_IDS, 0, chunk, 1, NETWORK_IDS.length);
+		chunk[chunk.length - 1] = 0x18;
+
+		decoder.decode(chunk);
+
+		assertEquals(3, listener.frames.size());
+		assertEquals(FrameType.ACK, listener.frames.get(0).getFrameType());
+		assertEquals(FrameType.SOF, listener.frames.get(1).getFrameType());
+		assertEquals(FrameType.CAN, listener.frames.get(2).getFrameType());
+
+		DataFrame frame = (DataFrame)listener.frames.get(1);
+		assertEquals(CommandType.RESPONSE, frame.getType());
+		assertEquals(GetNetworkIds.COMMAND_ID, frame.getCommandId());
+		assertEquals(5, frame.getCommandPayload().length());
+		assertEquals(0, listener.errors);
+		assertFalse(decoder.isInFrame());
+	}
+
+
+	@Test
+	public void testDecodeFrameSplitAcrossChunks() {
+
+		RecordingListener listener = new RecordingListener();
+		FrameDecoder decoder = new FrameDecoder(listener);
+
+		// Split after the SOF and again in the middle of the payload
+		decoder.decode(NETWORK_IDS, 0, 1);
+		assertTrue(decoder.isInFrame());
+		decoder.decode(NETWORK_IDS, 1, 5);
+		assertTrue(decoder.isInFrame());
+		decoder.decode(NETWORK_IDS, 6, NETWORK_IDS.length - 6);
+
+		assertFalse(decoder.isInFrame());
+		assertEquals(1, listener.frames.size());
+		assertEquals(GetNetworkIds.COMMAND_ID, ((DataFrame)listener.frames.get(0)).getCommandId());
+	}
+
+
+	@Test
+	public void testInvalidChecksum() {
+
+		RecordingListener listener = new RecordingListener();
+		FrameDecoder decoder = new FrameDecoder(listener);
+
+		byte[] chunk = NETWORK_IDS.clone();
+		chunk[chunk.length - 1] = 0x00;
+		decoder.decode(chunk);
+
+		assertEquals(0, listener.frames.size());
+		assertEquals(1, listener.errors);
+	}
+
+
+	@Test
+	public void testOutOfFrameBytes() {
+
+		RecordingListener listener = new RecordingListener();
+		FrameDecoder decoder = new FrameDecoder(listener);
+
+		decoder.decode(new byte[] { 0x55, 0x06, 0x7F });
+
+		assertEquals(1, listener.frames.size());
+		assertEquals(2, listener.outOfFrame);
+	}
+
+
+	private static class RecordingListener implements FrameDecoder.FrameListener {
+
+		private final List<ZwaveFrame> frames = new ArrayList<>();
+		private int errors = 0;
+		private int outOfFrame = 0;
+
+		@Override
+		public void onFrame(ZwaveFrame frame) {
+			frames.add(frame);
+		}
+
+		@Override
+		public void onInvalidFrame(String reason) {
+			errors++;
+		}
+
+		@Override
+		public void onOutOfFrame(int value) {
+			outOfFrame++;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.bbailey.smarthome.zwave.simulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.SimulatorConfiguration;
+import com.bbailey.smarthome.zwave.ZwaveAdapter;
+import com.bbailey.smarthome.zwave.api.ApplicationCommandHandler;
+import com.bbailey.smarthome.zwave.api.ControllerNodeSendData;
+import com.bbailey.smarthome.zwave.api.GetInitData;
+import com.bbailey.smarthome.zwave.api.GetNodeInformationProtocolData;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence;
+import com.bbailey.smarthome.zwave.api.common.CommandSequence.SequenceState;
+import com.bbailey.smarthome.zwave.api.common.TxOptions;
+import com.bbailey.smarthome.zwave.api.common.TxStatus;
+import com.bbailey.smarthome.zwave.commandclass.BasicCommandClass;
+import com.bbailey.smarthome.zwave.protocol.Buffer;
+import com.bbailey.smarthome.zwave.transport.LoopbackTransport;
+
+public class VirtualControllerTest {
+
+	private VirtualController simulator;
+	private ZwaveAdapter adapter;
+	
+	
+	@BeforeEach
+	public void setUp() {
+		
+		SimulatorConfiguration config = new SimulatorConfiguration();
+		config.setNodes(3);
+		config.setReportsPerSecond(50);
+		config.setTransmitDelayMs(200);
+		
+		LoopbackTransport transport = LoopbackTransport.pair();
+		simulator = new VirtualController(transport.getPeer(), config);
+		simulator.start();
+		
+		adapter = new ZwaveAdapter(transport);
+		adapter.start();
+	}
+	
+	
+	@AfterEach
+	public void tearDown() {
+		simulator.stop();
+		adapter.stop();
+	}
+	
+	
+	@Test
+	public void testInitDataListsVirtualNodes() throws Exception {
+		
+		BlockingQueue<GetInitData.Response> responses = new ArrayBlockingQueue<>(1);
+		adapter.subscribe(GetInitData.Response.class, responses::add);
+		
+		adapter.sendCommand(new GetInitData.Request());
+		
+		GetInitData.Response response = responses.poll(5, TimeUnit.SECONDS);
+		assertNotNull(response);
+		assertEquals(List.of(1, 2, 3, 4), response.getNodes());
+		assertTrue(simulator.getAcksReceived() > 0);
+	}
+	
+	
+	@Test
+	public void testNodesSendReports() throws Exception {
+		
+		BlockingQueue<Integer> sources = new ArrayBlockingQueue<>(100);
+		adapter.subscribe(ApplicationCommandHandler.Request.class, c -> sources.offer(c.getSourceNodeId()));
+		
+		Integer source = sources.poll(5, TimeUnit.SECONDS);
+		assertNotNull(source);
+		assertTrue(source >= 2 && source <= 4);
+	}
+	
+	
+	@Test
+	public void testAsyncCommandCompletesWithItsOwnResponse() throws Exception {
+		
+		CommandSequence sequence = adapter.sendCommandAsync(new GetNodeInformationProtocolData.Request(3)).get(5, TimeUnit.SECONDS);
+		
+		assertEquals(SequenceState.COMPLETE, sequence.getState());
+		assertTrue(sequence.getResponse().get() instanceof GetNodeInformationProtocolData.Response);
+	}
+	
+	
+	@Test
+	public void testAsyncCommandCompletesWithCallback() throws Exception {
+		
+		ControllerNodeSendData.Request request = new ControllerNodeSendData.Request(
+				2, Buffer.of(BasicCommandClass.COMMAND_ID, 0x02), EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK), adapter.nextSessionId()
+			);
+		CommandSequence sequence = adapter.sendCommandAsync(request).get(5, TimeUnit.SECONDS);
+		
+		ControllerNodeSendData.Callback callback = (ControllerNodeSendData.Callback)sequence.getCallback().get();
+		assertEquals(request.getSessionId(), callback.getSessionId());
+		assertEquals(TxStatus.TRANSMIT_COMPLETE_OK, callback.getTxStatus());
+	}
+	
+	
+	@Test
+	public void testRequestsSentWhileCallbackOutstanding() throws Exception {
+		
+		CompletableFuture<CommandSequence> sendData = adapter.sendCommandAsync(new ControllerNodeSendData.Request(
+				3, Buffer.of(BasicCommandClass.COMMAND_ID, 0x02), EnumSet.of(TxOptions.TRANSMIT_OPTION_ACK), adapter.nextSessionId()
+			));
+		CompletableFuture<CommandSequence> initData = adapter.sendCommandAsync(new GetInitData.Request());
+		
+		// The second request completes during the first one's simulated RF transmission
+		initData.get(150, TimeUnit.MILLISECONDS);
+		assertFalse(sendData.isDone());
+		assertEquals(SequenceState.COMPLETE, sendData.get(5, TimeUnit.SECONDS).getState());
+	}
+}
@@ -0,0 +1,76 @@
+package com.bbailey.smarthome.zwave.trace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.bbailey.smarthome.zwave.utils.BitUtils;
+
+public class TraceTest {
+
+	@AfterEach
+	public void tearDown() {
+		Trace.reset();
+	}
+
+
+	@Test
+	public void testDisabledByDefault() {
+
+		for (Subsystem subsystem : Subsystem.values()) {
+			assertEquals(TraceLevel.OFF, Trace.getLevel(subsystem));
+			assertFalse(Trace.isEnabled(subsystem, TraceLevel.INFO));
+		}
+	}
+
+
+	@Test
+	public void testLevelIncludesLowerLevels() {
+
+		Trace.setLevel(Subsystem.FRAME, TraceLevel.DEBUG);
+
+		assertTrue(Trace.isEnabled(Subsystem.FRAME, TraceLevel.INFO));
+		assertTrue(Trace.isEnabled(Subsystem.FRAME, TraceLevel.DEBUG));
+		assertFalse(Trace.isEnabled(Subsystem.FRAME, TraceLevel.TRACE));
+		assertFalse(Trace.isEnabled(Subsystem.FRAME, TraceLevel.OFF));
+		assertFalse(Trace.isEnabled(Subsystem.COMMAND, TraceLevel.INFO));
+	}
+
+
+	@Test
+	public void testSampleRate() {
+
+		Trace.setSampleRate(Subsystem.TRANSPORT, 10);
+		assertEquals(10, Trace.getSampleRate(Subsystem.TRANSPORT));
+		assertEquals(1, Trace.getSampleRate(Subsystem.FRAME));
+		assertThrows(IllegalArgumentException.class, () -> Trace.setSampleRate(Subsystem.TRANSPORT, 0));
+	}
+
+
+	@Test
+	public void testDisabledTraceDoesNotFormat() {
+
+		Object argument = new Object() {
+			@Override
+			public String toString() {
+				throw new AssertionError("Argument formatted while tracing is off");
+			}
+		};
+
+		Trace.log(Subsystem.DISPATCH, TraceLevel.DEBUG, "{}", argument);
+	}
+
+
+	@Test
+	public void testHex() {
+
+		assertEquals("0x0A", BitUtils.toHex(0x0A));
+		assertEquals("0xFF", BitUtils.toHex(-1));
+		assertEquals("[0x01,0x03,0xFE]", BitUtils.toHex(new byte[] { 0x01, 0x03, (byte)0xFE }));
+		assertEquals("[]", BitUtils.toHex(new byte[0]));
+	}
+}
@@ -0,0 +1,53 @@
+package com.bbailey.smarthome.zwave.transport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class LoopbackTransportTest {
+
+	@Test
+	public void testBytesAreDeliveredToThePeer() throws Exception {
+
+		LoopbackTransport host = LoopbackTransport.pair();
+		LoopbackTransport module = host.getPeer();
+
+		BlockingQueue<byte[]> hostReceived = new ArrayBlockingQueue<>(10);
+		BlockingQueue<byte[]> moduleReceived = new ArrayBlockingQueue<>(10);
+		host.open(hostReceived::add);
+		module.open(moduleReceived::add);
+
+		try {
+			host.write(new byte[] { 0x01, 0x03, 0x00, 0x20, (byte)0xDC });
+			module.write(0x06);
+
+			assertArrayEquals(new byte[] { 0x01, 0x03, 0x00, 0x20, (byte)0xDC }, moduleReceived.poll(1, TimeUnit.SECONDS));
+			assertArrayEquals(new byte[] { 0x06 }, hostReceived.poll(1, TimeUnit.SECONDS));
+		} finally {
+			host.close();
+			module.close();
+		}
+	}
+
+
+	@Test
+	public void testBytesWrittenBeforePeerOpensAreDropped() throws Exception {
+
+		LoopbackTransport host = LoopbackTransport.pair();
+		LoopbackTransport module = host.getPeer();
+		host.write(0x15);
+
+		BlockingQueue<byte[]> moduleReceived = new ArrayBlockingQueue<>(10);
+		module.open(moduleReceived::add);
+		try {
+			host.write(0x06);
+			assertArrayEquals(new byte[] { 0x06 }, moduleReceived.poll(1, TimeUnit.SECONDS));
+		} finally {
+			module.close();
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.bbailey.smarthome.zwave.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+public class MpscRingBufferTest {
+
+	private static final int PRODUCERS = 4;
+	private static final int PER_PRODUCER = 20_000;
+
+
+	@Test
+	public void testOfferUntilFull() {
+
+		MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(3);
+		assertEquals(4, ring.capacity());
+
+		for (int i = 0 ; i < 4 ; i++) {
+			assertTrue(ring.offer(i));
+		}
+		assertFalse(ring.offer(4));
+
+		assertEquals(0, ring.poll());
+		assertTrue(ring.offer(4));
+		for (int i = 1 ; i <= 4 ; i++) {
+			assertEquals(i, ring.poll());
+		}
+		assertNull(ring.poll());
+		assertTrue(ring.isEmpty());
+	}
+
+
+	@Test
+	public void testConcurrentProducers() throws InterruptedException {
+
+		MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(64);
+		CountDownLatch start = new CountDownLatch(1);
+
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0 ; p < PRODUCERS ; p++) {
+			int producer = p;
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0 ; i < PER_PRODUCER ; i++) {
+					while (!ring.offer(producer * PER_PRODUCER + i)) {
+						Thread.yield();
+					}
+				}
+			});
+			thread.start();
+			producers.add(thread);
+		}
+
+		// Each producer's elements arrive in the order it offered them, and none are lost or repeated
+		int[] next = new int[PRODUCERS];
+		start.countDown();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		for (int received = 0 ; received < PRODUCERS * PER_PRODUCER ; ) {
+			Integer element = ring.poll();
+			if (element == null) {
+				assertTrue(System.nanoTime() < deadline, "Only received " + received);
+				Thread.yield();
+				continue;
+			}
+			int producer = element / PER_PRODUCER;
+			assertEquals(next[producer]++, element % PER_PRODUCER);
+			received++;
+		}
+
+		for (Thread thread : producers) {
+			thread.join();
+		}
+		assertTrue(ring.isEmpty());
+		for (int p = 0 ; p < PRODUCERS ; p++) {
+			assertEquals(PER_PRODUCER, next[p]);
+		}
+	}
+
+
+	@Test
+	public void testSleepingConsumerIsWoken() throws InterruptedException {
+
+		// The same handshake as the frame writer: the consumer announces it is going to sleep and checks
+		// again, the producer offers and wakes it if it has announced
+		MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(16);
+		int count = 20_000;
+		Sleeper sleeper = new Sleeper(ring, count);
+		Thread consumer = new Thread(sleeper);
+		consumer.start();
+
+		for (int i = 0 ; i < count ; i++) {
+			while (!ring.offer(i)) {
+				Thread.yield();
+			}
+			if (sleeper.sleeping) {
+				LockSupport.unpark(consumer);
+			}
+		}
+
+		consumer.join(TimeUnit.SECONDS.toMillis(10));
+		assertFalse(consumer.isAlive(), "Consumer missed a wake up after " + sleeper.received + " elements");
+		assertEquals(count, sleeper.received);
+	}
+
+
+	private static class Sleeper implements Runnable {
+
+		private final MpscRingBuffer<Integer> ring;
+		private final int count;
+		private volatile boolean sleeping;
+		private volatile int received;
+
+		private Sleeper(MpscRingBuffer<Integer> ring, int count) {
+			this.ring = ring;
+			this.count = count;
+		}
+
+		@Override
+		public void run() {
+			while (received < count) {
+				if (ring.poll() != null) {
+					received++;
+					continue;
+				}
+				sleeping = true;
+				if (ring.isEmpty()) {
+					LockSupport.park(this);
+				}
+				sleeping = false;
+			}
+		}
+	}
+}